@@ -0,0 +1,90 @@
+package com.example.llm;
+
+/**
+ * Additive-increase/multiplicative-decrease concurrency limit. Each request that completes in
+ * time raises the limit by {@code 1/limit}, about one per round of requests; a rate-limit
+ * rejection, or a response slower than the latency target, halves it. Only one decrease is
+ * applied per round: requests that were already in flight when the limit was cut do not cut it
+ * again.
+ */
+public class AdaptiveConcurrencyLimit {
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos = Long.MIN_VALUE;
+    private long decreases;
+
+    /**
+     * @param latencyTargetNanos responses slower than this count as congestion; 0 to react to
+     *                           rate limiting only
+     */
+    public AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, long latencyTargetNanos) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid concurrency bounds: " + minLimit + ".." + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyTargetNanos = latencyTargetNanos;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Waits for a free slot and returns the start time to pass back on completion.
+     */
+    public synchronized long acquire() throws InterruptedException {
+        while (inFlight >= (int) limit) {
+            wait();
+        }
+        inFlight++;
+        return System.nanoTime();
+    }
+
+    public synchronized void onSuccess(long startNanos) {
+        release();
+        if (latencyTargetNanos > 0 && System.nanoTime() - startNanos > latencyTargetNanos) {
+            decrease(startNanos);
+        } else {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    public synchronized void onRateLimited(long startNanos) {
+        release();
+        decrease(startNanos);
+    }
+
+    /**
+     * A failure that says nothing about provider capacity; frees the slot only.
+     */
+    public synchronized void onIgnored() {
+        release();
+    }
+
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized long getDecreaseCount() {
+        return decreases;
+    }
+
+    private void release() {
+        inFlight--;
+        notifyAll();
+    }
+
+    private void decrease(long startNanos) {
+        if (startNanos <= lastDecreaseNanos) {
+            return;
+        }
+        limit = Math.max(minLimit, limit / 2);
+        lastDecreaseNanos = System.nanoTime();
+        decreases++;
+    }
+}
@@ -7,7 +7,9 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class AliasManager {
@@ -54,4 +56,15 @@ public class AliasManager {
         Map<String, String> aliases = loadAliases();
         return aliases.getOrDefault(modelName, modelName);
     }
+
+    /**
+     * The comma-separated targets of a resolved model name; an alias such as
+     * {@code fast=groq/llama3,openai/gpt-4o-mini} routes between several backends.
+     */
+    public static List<String> targetsOf(String resolvedModelName) {
+        return Arrays.stream(resolvedModelName.split(","))
+                .map(String::trim)
+                .filter(target -> !target.isEmpty())
+                .toList();
+    }
 }
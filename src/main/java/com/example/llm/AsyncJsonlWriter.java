@@ -0,0 +1,256 @@
+package com.example.llm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Write-behind appender for JSONL logs. Lines are queued by callers and written by a single
+ * background thread that keeps one {@link FileChannel} open, coalesces queued lines into large
+ * writes and fsyncs according to the configured {@link FsyncPolicy}.
+ */
+public class AsyncJsonlWriter implements AutoCloseable {
+    private static final int MAX_BATCH = 1024;
+    private static final long WRITER_POLL_MILLIS = 100;
+    private static final Object CLOSE = new Object();
+
+    public enum OverflowPolicy { BLOCK, DROP }
+
+    /**
+     * When to fsync: after {@code everyEntries} written lines, after {@code everyMillis} since the
+     * last sync, or only on close when both are zero.
+     */
+    public record FsyncPolicy(int everyEntries, long everyMillis) {
+        public static FsyncPolicy onClose() {
+            return new FsyncPolicy(0, 0);
+        }
+
+        public static FsyncPolicy everyEntries(int entries) {
+            return new FsyncPolicy(entries, 0);
+        }
+
+        public static FsyncPolicy everyMillis(long millis) {
+            return new FsyncPolicy(0, millis);
+        }
+    }
+
+    private final FileChannel channel;
+    private final BlockingQueue<Object> queue;
+    private final FsyncPolicy fsyncPolicy;
+    private final OverflowPolicy overflowPolicy;
+    private final Thread writerThread;
+    private final AtomicLong writtenEntries = new AtomicLong();
+    private final AtomicLong droppedEntries = new AtomicLong();
+    private final AtomicLong backpressuredEntries = new AtomicLong();
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+    private volatile boolean closed;
+
+    private int unsyncedEntries;
+    private long lastSyncNanos = System.nanoTime();
+
+    public AsyncJsonlWriter(Path path, int queueCapacity, FsyncPolicy fsyncPolicy, OverflowPolicy overflowPolicy) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.fsyncPolicy = fsyncPolicy;
+        this.overflowPolicy = overflowPolicy;
+        this.writerThread = new Thread(this::run, "jsonl-log-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * Queues one JSON line (without trailing newline). Depending on the overflow policy a full
+     * queue either blocks the caller or drops the entry; both cases are counted. A write that
+     * failed since the last append or flush is reported here, after which the writer carries on.
+     *
+     * @return true if the line was queued, false if it was dropped
+     */
+    public boolean append(String line) {
+        if (closed) {
+            throw new IllegalStateException("JSONL writer is closed");
+        }
+        throwIfFailed();
+        if (queue.offer(line)) {
+            return true;
+        }
+        if (overflowPolicy == OverflowPolicy.DROP) {
+            droppedEntries.incrementAndGet();
+            return false;
+        }
+        backpressuredEntries.incrementAndGet();
+        try {
+            if (enqueue(line)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        droppedEntries.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Blocks until every line queued before this call has been written to the channel. Returns
+     * early if the writer stops first, as it does when a concurrent {@link #close} drains it.
+     */
+    public void flush() {
+        if (closed) {
+            return;
+        }
+        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            if (enqueue(latch)) {
+                while (!latch.await(WRITER_POLL_MILLIS, TimeUnit.MILLISECONDS) && writerThread.isAlive()) {
+                    // the writer is still busy with earlier lines
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throwIfFailed();
+    }
+
+    /**
+     * Puts {@code item} on the queue, waiting for space only while the writer is alive to make it.
+     *
+     * @return false if the writer stopped before the item could be queued
+     */
+    private boolean enqueue(Object item) throws InterruptedException {
+        while (writerThread.isAlive()) {
+            if (queue.offer(item, WRITER_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public long getWrittenEntries() {
+        return writtenEntries.get();
+    }
+
+    public long getDroppedEntries() {
+        return droppedEntries.get();
+    }
+
+    public long getBackpressuredEntries() {
+        return backpressuredEntries.get();
+    }
+
+    private void run() {
+        List<Object> batch = new ArrayList<>(MAX_BATCH);
+        boolean running = true;
+        while (running) {
+            try {
+                Object first = fsyncPolicy.everyMillis() > 0
+                        ? queue.poll(fsyncPolicy.everyMillis(), TimeUnit.MILLISECONDS)
+                        : queue.take();
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+                running = writeBatch(batch);
+                batch.clear();
+                maybeSync(!running);
+            } catch (InterruptedException e) {
+                running = false;
+            } catch (IOException e) {
+                failure.set(e);
+                running = running && !batch.contains(CLOSE);
+                releaseWaiters(batch);
+                batch.clear();
+            }
+        }
+        queue.drainTo(batch);
+        releaseWaiters(batch);
+        try {
+            channel.close();
+        } catch (IOException e) {
+            failure.set(e);
+        }
+    }
+
+    private boolean writeBatch(List<Object> batch) throws IOException {
+        StringBuilder buffer = new StringBuilder();
+        List<CountDownLatch> waiters = new ArrayList<>();
+        boolean running = true;
+        int lines = 0;
+        for (Object item : batch) {
+            if (item == CLOSE) {
+                running = false;
+            } else if (item instanceof CountDownLatch latch) {
+                waiters.add(latch);
+            } else {
+                buffer.append((String) item).append('\n');
+                lines++;
+            }
+        }
+        if (lines > 0) {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer.toString().getBytes(StandardCharsets.UTF_8));
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+            writtenEntries.addAndGet(lines);
+            unsyncedEntries += lines;
+        }
+        waiters.forEach(CountDownLatch::countDown);
+        return running;
+    }
+
+    private void maybeSync(boolean closing) throws IOException {
+        if (unsyncedEntries == 0) {
+            return;
+        }
+        boolean entriesDue = fsyncPolicy.everyEntries() > 0 && unsyncedEntries >= fsyncPolicy.everyEntries();
+        boolean timeDue = fsyncPolicy.everyMillis() > 0
+                && System.nanoTime() - lastSyncNanos >= TimeUnit.MILLISECONDS.toNanos(fsyncPolicy.everyMillis());
+        if (closing || entriesDue || timeDue) {
+            channel.force(false);
+            unsyncedEntries = 0;
+            lastSyncNanos = System.nanoTime();
+        }
+    }
+
+    private void releaseWaiters(List<Object> batch) {
+        for (Object item : batch) {
+            if (item instanceof CountDownLatch latch) {
+                latch.countDown();
+            }
+        }
+    }
+
+    private void throwIfFailed() {
+        IOException e = failure.getAndSet(null);
+        if (e != null) {
+            throw new RuntimeException("Failed to write JSONL log", e);
+        }
+    }
+
+    /**
+     * Drains the queue, fsyncs and closes the underlying channel.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            enqueue(CLOSE);
+            writerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        throwIfFailed();
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs a stream of prompts through one model with bounded parallelism. Input is read one line at
+ * a time: a JSON object with a {@code prompt} (and optional {@code id}) field, or a plain line
+ * that is the prompt itself. Each prompt yields one JSONL result line, written in input order or
+ * in completion order.
+ *
+ * <p>At most {@code concurrency} requests are in flight, and at most twice that many prompts are
+ * read ahead of the output, so memory stays bounded however large the input is or however long
+ * one slow request holds back input-ordered output.
+ */
+public class BatchRunner {
+    public enum Order { INPUT, COMPLETION }
+
+    public record Summary(long total, long failed, long elapsedMs) {
+    }
+
+    static final int DEFAULT_LOG_BATCH_SIZE = 256;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final LlmChatModel chatModel;
+    private final String modelName;
+    private final int concurrency;
+    private final Order order;
+    private final LogManager logManager;
+    private final int logBatchSize;
+
+    public BatchRunner(LlmChatModel chatModel, String modelName, int concurrency, Order order, LogManager logManager) {
+        this(chatModel, modelName, concurrency, order, logManager, DEFAULT_LOG_BATCH_SIZE);
+    }
+
+    public BatchRunner(LlmChatModel chatModel, String modelName, int concurrency, Order order, LogManager logManager,
+                       int logBatchSize) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be at least 1");
+        }
+        this.chatModel = chatModel;
+        this.modelName = modelName;
+        this.concurrency = concurrency;
+        this.order = order;
+        this.logManager = logManager;
+        this.logBatchSize = Math.max(1, logBatchSize);
+    }
+
+    public Summary run(BufferedReader input, Writer output) throws IOException {
+        long start = System.nanoTime();
+        Semaphore window = new Semaphore(concurrency * 2);
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "llm-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ResultSink sink = new ResultSink(output, window);
+        long total = 0;
+        try {
+            String line;
+            while ((line = input.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                window.acquire();
+                long index = total++;
+                String inputLine = line;
+                executor.execute(() -> {
+                    // Even an Error must produce a result, or its window permit and every later
+                    // input-ordered result would be held forever
+                    Result result = new Result(index, null, inputLine, null, "Request did not complete", 0);
+                    try {
+                        result = execute(index, inputLine);
+                    } finally {
+                        sink.accept(result);
+                    }
+                });
+            }
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                // Requests carry their own timeouts; keep waiting for the stragglers
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+            throw new IOException("Batch interrupted", e);
+        }
+        sink.finish();
+        return new Summary(total, sink.failed.get(), (System.nanoTime() - start) / 1_000_000);
+    }
+
+    private Result execute(long index, String line) {
+        String id = null;
+        String prompt = line;
+        try {
+            if (line.stripLeading().startsWith("{")) {
+                JsonNode node = objectMapper.readTree(line);
+                id = node.hasNonNull("id") ? node.get("id").asText() : null;
+                if (!node.hasNonNull("prompt")) {
+                    return new Result(index, id, null, null, "Missing \"prompt\" field", 0);
+                }
+                prompt = node.get("prompt").asText();
+            }
+        } catch (IOException e) {
+            return new Result(index, null, null, null, "Invalid JSON: " + e.getMessage(), 0);
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            LlmResponse response = chatModel.chat(new LlmRequest(prompt));
+            return new Result(index, id, prompt, response, null, System.currentTimeMillis() - startTime);
+        } catch (RuntimeException e) {
+            String error = e.getMessage() != null ? e.getMessage() : e.toString();
+            return new Result(index, id, prompt, null, error, System.currentTimeMillis() - startTime);
+        }
+    }
+
+    private record Result(long index, String id, String prompt, LlmResponse response, String error, long durationMs) {
+    }
+
+    /**
+     * Writes results as they arrive, reordering them first in {@link Order#INPUT} mode, and hands
+     * successful calls to the log manager in batches.
+     */
+    private final class ResultSink {
+        private final Writer output;
+        private final Semaphore window;
+        private final Map<Long, Result> pending = new HashMap<>();
+        private final AtomicLong failed = new AtomicLong();
+        private List<LogManager.LoggedCall> logBuffer = new ArrayList<>();
+        private long nextIndex;
+        private IOException writeFailure;
+        private RuntimeException logFailure;
+
+        private ResultSink(Writer output, Semaphore window) {
+            this.output = output;
+            this.window = window;
+        }
+
+        void accept(Result result) {
+            if (result.error() != null) {
+                failed.incrementAndGet();
+            }
+            List<LogManager.LoggedCall> toLog = null;
+            synchronized (this) {
+                if (order == Order.COMPLETION) {
+                    write(result);
+                } else {
+                    pending.put(result.index(), result);
+                    Result next;
+                    while ((next = pending.remove(nextIndex)) != null) {
+                        write(next);
+                        nextIndex++;
+                    }
+                }
+                if (logManager != null && result.response() != null) {
+                    logBuffer.add(loggedCall(result));
+                    if (logBuffer.size() >= logBatchSize) {
+                        toLog = logBuffer;
+                        logBuffer = new ArrayList<>();
+                    }
+                }
+            }
+            if (toLog != null) {
+                log(toLog);
+            }
+        }
+
+        /**
+         * Logs a batch of calls, keeping the first failure for {@link #finish()}: this runs on a
+         * pool thread, where a thrown exception would be dropped by the executor.
+         */
+        private void log(List<LogManager.LoggedCall> calls) {
+            try {
+                logManager.logConversations(calls);
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    if (logFailure == null) {
+                        logFailure = e;
+                    }
+                }
+            }
+        }
+
+        private void write(Result result) {
+            try {
+                if (writeFailure == null) {
+                    output.write(objectMapper.writeValueAsString(toJson(result)));
+                    output.write('\n');
+                }
+            } catch (IOException e) {
+                writeFailure = e;
+            } finally {
+                window.release();
+            }
+        }
+
+        void finish() throws IOException {
+            List<LogManager.LoggedCall> toLog;
+            synchronized (this) {
+                toLog = logBuffer;
+                logBuffer = new ArrayList<>();
+            }
+            if (logManager != null) {
+                log(toLog);
+            }
+            synchronized (this) {
+                if (writeFailure != null) {
+                    throw new IOException("Failed to write batch results", writeFailure);
+                }
+                output.flush();
+                if (logFailure != null) {
+                    throw new IOException("Failed to log batch results", logFailure);
+                }
+            }
+        }
+
+        private LogManager.LoggedCall loggedCall(Result result) {
+            LlmResponse response = result.response();
+            return new LogManager.LoggedCall(modelName, result.prompt(), response.text(), response.promptTokens(),
+                    response.responseTokens(), response.totalTokens(), result.durationMs(),
+                    result.id() != null ? Map.of("batch_id", result.id()) : null);
+        }
+    }
+
+    private ObjectNode toJson(Result result) {
+        ObjectNode node = objectMapper.createObjectNode();
+        node.put("index", result.index());
+        if (result.id() != null) node.put("id", result.id());
+        if (result.response() != null) {
+            LlmResponse response = result.response();
+            node.put("response", response.text());
+            if (response.promptTokens() != null) node.put("prompt_tokens", response.promptTokens());
+            if (response.responseTokens() != null) node.put("response_tokens", response.responseTokens());
+            if (response.totalTokens() != null) node.put("total_tokens", response.totalTokens());
+            if (response.cachedTokens() != null) node.put("cached_tokens", response.cachedTokens());
+        } else {
+            node.put("error", result.error());
+        }
+        node.put("duration_ms", result.durationMs());
+        return node;
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.llm;
+
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.Optional;
+
+/**
+ * Serves repeated {@code chat} calls from a {@link ResponseCache}, so re-running a batch or
+ * re-rendering a template with the same parameters costs no provider calls. Hits report zero
+ * tokens. Requests with tools and streaming calls pass straight through, since tool calls have
+ * side effects.
+ */
+public class CachingChatModel implements LlmChatModel {
+    private final LlmChatModel delegate;
+    private final ResponseCache responseCache;
+    private final String modelName;
+
+    /**
+     * @param modelName the resolved model name, so aliases of the same model share entries
+     */
+    public CachingChatModel(LlmChatModel delegate, ResponseCache responseCache, String modelName) {
+        this.delegate = delegate;
+        this.responseCache = responseCache;
+        this.modelName = modelName;
+    }
+
+    @Override
+    public LlmResponse chat(LlmRequest llmRequest) {
+        if (llmRequest.tools() != null && !llmRequest.tools().isEmpty()) {
+            return delegate.chat(llmRequest);
+        }
+        String key = responseCache.keyOf(modelName, llmRequest);
+        Optional<LlmResponse> cached = responseCache.get(key);
+        if (cached.isPresent()) {
+            return cached.get().servedFromCache();
+        }
+        LlmResponse response = delegate.chat(llmRequest);
+        responseCache.put(key, response);
+        return response;
+    }
+
+    @Override
+    public void streamChat(LlmRequest llmRequest, StreamingChatResponseHandler handler) {
+        delegate.streamChat(llmRequest, handler);
+    }
+}
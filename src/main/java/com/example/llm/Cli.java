@@ -1,22 +1,35 @@
 package com.example.llm;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import picocli.CommandLine;
 import picocli.CommandLine.Command;
 import picocli.CommandLine.Option;
 import picocli.CommandLine.Parameters;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalInt;
 import java.util.concurrent.Callable;
 
 @Command(name = "llm", mixinStandardHelpOptions = true, version = "llm-java 1.0",
         description = "Access Large Language Models from the command-line.",
-        subcommands = {Cli.EmbedCommand.class, Cli.AliasesCommand.class, Cli.LogCommand.class, Cli.ChatCommand.class})
+        subcommands = {Cli.EmbedCommand.class, Cli.AliasesCommand.class, Cli.LogCommand.class, Cli.ChatCommand.class,
+                Cli.BatchCommand.class, Cli.SimilarCommand.class})
 public class Cli implements Callable<Integer> {
     @Parameters(index = "0", description = "The prompt to execute.", arity = "0..1")
     private String prompt;
@@ -45,6 +58,9 @@ public class Cli implements Callable<Integer> {
     @Option(names = {"--context"}, description = "Number of previous messages to include in context", defaultValue = "10")
     private int contextMessages = 10;
 
+    @Option(names = {"--no-cache"}, description = "Always call the model, bypassing the response caches")
+    private boolean noCache;
+
     private final ObjectMapper jsonMapper = new ObjectMapper();
     private final Llm llm;
     private final TemplateManager templateManager;
@@ -58,7 +74,7 @@ public class Cli implements Callable<Integer> {
 
     @Override
     public Integer call() throws Exception {
-        LlmChatModel chatModel = llm.getModel(model);
+        LlmChatModel chatModel = llm.getModel(model, !noCache);
 
         String finalPrompt;
         if (templateName != null) {
@@ -76,9 +92,11 @@ public class Cli implements Callable<Integer> {
             finalPrompt = prompt;
         }
 
+        String fragment = null;
+        String requestPrompt = finalPrompt;
         if (fragmentName != null) {
             try {
-                String fragment = fragmentManager.loadFragment(fragmentName);
+                fragment = fragmentManager.loadFragment(fragmentName);
                 if (finalPrompt != null) {
                     finalPrompt = fragment + "\n" + finalPrompt;
                 } else {
@@ -105,7 +123,7 @@ public class Cli implements Callable<Integer> {
             }
         }
 
-        LlmRequest llmRequest = new LlmRequest(finalPrompt, schema, tools);
+        LlmRequest llmRequest = requestFor(fragment, requestPrompt, schema, tools, List.of());
         
         long startTime = System.currentTimeMillis();
         LlmResponse llmResponse = chatModel.chat(llmRequest);
@@ -126,7 +144,7 @@ public class Cli implements Callable<Integer> {
                         conversationId = llm.getConversationManager().startNewConversation(
                             model, finalPrompt, llmResponse.text(),
                             llmResponse.promptTokens(), llmResponse.responseTokens(), llmResponse.totalTokens(), durationMs,
-                            schema, tools, null
+                            schema, tools, cacheMetadata(llmResponse)
                         );
                     }
                     System.out.println("Conversation ID: " + conversationId);
@@ -142,7 +160,7 @@ public class Cli implements Callable<Integer> {
                         durationMs,
                         schema,
                         tools,
-                        null
+                        cacheMetadata(llmResponse)
                     );
                 }
                 
@@ -151,14 +169,54 @@ public class Cli implements Callable<Integer> {
         return 0;
     }
 
-    @Command(name = "embed", description = "Generate an embedding for a given text.")
+    /**
+     * A loaded fragment is sent as a system message marked as a cache breakpoint, as is the end of
+     * any conversation history, so providers with prompt caching can reuse those prefixes across
+     * requests. A fragment given without a prompt is itself the prompt.
+     */
+    static LlmRequest requestFor(String fragment, String prompt, String schema, List<Object> tools, List<LlmMessage> history) {
+        List<LlmMessage> messages = new ArrayList<>(history.size() + 1);
+        if (fragment != null && prompt != null) {
+            messages.add(LlmMessage.system(fragment).cached());
+        }
+        messages.addAll(history);
+        if (!history.isEmpty()) {
+            messages.set(messages.size() - 1, messages.get(messages.size() - 1).cached());
+        }
+        return new LlmRequest(prompt != null ? prompt : fragment, schema, tools, messages);
+    }
+
+    static Map<String, Object> cacheMetadata(LlmResponse llmResponse) {
+        return llmResponse.cachedTokens() != null ? Map.of("cached_tokens", llmResponse.cachedTokens()) : null;
+    }
+
+    @Command(name = "embed", description = "Generate embeddings for a text, or for each non-blank line of a file or stdin.")
     static class EmbedCommand implements Callable<Integer> {
-        @Parameters(index = "0", description = "The text to embed.")
+        static final int STREAM_CHUNK_LINES = 4096;
+
+        @Parameters(index = "0", description = "The text to embed; omit to embed each non-blank line of the input.", arity = "0..1")
         private String text;
 
         @Option(names = {"-m", "--model"}, description = "The embedding model to use.", required = true)
         private String model;
 
+        @Option(names = {"-i", "--input"}, description = "Input file with one text per line (default: stdin)")
+        private Path input;
+
+        @Option(names = {"-o", "--output"}, description = "Output JSONL file (default: stdout)")
+        private Path output;
+
+        @Option(names = {"--store"}, description = "Append the embeddings to this vector collection instead of printing them")
+        private String collection;
+
+        @Option(names = {"--index"}, description = "With --store, maintain an HNSW index for this metric (default: COSINE)",
+                arity = "0..1", fallbackValue = "COSINE")
+        private VectorStore.Metric indexMetric;
+
+        @Option(names = {"--quantize"}, description = "With --store, keep compressed codes of the vectors: ${COMPLETION-CANDIDATES}")
+        private VectorQuantizer.Kind quantization;
+
+        private final ObjectMapper jsonMapper = new ObjectMapper();
         private final Llm llm;
 
         public EmbedCommand(Llm llm) {
@@ -168,8 +226,202 @@ public class Cli implements Callable<Integer> {
         @Override
         public Integer call() throws IOException {
             LlmEmbeddingModel llmEmbeddingModel = llm.getEmbeddingModel(model);
-            List<Float> embedding = llmEmbeddingModel.embed(text);
-            System.out.println(embedding);
+            if (collection != null) {
+                return store(llmEmbeddingModel);
+            }
+            if (text != null) {
+                System.out.println(llmEmbeddingModel.embedVector(text));
+                return 0;
+            }
+
+            try (BufferedReader reader = input != null
+                    ? Files.newBufferedReader(input, StandardCharsets.UTF_8)
+                    : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                 Writer writer = output != null
+                    ? Files.newBufferedWriter(output, StandardCharsets.UTF_8)
+                    : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+                long index = 0;
+                List<String> chunk = new ArrayList<>();
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    chunk.add(line);
+                    if (chunk.size() == STREAM_CHUNK_LINES) {
+                        index = writeEmbeddings(llmEmbeddingModel, chunk, index, writer);
+                        chunk.clear();
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    writeEmbeddings(llmEmbeddingModel, chunk, index, writer);
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Embeds one chunk of lines with a single {@code embedAll} and writes a JSONL line per
+         * embedding; returns the index of the next line. Blank lines are skipped before this and
+         * not numbered, as in {@link BatchRunner}.
+         */
+        private long writeEmbeddings(LlmEmbeddingModel llmEmbeddingModel, List<String> lines, long index, Writer writer)
+                throws IOException {
+            for (LlmEmbedding embedding : llmEmbeddingModel.embedAllVectors(lines)) {
+                ObjectNode node = jsonMapper.createObjectNode();
+                node.put("index", index++);
+                ArrayNode vector = node.putArray("embedding");
+                for (float value : embedding.vector()) {
+                    vector.add(value);
+                }
+                writer.write(jsonMapper.writeValueAsString(node));
+                writer.write('\n');
+            }
+            return index;
+        }
+
+        /**
+         * Embeds the text argument or each non-blank input line into the collection, identifying
+         * each by its position in the collection and keeping the text as metadata. The collection
+         * is created with the dimension of the first embedding. With {@code --index}, the HNSW
+         * index is created before the first chunk so each chunk is inserted as it is stored. With
+         * {@code --quantize}, a new quantizer is trained once everything is stored, so it learns
+         * from the whole input; existing codes just grow.
+         */
+        private Integer store(LlmEmbeddingModel llmEmbeddingModel) throws IOException {
+            Path directory = llm.getVectorCollectionPath(collection);
+            VectorStore store = null;
+            long stored = 0;
+            try (BufferedReader reader = text != null
+                    ? new BufferedReader(new StringReader(text))
+                    : input != null
+                    ? Files.newBufferedReader(input, StandardCharsets.UTF_8)
+                    : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))) {
+                List<String> chunk = new ArrayList<>();
+                String line = reader.readLine();
+                while (line != null || !chunk.isEmpty()) {
+                    if (line != null) {
+                        if (!line.isBlank()) {
+                            chunk.add(line);
+                        }
+                        line = reader.readLine();
+                    }
+                    if (chunk.size() == STREAM_CHUNK_LINES || line == null && !chunk.isEmpty()) {
+                        List<LlmEmbedding> embeddings = llmEmbeddingModel.embedAllVectors(chunk);
+                        if (store == null) {
+                            store = VectorStore.open(directory, embeddings.get(0).dimension());
+                            if (indexMetric != null && (store.index() == null || store.index().metric() != indexMetric)) {
+                                ModelConfig config = llm.getConfig();
+                                store.createIndex(indexMetric,
+                                        config.get("vectors.hnsw.m").map(value -> Integer.parseInt(value.trim()))
+                                                .orElse(HnswIndex.DEFAULT_M),
+                                        config.get("vectors.hnsw.ef.construction").map(value -> Integer.parseInt(value.trim()))
+                                                .orElse(HnswIndex.DEFAULT_EF_CONSTRUCTION));
+                            }
+                        }
+                        List<String> ids = new ArrayList<>();
+                        List<Map<String, String>> metadata = new ArrayList<>();
+                        for (String chunkText : chunk) {
+                            ids.add(String.valueOf(store.size() + ids.size()));
+                            metadata.add(Map.of("text", chunkText));
+                        }
+                        store.addAll(ids, embeddings, metadata);
+                        stored += chunk.size();
+                        chunk.clear();
+                    }
+                }
+                if (store != null && quantization != null
+                        && (store.quantized() == null || store.quantized().quantizer().kind() != quantization)) {
+                    store.createQuantization(quantization, llm.getConfig().get("vectors.pq.subspaces")
+                            .map(value -> Integer.parseInt(value.trim())).orElse(0));
+                }
+            } finally {
+                if (store != null) {
+                    store.close();
+                }
+            }
+            System.err.printf("Stored %d embeddings in %s%n", stored, directory);
+            return 0;
+        }
+    }
+
+    @Command(name = "similar", description = "Find the stored embeddings most similar to a text or a stored id.")
+    static class SimilarCommand implements Callable<Integer> {
+        @Parameters(index = "0", description = "The vector collection to search.")
+        private String collection;
+
+        @Parameters(index = "1", description = "The text to search for; omit when using --id.", arity = "0..1")
+        private String text;
+
+        @Option(names = {"-m", "--model"}, description = "The embedding model the collection was built with.")
+        private String model;
+
+        @Option(names = {"--id"}, description = "Search with a stored embedding instead of embedding text")
+        private String id;
+
+        @Option(names = {"-n", "--number"}, description = "Number of results", defaultValue = "10")
+        private int number;
+
+        @Option(names = {"--metric"}, description = "Similarity metric: ${COMPLETION-CANDIDATES}", defaultValue = "COSINE")
+        private VectorStore.Metric metric;
+
+        @Option(names = {"--exact"}, description = "Scan every full-precision vector, bypassing the HNSW index and quantized codes")
+        private boolean exact;
+
+        @Option(names = {"--ef"}, description = "HNSW candidate list size; higher trades speed for recall")
+        private Integer efSearch;
+
+        @Option(names = {"--rerank"}, description = "Quantized candidates re-scored at full precision per result")
+        private Integer rerank;
+
+        private final ObjectMapper jsonMapper = new ObjectMapper();
+        private final Llm llm;
+
+        public SimilarCommand(Llm llm) {
+            this.llm = llm;
+        }
+
+        @Override
+        public Integer call() throws IOException {
+            if ((text == null) == (id == null)) {
+                System.err.println("Give either a text to embed or --id");
+                return 1;
+            }
+            if (text != null && model == null) {
+                System.err.println("--model is required to embed the search text");
+                return 1;
+            }
+            try (VectorStore store = VectorStore.openReadOnly(llm.getVectorCollectionPath(collection))) {
+                LlmEmbedding query;
+                if (id != null) {
+                    long index = store.indexOf(id);
+                    if (index < 0) {
+                        System.err.println("No embedding with id " + id + " in " + collection);
+                        return 1;
+                    }
+                    query = store.get(index);
+                } else {
+                    query = llm.getEmbeddingModel(model).embedVector(text);
+                }
+                if (store.index() != null) {
+                    store.index().setEfSearch(efSearch != null ? efSearch : llm.getConfig().get("vectors.hnsw.ef.search")
+                            .map(value -> Integer.parseInt(value.trim())).orElse(HnswIndex.DEFAULT_EF_SEARCH));
+                }
+                if (store.quantized() != null) {
+                    store.quantized().setRerank(rerank != null ? rerank : llm.getConfig().get("vectors.quantization.rerank")
+                            .map(value -> Integer.parseInt(value.trim())).orElse(QuantizedVectors.DEFAULT_RERANK));
+                }
+                List<VectorStore.Match> matches = exact
+                        ? store.searchExact(query, number, metric)
+                        : store.search(query, number, metric);
+                for (VectorStore.Match match : matches) {
+                    ObjectNode node = jsonMapper.createObjectNode();
+                    node.put("id", match.id());
+                    node.put("score", match.score());
+                    match.metadata().forEach(node::put);
+                    System.out.println(jsonMapper.writeValueAsString(node));
+                }
+            }
             return 0;
         }
     }
@@ -204,7 +456,7 @@ public class Cli implements Callable<Integer> {
             @Parameters(index = "0", description = "The alias to set.")
             private String alias;
 
-            @Parameters(index = "1", description = "The model name the alias should point to.")
+            @Parameters(index = "1", description = "The model name the alias should point to; a comma-separated list of provider/model pairs routes between them.")
             private String modelName;
 
             private final Llm llm;
@@ -259,6 +511,9 @@ public class Cli implements Callable<Integer> {
             @Option(names = {"-o", "--offset"}, description = "Number of conversations to skip", defaultValue = "0")
             private int offset;
 
+            @Option(names = {"-b", "--before"}, description = "Show conversations older than this ID (H2 only; faster than --offset for deep pages)")
+            private Long before;
+
             private final Llm llm;
 
             public ListCommand(Llm llm) {
@@ -272,7 +527,14 @@ public class Cli implements Callable<Integer> {
                     return 1;
                 }
 
-                List<Conversation> conversations = llm.getLogManager().getConversations(limit, offset);
+                if (before != null && !llm.getLogManager().hasConversationIds()) {
+                    System.err.println("Error: --before requires the H2 log backend, whose conversations have ids.");
+                    return 1;
+                }
+
+                List<Conversation> conversations = before != null
+                        ? llm.getLogManager().getConversationsBefore(before, limit)
+                        : llm.getLogManager().getConversations(limit, offset);
                 if (conversations.isEmpty()) {
                     System.out.println("No conversations found.");
                     return 0;
@@ -354,10 +616,58 @@ public class Cli implements Callable<Integer> {
         if (llm.getLogManager() != null) {
             llm.getLogManager().close();
         }
+        llm.closeResponseCache();
         
         System.exit(exitCode);
     }
 
+    @Command(name = "batch", description = "Run many prompts from a file or stdin concurrently.")
+    static class BatchCommand implements Callable<Integer> {
+        @Option(names = {"-m", "--model"}, description = "The model to use.", required = true)
+        private String model;
+
+        @Option(names = {"-i", "--input"}, description = "Input file: one prompt per line, or JSONL objects with 'prompt' and optional 'id' (default: stdin)")
+        private Path input;
+
+        @Option(names = {"-o", "--output"}, description = "Output JSONL file (default: stdout)")
+        private Path output;
+
+        @Option(names = {"-j", "--concurrency"}, description = "Maximum requests in flight", defaultValue = "8")
+        private int concurrency;
+
+        @Option(names = {"--order"}, description = "Result order: ${COMPLETION-CANDIDATES}", defaultValue = "INPUT")
+        private BatchRunner.Order order;
+
+        @Option(names = {"--no-cache"}, description = "Always call the model, bypassing the response caches")
+        private boolean noCache;
+
+        private final Llm llm;
+
+        public BatchCommand(Llm llm) {
+            this.llm = llm;
+        }
+
+        @Override
+        public Integer call() throws IOException {
+            LlmChatModel chatModel = llm.getModel(model, !noCache);
+            LogManager logManager = llm.isLoggingEnabled() ? llm.getLogManager() : null;
+            BatchRunner runner = new BatchRunner(chatModel, model, concurrency, order, logManager);
+
+            BatchRunner.Summary summary;
+            try (BufferedReader reader = input != null
+                    ? Files.newBufferedReader(input, StandardCharsets.UTF_8)
+                    : new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+                 Writer writer = output != null
+                    ? Files.newBufferedWriter(output, StandardCharsets.UTF_8)
+                    : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))) {
+                summary = runner.run(reader, writer);
+            }
+            System.err.printf("Completed %d prompts (%d failed) in %d ms%n",
+                    summary.total(), summary.failed(), summary.elapsedMs());
+            return summary.failed() > 0 ? 1 : 0;
+        }
+    }
+
     static class AppFactory implements CommandLine.IFactory {
         private final Llm llm;
         private final TemplateManager templateManager;
@@ -398,6 +708,10 @@ public class Cli implements Callable<Integer> {
                 return (K) new ChatCommand.ContinueCommand(llm, templateManager, fragmentManager);
             } else if (cls == ChatCommand.ListCommand.class) {
                 return (K) new ChatCommand.ListCommand(llm);
+            } else if (cls == BatchCommand.class) {
+                return (K) new BatchCommand(llm);
+            } else if (cls == SimilarCommand.class) {
+                return (K) new SimilarCommand(llm);
             } else {
                 return cls.getDeclaredConstructor().newInstance();
             }
@@ -469,9 +783,11 @@ public class Cli implements Callable<Integer> {
                     }
                 }
 
+                String fragment = null;
+                String requestPrompt = finalPrompt;
                 if (fragmentName != null) {
                     try {
-                        String fragment = fragmentManager.loadFragment(fragmentName);
+                        fragment = fragmentManager.loadFragment(fragmentName);
                         if (finalPrompt != null) {
                             finalPrompt = fragment + "\n" + finalPrompt;
                         } else {
@@ -493,7 +809,7 @@ public class Cli implements Callable<Integer> {
                     }
                 }
 
-                LlmRequest llmRequest = new LlmRequest(finalPrompt, schema, tools);
+                LlmRequest llmRequest = requestFor(fragment, requestPrompt, schema, tools, List.of());
                 
                 long startTime = System.currentTimeMillis();
                 LlmResponse llmResponse = chatModel.chat(llmRequest);
@@ -502,7 +818,7 @@ public class Cli implements Callable<Integer> {
                 String conversationId = llm.getConversationManager().startNewConversation(
                     model, finalPrompt, llmResponse.text(),
                     llmResponse.promptTokens(), llmResponse.responseTokens(), llmResponse.totalTokens(), durationMs,
-                    schema, tools, null
+                    schema, tools, cacheMetadata(llmResponse)
                 );
                 
                 System.out.println(llmResponse.text());
@@ -523,8 +839,11 @@ public class Cli implements Callable<Integer> {
             @Option(names = {"-m", "--model"}, description = "The model to use", required = true)
             private String model;
 
-            @Option(names = {"--context"}, description = "Number of previous messages to include", defaultValue = "10")
-            private int contextMessages = 10;
+            @Option(names = {"--context"}, description = "Maximum number of previous messages to include (default: 10 without a token budget)")
+            private Integer contextMessages;
+
+            @Option(names = {"--context-tokens"}, description = "Token budget for history plus the new prompt (default: context.max.tokens config)")
+            private Integer contextTokens;
 
             @Option(names = {"--schema"}, description = "A JSON schema to use for the response")
             private String schema;
@@ -560,9 +879,6 @@ public class Cli implements Callable<Integer> {
 
                 LlmChatModel chatModel = llm.getModel(model);
 
-                // Get conversation context
-                List<String> context = llm.getConversationManager().getConversationContext(conversationId, contextMessages);
-                
                 String finalPrompt = newPrompt;
                 if (templateName != null) {
                     try {
@@ -577,9 +893,11 @@ public class Cli implements Callable<Integer> {
                     }
                 }
 
+                String fragment = null;
+                String requestPrompt = finalPrompt;
                 if (fragmentName != null) {
                     try {
-                        String fragment = fragmentManager.loadFragment(fragmentName);
+                        fragment = fragmentManager.loadFragment(fragmentName);
                         if (finalPrompt != null) {
                             finalPrompt = fragment + "\n" + finalPrompt;
                         } else {
@@ -591,18 +909,21 @@ public class Cli implements Callable<Integer> {
                     }
                 }
 
-                // Build context-aware prompt
-                StringBuilder contextBuilder = new StringBuilder();
-                if (!context.isEmpty()) {
-                    contextBuilder.append("Previous conversation:\n");
-                    for (String message : context) {
-                        contextBuilder.append(message).append("\n");
-                    }
-                    contextBuilder.append("\n");
+                // Send the most recent history that fits the token budget as separate chat messages
+                OptionalInt tokenBudget = contextTokens != null
+                        ? OptionalInt.of(contextTokens)
+                        : ContextWindowBuilder.tokenBudgetFor(llm.getConfig(), model);
+                List<LlmMessage> context;
+                if (tokenBudget.isPresent()) {
+                    List<String> history = llm.getConversationManager().getConversationContext(
+                        conversationId, contextMessages != null ? contextMessages : Integer.MAX_VALUE);
+                    context = new ContextWindowBuilder(tokenBudget.getAsInt()).select(history, finalPrompt).stream()
+                        .map(LlmMessage::fromHistoryLine)
+                        .toList();
+                } else {
+                    context = llm.getConversationManager().getContextMessages(
+                        conversationId, contextMessages != null ? contextMessages : 10);
                 }
-                contextBuilder.append("New prompt: ").append(finalPrompt);
-                
-                String contextPrompt = contextBuilder.toString();
 
                 List<Object> tools = new ArrayList<>();
                 if (tool != null) {
@@ -614,7 +935,7 @@ public class Cli implements Callable<Integer> {
                     }
                 }
 
-                LlmRequest llmRequest = new LlmRequest(contextPrompt, schema, tools);
+                LlmRequest llmRequest = requestFor(fragment, requestPrompt, schema, tools, context);
                 
                 long startTime = System.currentTimeMillis();
                 LlmResponse llmResponse = chatModel.chat(llmRequest);
@@ -0,0 +1,101 @@
+package com.example.llm;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.OptionalInt;
+import java.util.function.Function;
+
+/**
+ * Chooses which conversation messages go into the next prompt under a token budget. Messages are
+ * taken newest first for as long as they fit next to the new prompt, so one long message no
+ * longer pushes out several short recent ones and a long conversation cannot grow the prompt
+ * without bound. Messages that did not fit can optionally be condensed by a summarizer into a
+ * single leading message.
+ */
+public class ContextWindowBuilder {
+    /** Allowance for the role prefix and separators around each message. */
+    static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    private final int tokenBudget;
+    private final TokenEstimator estimator;
+    private final Function<List<String>, String> summarizer;
+
+    public ContextWindowBuilder(int tokenBudget) {
+        this(tokenBudget, TokenEstimator.defaultEstimator(), null);
+    }
+
+    public ContextWindowBuilder(int tokenBudget, TokenEstimator estimator) {
+        this(tokenBudget, estimator, null);
+    }
+
+    /**
+     * @param summarizer turns the messages that did not fit into one summary message, or null to
+     *                   drop them
+     */
+    public ContextWindowBuilder(int tokenBudget, TokenEstimator estimator, Function<List<String>, String> summarizer) {
+        this.tokenBudget = tokenBudget;
+        this.estimator = estimator;
+        this.summarizer = summarizer;
+    }
+
+    /**
+     * Token budget configured for a model: {@code context.max.tokens.<model>} if set, otherwise
+     * {@code context.max.tokens}.
+     */
+    public static OptionalInt tokenBudgetFor(ModelConfig config, String model) {
+        return config.get("context.max.tokens." + model)
+                .or(() -> config.get("context.max.tokens"))
+                .map(value -> OptionalInt.of(Integer.parseInt(value.trim())))
+                .orElse(OptionalInt.empty());
+    }
+
+    /**
+     * The most recent messages of {@code history} that fit in the budget left after
+     * {@code newPrompt}, in conversation order.
+     */
+    public List<String> select(List<String> history, String newPrompt) {
+        int remaining = tokenBudget - estimator.estimate(newPrompt);
+        List<String> selected = new ArrayList<>();
+        int index = history.size() - 1;
+        for (; index >= 0; index--) {
+            int cost = cost(history.get(index));
+            if (cost > remaining) {
+                break;
+            }
+            selected.add(history.get(index));
+            remaining -= cost;
+        }
+        Collections.reverse(selected);
+
+        if (index >= 0 && summarizer != null) {
+            String summary = summarizer.apply(history.subList(0, index + 1));
+            if (summary != null && !summary.isEmpty() && cost(summary) <= remaining) {
+                selected.add(0, summary);
+            }
+        }
+        return selected;
+    }
+
+    public String build(List<String> history, String newPrompt) {
+        return render(select(history, newPrompt), newPrompt);
+    }
+
+    static String render(List<String> context, String newPrompt) {
+        if (context.isEmpty()) {
+            return newPrompt;
+        }
+
+        StringBuilder contextBuilder = new StringBuilder();
+        contextBuilder.append("Previous conversation:\n");
+        for (String message : context) {
+            contextBuilder.append(message).append("\n");
+        }
+        contextBuilder.append("\nNew prompt: ").append(newPrompt);
+        return contextBuilder.toString();
+    }
+
+    private int cost(String message) {
+        return estimator.estimate(message) + MESSAGE_OVERHEAD_TOKENS;
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.llm;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU cache of conversation histories, sized by the total number of characters held
+ * rather than by entry count, so a few very long conversations cannot crowd out memory. Entries
+ * are filled from the log store on a miss and appended to on every write made through
+ * {@link ConversationManager}, so a multi-turn conversation is read from the store at most once.
+ * Writes made by other processes are not seen; call {@link #invalidate(String)} when the log is
+ * shared.
+ */
+public class ConversationContextCache {
+    private final long maxChars;
+    private final Map<String, List<String>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedChars;
+    private long writes;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public ConversationContextCache(long maxChars) {
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * Returns the last {@code maxMessages} messages of the conversation, loading its full history
+     * with {@code loader} on a miss.
+     */
+    public List<String> get(String conversationId, int maxMessages, Function<String, List<String>> loader) {
+        long writesBeforeLoad;
+        synchronized (this) {
+            List<String> history = entries.get(conversationId);
+            if (history != null) {
+                hits++;
+                return tail(history, maxMessages);
+            }
+            misses++;
+            writesBeforeLoad = writes;
+        }
+
+        // Load outside the lock so a slow store read does not block other conversations
+        List<String> history = new ArrayList<>(loader.apply(conversationId));
+        synchronized (this) {
+            // A write that raced with the load may be missing from it; serve it but do not cache it
+            if (writes == writesBeforeLoad && !entries.containsKey(conversationId)) {
+                put(conversationId, history);
+            }
+            return tail(history, maxMessages);
+        }
+    }
+
+    /**
+     * Appends messages to a cached history. Conversations that are not cached are left alone and
+     * will be loaded from the store on their next read.
+     */
+    public synchronized void append(String conversationId, List<String> messages) {
+        writes++;
+        List<String> history = entries.get(conversationId);
+        if (history == null) {
+            return;
+        }
+        history.addAll(messages);
+        cachedChars += charsOf(messages);
+        if (cachedChars > maxChars) {
+            evictOverflow(conversationId);
+        }
+    }
+
+    public synchronized void invalidate(String conversationId) {
+        writes++;
+        List<String> removed = entries.remove(conversationId);
+        if (removed != null) {
+            cachedChars -= charsOf(removed);
+        }
+    }
+
+    public synchronized void clear() {
+        writes++;
+        entries.clear();
+        cachedChars = 0;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getCachedChars() {
+        return cachedChars;
+    }
+
+    private void put(String conversationId, List<String> history) {
+        long chars = charsOf(history);
+        if (chars > maxChars) {
+            return;
+        }
+        entries.put(conversationId, history);
+        cachedChars += chars;
+        evictOverflow(conversationId);
+    }
+
+    private void evictOverflow(String keep) {
+        var iterator = entries.entrySet().iterator();
+        while (cachedChars > maxChars && iterator.hasNext()) {
+            Map.Entry<String, List<String>> eldest = iterator.next();
+            if (eldest.getKey().equals(keep) && entries.size() > 1) {
+                continue;
+            }
+            cachedChars -= charsOf(eldest.getValue());
+            iterator.remove();
+            evictions++;
+        }
+    }
+
+    private static List<String> tail(List<String> history, int maxMessages) {
+        int from = Math.max(0, history.size() - Math.max(0, maxMessages));
+        return new ArrayList<>(history.subList(from, history.size()));
+    }
+
+    private static long charsOf(List<String> messages) {
+        long chars = 0;
+        for (String message : messages) {
+            chars += message.length();
+        }
+        return chars;
+    }
+}
@@ -5,10 +5,21 @@ import java.util.Map;
 import java.util.UUID;
 
 public class ConversationManager {
+    public static final long DEFAULT_CONTEXT_CACHE_CHARS = 8_000_000;
+
     private final LogManager logManager;
+    private final ConversationContextCache contextCache;
 
     public ConversationManager(LogManager logManager, Llm llm) {
+        this(logManager, llm, DEFAULT_CONTEXT_CACHE_CHARS);
+    }
+
+    /**
+     * @param contextCacheChars character budget for cached conversation histories; 0 disables the cache
+     */
+    public ConversationManager(LogManager logManager, Llm llm, long contextCacheChars) {
         this.logManager = logManager;
+        this.contextCache = contextCacheChars > 0 ? new ConversationContextCache(contextCacheChars) : null;
     }
 
     public String startNewConversation(String model, String prompt, String response, 
@@ -25,11 +36,28 @@ public class ConversationManager {
                                      Long durationMs) {
         
         logManager.continueConversation(conversationId, newPrompt, newResponse, promptTokens, responseTokens, totalTokens, durationMs);
+        if (contextCache != null) {
+            contextCache.append(conversationId, List.of("user: " + newPrompt, "assistant: " + newResponse));
+        }
         return conversationId;
     }
 
+    /**
+     * The last {@code maxMessages} messages of the conversation, as {@code "role: content"} strings.
+     */
     public List<String> getConversationContext(String conversationId, int maxMessages) {
-        return logManager.getConversationHistory(conversationId, maxMessages);
+        if (contextCache == null) {
+            return logManager.getConversationHistory(conversationId, maxMessages);
+        }
+        return contextCache.get(conversationId, maxMessages,
+                id -> logManager.getConversationHistory(id, Integer.MAX_VALUE));
+    }
+
+    /**
+     * The cache of conversation histories, or null when caching is disabled.
+     */
+    public ConversationContextCache getContextCache() {
+        return contextCache;
     }
 
     public List<Conversation> getRecentConversations(int limit) {
@@ -45,21 +73,33 @@ public class ConversationManager {
     }
 
     public String buildContextPrompt(String conversationId, String newPrompt, int maxContextMessages) {
-        List<String> history = getConversationContext(conversationId, maxContextMessages);
-        
-        if (history.isEmpty()) {
-            return newPrompt;
-        }
-        
-        StringBuilder contextBuilder = new StringBuilder();
-        contextBuilder.append("Previous conversation:\n");
-        
-        for (String message : history) {
-            contextBuilder.append(message).append("\n");
-        }
-        
-        contextBuilder.append("\nNew prompt: ").append(newPrompt);
-        
-        return contextBuilder.toString();
+        return ContextWindowBuilder.render(getConversationContext(conversationId, maxContextMessages), newPrompt);
+    }
+
+    /**
+     * The last {@code maxMessages} messages of the conversation as structured chat messages, to be
+     * sent in {@link LlmRequest#messages()} ahead of the new prompt.
+     */
+    public List<LlmMessage> getContextMessages(String conversationId, int maxMessages) {
+        return getConversationContext(conversationId, maxMessages).stream()
+                .map(LlmMessage::fromHistoryLine)
+                .toList();
+    }
+
+    /**
+     * As much recent history as fits the builder's token budget next to {@code newPrompt}, as
+     * structured chat messages.
+     */
+    public List<LlmMessage> getContextMessages(String conversationId, String newPrompt, ContextWindowBuilder contextWindow) {
+        return contextWindow.select(getConversationContext(conversationId, Integer.MAX_VALUE), newPrompt).stream()
+                .map(LlmMessage::fromHistoryLine)
+                .toList();
+    }
+
+    /**
+     * Builds the prompt from as much recent history as fits the builder's token budget.
+     */
+    public String buildContextPrompt(String conversationId, String newPrompt, ContextWindowBuilder contextWindow) {
+        return contextWindow.build(getConversationContext(conversationId, Integer.MAX_VALUE), newPrompt);
     }
-}
\ No newline at end of file
+}
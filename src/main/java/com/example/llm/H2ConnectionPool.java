@@ -0,0 +1,278 @@
+package com.example.llm;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Minimal connection pool for the H2 log backend. Connections are opened lazily up to a fixed
+ * maximum and each one keeps an LRU cache of {@link PreparedStatement}s, so concurrent callers
+ * can log in parallel without re-parsing the same SQL on every insert and query. A semaphore
+ * holds one permit per connection the pool may still hand out, so a caller waiting for a
+ * connection is woken both by a release and by a broken connection being discarded.
+ */
+public class H2ConnectionPool implements AutoCloseable {
+    private static final int STATEMENT_CACHE_SIZE = 32;
+
+    private final String jdbcUrl;
+    private final Properties properties;
+    private final long acquireTimeoutMs;
+    private final Semaphore available;
+    private final BlockingQueue<Entry> idle = new LinkedBlockingQueue<>();
+    private final List<Entry> all = new ArrayList<>();
+    private volatile boolean closed;
+
+    public H2ConnectionPool(String jdbcUrl, Properties properties, int maxSize, long acquireTimeoutMs) {
+        this.jdbcUrl = jdbcUrl;
+        this.properties = properties;
+        this.acquireTimeoutMs = acquireTimeoutMs;
+        this.available = new Semaphore(maxSize);
+    }
+
+    /**
+     * Borrows a connection; close the returned lease to give it back. Cached statements obtained
+     * from the lease must not be closed by the caller.
+     */
+    public PooledConnection acquire() throws SQLException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        try {
+            if (!available.tryAcquire(acquireTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new SQLException("Timed out after " + acquireTimeoutMs + "ms waiting for a pooled H2 connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a pooled H2 connection", e);
+        }
+        try {
+            // Holding a permit, either a connection is idle or the pool is below its maximum
+            Entry entry = idle.poll();
+            return new PooledConnection(entry != null ? entry : create());
+        } catch (SQLException | RuntimeException e) {
+            available.release();
+            throw e;
+        }
+    }
+
+    private Entry create() throws SQLException {
+        Entry entry = new Entry(DriverManager.getConnection(jdbcUrl, properties));
+        synchronized (all) {
+            all.add(entry);
+        }
+        return entry;
+    }
+
+    private void release(Entry entry) {
+        try {
+            entry.clearBatches();
+            if (!entry.connection.getAutoCommit()) {
+                entry.connection.rollback();
+                entry.connection.setAutoCommit(true);
+            }
+            if (!closed && !entry.connection.isClosed()) {
+                idle.offer(entry);
+                available.release();
+                return;
+            }
+        } catch (SQLException e) {
+            // fall through and discard the broken connection
+        }
+        discard(entry);
+        available.release();
+    }
+
+    private void discard(Entry entry) {
+        synchronized (all) {
+            all.remove(entry);
+        }
+        entry.closeQuietly();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        closed = true;
+        idle.clear();
+        SQLException failure = null;
+        synchronized (all) {
+            for (Entry entry : all) {
+                try {
+                    entry.closeStatements();
+                    entry.connection.close();
+                } catch (SQLException e) {
+                    failure = e;
+                }
+            }
+            all.clear();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * A unit of work run against a leased connection.
+     */
+    @FunctionalInterface
+    public interface Work {
+        void run(PooledConnection connection) throws SQLException, IOException;
+    }
+
+    /**
+     * A lease on a pooled connection. Closing it gives the connection back to the pool; closing
+     * it again, explicitly or by try-with-resources, does nothing, and the lease is not to be
+     * used after its first close.
+     */
+    public final class PooledConnection implements AutoCloseable {
+        private final Entry entry;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private PooledConnection(Entry entry) {
+            this.entry = entry;
+        }
+
+        public Connection connection() {
+            return entry.connection;
+        }
+
+        public PreparedStatement prepare(String sql) throws SQLException {
+            return entry.prepare(sql, Statement.NO_GENERATED_KEYS);
+        }
+
+        public PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+            return entry.prepare(sql, autoGeneratedKeys);
+        }
+
+        /**
+         * Like {@link #prepare(String)}, but remembers the statement so that rows added with
+         * {@code addBatch} are sent by {@link #executeBatches()}.
+         */
+        public PreparedStatement prepareBatch(String sql) throws SQLException {
+            PreparedStatement statement = prepare(sql);
+            entry.batched.add(statement);
+            return statement;
+        }
+
+        /**
+         * Executes pending batches in the order their statements were first prepared, so parent
+         * rows are inserted before the rows that reference them.
+         */
+        public void executeBatches() throws SQLException {
+            try {
+                for (PreparedStatement statement : entry.batched) {
+                    statement.executeBatch();
+                }
+            } finally {
+                entry.batched.clear();
+            }
+        }
+
+        /**
+         * Runs the work in a single transaction, flushing its batches before committing.
+         */
+        public void inTransaction(Work work) throws SQLException, IOException {
+            Connection connection = entry.connection;
+            connection.setAutoCommit(false);
+            try {
+                work.run(this);
+                executeBatches();
+                connection.commit();
+            } catch (SQLException | IOException | RuntimeException e) {
+                entry.clearBatches();
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(entry);
+            }
+        }
+    }
+
+    /**
+     * A physical connection together with its prepared statement cache.
+     */
+    private static final class Entry {
+        private final Connection connection;
+        private final Set<PreparedStatement> batched = new LinkedHashSet<>();
+        private final Map<String, PreparedStatement> statements =
+                new LinkedHashMap<>(16, 0.75f, true) {
+                    @Override
+                    protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                        if (size() > STATEMENT_CACHE_SIZE) {
+                            closeQuietly(eldest.getValue());
+                            return true;
+                        }
+                        return false;
+                    }
+                };
+
+        private Entry(Connection connection) {
+            this.connection = connection;
+        }
+
+        private PreparedStatement prepare(String sql, int autoGeneratedKeys) throws SQLException {
+            String key = autoGeneratedKeys + ":" + sql;
+            PreparedStatement statement = statements.get(key);
+            if (statement == null || statement.isClosed()) {
+                statement = connection.prepareStatement(sql, autoGeneratedKeys);
+                statements.put(key, statement);
+            } else {
+                statement.clearParameters();
+            }
+            return statement;
+        }
+
+        private void clearBatches() throws SQLException {
+            try {
+                for (PreparedStatement statement : batched) {
+                    statement.clearBatch();
+                }
+            } finally {
+                batched.clear();
+            }
+        }
+
+        private void closeStatements() {
+            statements.values().forEach(Entry::closeQuietly);
+            statements.clear();
+        }
+
+        private void closeQuietly() {
+            closeStatements();
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // already discarded
+            }
+        }
+
+        private static void closeQuietly(PreparedStatement statement) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                // evicted statement is no longer used
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.llm;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Group commit for the H2 log backend. Writes submitted by concurrent callers are collected while
+ * they keep arriving, for at most {@code maxDelayMs} or until {@code maxBatchSize} are pending, then
+ * run as JDBC batches in one transaction. Each caller blocks until the transaction holding its
+ * write has committed. If a group fails, its writes are retried one transaction each so that one
+ * bad write does not fail the others.
+ */
+public class H2GroupCommitter implements AutoCloseable {
+    private record Pending(H2ConnectionPool.Work work, CompletableFuture<Void> done) {
+    }
+
+    private static final Pending CLOSE = new Pending(null, null);
+    private static final long LINGER_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+    private final H2ConnectionPool pool;
+    private final int maxBatchSize;
+    private final long maxDelayMs;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final Thread committerThread;
+    private volatile boolean closed;
+
+    public H2GroupCommitter(H2ConnectionPool pool, int maxBatchSize, long maxDelayMs) {
+        this.pool = pool;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayMs = maxDelayMs;
+        this.committerThread = new Thread(this::run, "h2-group-commit");
+        this.committerThread.setDaemon(true);
+        this.committerThread.start();
+    }
+
+    public void submit(H2ConnectionPool.Work work) throws SQLException, IOException {
+        if (closed) {
+            throw new SQLException("Group committer is closed");
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        queue.add(new Pending(work, done));
+        try {
+            done.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for group commit", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            } else if (cause instanceof IOException ioException) {
+                throw ioException;
+            } else if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new SQLException("Group commit failed", cause);
+        }
+    }
+
+    private void run() {
+        List<Pending> group = new ArrayList<>(maxBatchSize);
+        boolean running = true;
+        while (running) {
+            try {
+                group.add(queue.take());
+                queue.drainTo(group, maxBatchSize - 1);
+                // Linger for more writes only while they keep arriving, so a lone writer is not delayed
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+                int lastSize = 0;
+                while (group.size() > lastSize && group.size() < maxBatchSize && !group.contains(CLOSE)) {
+                    lastSize = group.size();
+                    long remaining = deadline - System.nanoTime();
+                    Pending next = remaining > 0 ? queue.poll(Math.min(remaining, LINGER_NANOS), TimeUnit.NANOSECONDS) : null;
+                    if (next != null) {
+                        group.add(next);
+                        queue.drainTo(group, maxBatchSize - group.size());
+                    }
+                }
+                if (group.remove(CLOSE)) {
+                    running = false;
+                    queue.drainTo(group);
+                }
+                commit(group);
+            } catch (InterruptedException e) {
+                running = false;
+            }
+            group.clear();
+        }
+    }
+
+    private void commit(List<Pending> group) {
+        if (group.isEmpty()) {
+            return;
+        }
+        try (H2ConnectionPool.PooledConnection connection = pool.acquire()) {
+            try {
+                connection.inTransaction(c -> {
+                    for (Pending pending : group) {
+                        pending.work().run(c);
+                    }
+                });
+                group.forEach(pending -> pending.done().complete(null));
+            } catch (SQLException | IOException | RuntimeException groupFailure) {
+                for (Pending pending : group) {
+                    try {
+                        connection.inTransaction(pending.work());
+                        pending.done().complete(null);
+                    } catch (SQLException | IOException | RuntimeException e) {
+                        pending.done().completeExceptionally(e);
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            group.forEach(pending -> pending.done().completeExceptionally(e));
+        }
+    }
+
+    /**
+     * Commits everything still queued and stops the committer thread.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        queue.add(CLOSE);
+        try {
+            committerThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
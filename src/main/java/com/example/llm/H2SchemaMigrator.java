@@ -0,0 +1,116 @@
+package com.example.llm;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Versioned schema migrations for the H2 log backend. Applied versions are recorded in a
+ * {@code schema_version} table; on startup every migration newer than the recorded version runs
+ * once, in order. Migrations only use idempotent DDL, so databases created before versioning
+ * existed, or two processes migrating the same file at once, converge on the same schema.
+ */
+public class H2SchemaMigrator {
+    /**
+     * One schema change: a version number, a short description and the statements to run.
+     */
+    public record Migration(int version, String description, List<String> statements) {
+    }
+
+    public static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "conversations and messages tables", List.of(
+                    """
+                    CREATE TABLE IF NOT EXISTS conversations (
+                        id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                        timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        model VARCHAR(255) NOT NULL,
+                        prompt TEXT NOT NULL,
+                        response TEXT NOT NULL,
+                        prompt_tokens INTEGER,
+                        response_tokens INTEGER,
+                        total_tokens INTEGER,
+                        duration_ms BIGINT,
+                        schema VARCHAR(500),
+                        tools TEXT,
+                        metadata JSON
+                    )
+                    """,
+                    """
+                    CREATE TABLE IF NOT EXISTS messages (
+                        id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                        conversation_id BIGINT NOT NULL,
+                        role VARCHAR(20) NOT NULL,
+                        content TEXT NOT NULL,
+                        timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                        FOREIGN KEY (conversation_id) REFERENCES conversations(id)
+                    )
+                    """)),
+            new Migration(2, "index for keyset paging", List.of(
+                    "CREATE INDEX IF NOT EXISTS idx_conversations_timestamp ON conversations(timestamp, id)")),
+            // H2 serves history lookups from the foreign key's own index on messages(conversation_id)
+            // and never picked the composite one, which only added work to every insert
+            new Migration(3, "drop redundant messages index", List.of(
+                    "DROP INDEX IF EXISTS idx_messages_conversation_id")));
+
+    private static final String CREATE_VERSION_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS schema_version (
+            version INTEGER PRIMARY KEY,
+            description VARCHAR(255) NOT NULL,
+            applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+        )
+    """;
+
+    private final List<Migration> migrations;
+
+    public H2SchemaMigrator() {
+        this(MIGRATIONS);
+    }
+
+    public H2SchemaMigrator(List<Migration> migrations) {
+        this.migrations = migrations;
+    }
+
+    /**
+     * Brings the database up to the latest version and returns that version.
+     */
+    public int migrate(H2ConnectionPool.PooledConnection connection) throws SQLException {
+        try (Statement statement = connection.connection().createStatement()) {
+            statement.execute(CREATE_VERSION_TABLE_SQL);
+        }
+        int current = currentVersion(connection);
+        for (Migration migration : migrations) {
+            if (migration.version() <= current) {
+                continue;
+            }
+            connection.connection().setAutoCommit(false);
+            try (Statement statement = connection.connection().createStatement()) {
+                for (String sql : migration.statements()) {
+                    statement.execute(sql);
+                }
+                PreparedStatement record = connection.prepare(
+                        "MERGE INTO schema_version (version, description) KEY (version) VALUES (?, ?)");
+                record.setInt(1, migration.version());
+                record.setString(2, migration.description());
+                record.executeUpdate();
+                connection.connection().commit();
+            } catch (SQLException e) {
+                connection.connection().rollback();
+                throw new SQLException("Failed to apply H2 schema migration " + migration.version()
+                        + " (" + migration.description() + ")", e);
+            } finally {
+                connection.connection().setAutoCommit(true);
+            }
+            current = migration.version();
+        }
+        return current;
+    }
+
+    public int currentVersion(H2ConnectionPool.PooledConnection connection) throws SQLException {
+        PreparedStatement query = connection.prepare("SELECT COALESCE(MAX(version), 0) FROM schema_version");
+        try (ResultSet rs = query.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+}
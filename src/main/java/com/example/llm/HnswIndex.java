@@ -0,0 +1,536 @@
+package com.example.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Hierarchical navigable small world graph (Malkov and Yashunin) over the vectors of a
+ * {@link VectorStore}, for approximate top-k search in roughly logarithmic time. Nodes are the
+ * store's vector indexes and are inserted as the store grows.
+ *
+ * <p>The graph lives next to the collection:
+ * <ul>
+ *   <li>{@code hnsw.graph}: a fixed-size record of layer-0 neighbours per node, memory-mapped
+ *       read-write and grown in segments,</li>
+ *   <li>{@code hnsw.upper}: neighbour lists of the few nodes on higher layers, loaded onto the
+ *       heap,</li>
+ *   <li>{@code hnsw.meta}: parameters, node count and entry point.</li>
+ * </ul>
+ * The meta file is marked dirty before the first change after a flush and clean again by
+ * {@link #flush()}. An index found dirty on open may reference half-inserted nodes, so a writer
+ * rebuilds it from the store. A read-only open ignores a dirty or out-of-date index and leaves
+ * the rebuild to the writer; opened clean, it maps the graph read-only and skips edges to nodes
+ * a concurrent writer has added since.
+ *
+ * <p>Searches run concurrently with each other and exclude inserts.
+ */
+public class HnswIndex implements AutoCloseable {
+    public static final int DEFAULT_M = 16;
+    public static final int DEFAULT_EF_CONSTRUCTION = 100;
+    public static final int DEFAULT_EF_SEARCH = 64;
+
+    private static final int VERSION = 1;
+    private static final int SEGMENT_NODES = 1 << 18;
+    private static final Comparator<Candidate> NEAREST_FIRST = Comparator.comparingDouble(Candidate::distance);
+    private static final Comparator<Candidate> FARTHEST_FIRST = NEAREST_FIRST.reversed();
+
+    private record Candidate(int node, float distance) {
+    }
+
+    /**
+     * Per-thread search state: visit marks stamped with an epoch so they never need clearing,
+     * and vector buffers for distance computations.
+     */
+    private static final class Scratch {
+        int[] visited = new int[0];
+        int epoch;
+        final float[] query;
+        final float[] base;
+        final float[] other;
+        final float[] vector;
+
+        Scratch(int dimension) {
+            query = new float[dimension];
+            base = new float[dimension];
+            other = new float[dimension];
+            vector = new float[dimension];
+        }
+
+        int nextEpoch(int nodes) {
+            if (visited.length < nodes) {
+                visited = new int[Math.max(nodes, visited.length * 2)];
+                epoch = 0;
+            }
+            return ++epoch;
+        }
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path directory;
+    private final VectorStore.Metric metric;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final int recordInts;
+    private final boolean readOnly;
+    private final FileChannel graph;
+    private final List<MappedByteBuffer> mappedSegments = new ArrayList<>();
+    private final List<IntBuffer> segments = new ArrayList<>();
+    private final Map<Integer, int[][]> upper = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<Scratch> scratch;
+    private volatile int efSearch = DEFAULT_EF_SEARCH;
+    private VectorStore.Mapping mapping;
+    private int count;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+    private boolean dirty;
+
+    private HnswIndex(Path directory, VectorStore.Metric metric, int m, int efConstruction, VectorStore.Mapping mapping,
+                      int dimension, boolean readOnly) throws IOException {
+        this.directory = directory;
+        this.metric = metric;
+        this.m = m;
+        this.maxM0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        this.recordInts = 1 + maxM0;
+        this.mapping = mapping;
+        this.scratch = ThreadLocal.withInitial(() -> new Scratch(dimension));
+        this.readOnly = readOnly;
+        this.graph = readOnly
+                ? FileChannel.open(directory.resolve("hnsw.graph"), StandardOpenOption.READ)
+                : FileChannel.open(directory.resolve("hnsw.graph"),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public static boolean exists(Path directory) {
+        return Files.exists(directory.resolve("hnsw.meta"));
+    }
+
+    /**
+     * Builds a new index over every vector in {@code mapping}, replacing any existing one.
+     */
+    static HnswIndex create(Path directory, int dimension, VectorStore.Metric metric, int m, int efConstruction,
+                            VectorStore.Mapping mapping) throws IOException {
+        Files.deleteIfExists(directory.resolve("hnsw.graph"));
+        Files.deleteIfExists(directory.resolve("hnsw.upper"));
+        HnswIndex index = new HnswIndex(directory, metric, m, efConstruction, mapping, dimension, false);
+        index.addThrough(mapping);
+        index.flush();
+        return index;
+    }
+
+    /**
+     * Opens the index in {@code directory}, catching up with vectors added to the store since it
+     * was last flushed, or rebuilding it if it was not closed cleanly. Read-only, it returns null
+     * instead unless the index is clean and covers exactly the vectors of {@code mapping}.
+     */
+    static HnswIndex open(Path directory, int dimension, VectorStore.Mapping mapping, boolean readOnly)
+            throws IOException {
+        JsonNode meta = new ObjectMapper().readTree(directory.resolve("hnsw.meta").toFile());
+        if (meta.get("version").asInt() != VERSION) {
+            throw new IOException("Unsupported index version in " + directory.resolve("hnsw.meta"));
+        }
+        VectorStore.Metric metric = VectorStore.Metric.valueOf(meta.get("metric").asText());
+        int m = meta.get("m").asInt();
+        int efConstruction = meta.get("efConstruction").asInt();
+        int count = meta.get("count").asInt();
+        boolean clean = meta.get("clean").asBoolean();
+        if (readOnly && (!clean || count != mapping.count())) {
+            return null;
+        }
+        if (!clean || count > mapping.count()) {
+            return create(directory, dimension, metric, m, efConstruction, mapping);
+        }
+        HnswIndex index = new HnswIndex(directory, metric, m, efConstruction, mapping, dimension, readOnly);
+        index.count = count;
+        index.entryPoint = meta.get("entryPoint").asInt();
+        index.maxLevel = meta.get("maxLevel").asInt();
+        index.ensureCapacity(count);
+        index.readUpper();
+        index.addThrough(mapping);
+        return index;
+    }
+
+    public VectorStore.Metric metric() {
+        return metric;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Sets the candidate list size for searches; larger is slower with better recall.
+     */
+    public void setEfSearch(int efSearch) {
+        this.efSearch = efSearch;
+    }
+
+    /**
+     * Inserts the vectors of {@code mapping} not yet in the graph.
+     */
+    void addThrough(VectorStore.Mapping mapping) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (count >= mapping.count()) {
+                return;
+            }
+            markDirty();
+            this.mapping = mapping;
+            ensureCapacity(mapping.count());
+            Scratch s = scratch.get();
+            while (count < mapping.count()) {
+                insert(count, s);
+                count++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The approximately {@code k} nearest vectors to {@code query}, scored like
+     * {@link VectorStore#search}.
+     */
+    VectorStore.TopK search(LlmEmbedding query, int k) {
+        float[] q = query.vector();
+        double queryNorm = Math.sqrt(query.dot(query));
+        VectorStore.TopK top = new VectorStore.TopK(k);
+        lock.readLock().lock();
+        try {
+            if (entryPoint < 0) {
+                return top;
+            }
+            Scratch s = scratch.get();
+            List<Candidate> entries = List.of(new Candidate(entryPoint, distance(q, queryNorm, entryPoint, s)));
+            for (int level = maxLevel; level > 0; level--) {
+                entries = searchLayer(q, queryNorm, entries, 1, level, s);
+            }
+            for (Candidate candidate : searchLayer(q, queryNorm, entries, Math.max(efSearch, k), 0, s)) {
+                top.offer(candidate.node(), metric == VectorStore.Metric.COSINE
+                        ? 1 - candidate.distance() : -candidate.distance());
+            }
+            return top;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(int node, Scratch s) {
+        float[] q = s.query;
+        mapping.read(node, q);
+        double queryNorm = mapping.norms().get(node);
+        int level = randomLevel(node);
+        setNeighbors(node, 0, new int[0], 0);
+        upper.remove(node);
+        if (level > 0) {
+            upper.put(node, new int[level][m + 1]);
+        }
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        List<Candidate> entries = List.of(new Candidate(entryPoint, distance(q, queryNorm, entryPoint, s)));
+        for (int layer = maxLevel; layer > level; layer--) {
+            entries = searchLayer(q, queryNorm, entries, 1, layer, s);
+        }
+        for (int layer = Math.min(level, maxLevel); layer >= 0; layer--) {
+            List<Candidate> nearest = searchLayer(q, queryNorm, entries, efConstruction, layer, s);
+            int[] neighbors = selectNeighbors(nearest, m, s);
+            setNeighbors(node, layer, neighbors, neighbors.length);
+            for (int neighbor : neighbors) {
+                connect(neighbor, node, layer, s);
+            }
+            entries = nearest;
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Adds the edge {@code from -> to}, re-selecting {@code from}'s neighbours when its list is full.
+     */
+    private void connect(int from, int to, int layer, Scratch s) {
+        int max = layer == 0 ? maxM0 : m;
+        int[] neighbors = neighbors(from, layer);
+        if (neighbors.length < max) {
+            int[] grown = new int[neighbors.length + 1];
+            System.arraycopy(neighbors, 0, grown, 0, neighbors.length);
+            grown[neighbors.length] = to;
+            setNeighbors(from, layer, grown, grown.length);
+            return;
+        }
+        mapping.read(from, s.base);
+        double baseNorm = mapping.norms().get(from);
+        List<Candidate> candidates = new ArrayList<>(neighbors.length + 1);
+        candidates.add(new Candidate(to, distance(s.base, baseNorm, to, s)));
+        for (int neighbor : neighbors) {
+            candidates.add(new Candidate(neighbor, distance(s.base, baseNorm, neighbor, s)));
+        }
+        candidates.sort(NEAREST_FIRST);
+        int[] selected = selectNeighbors(candidates, max, s);
+        setNeighbors(from, layer, selected, selected.length);
+    }
+
+    /**
+     * Greedy beam search of one layer, returning up to {@code ef} nodes nearest first.
+     */
+    private List<Candidate> searchLayer(float[] q, double queryNorm, List<Candidate> entries, int ef, int layer,
+                                        Scratch s) {
+        int epoch = s.nextEpoch(count + 1);
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(NEAREST_FIRST);
+        PriorityQueue<Candidate> results = new PriorityQueue<>(FARTHEST_FIRST);
+        for (Candidate entry : entries) {
+            s.visited[entry.node()] = epoch;
+            candidates.add(entry);
+            results.add(entry);
+            if (results.size() > ef) {
+                results.poll();
+            }
+        }
+        while (!candidates.isEmpty()) {
+            Candidate nearest = candidates.poll();
+            if (results.size() >= ef && nearest.distance() > results.peek().distance()) {
+                break;
+            }
+            for (int neighbor : neighbors(nearest.node(), layer)) {
+                if (readOnly && neighbor >= count || s.visited[neighbor] == epoch) {
+                    continue;
+                }
+                s.visited[neighbor] = epoch;
+                float distance = distance(q, queryNorm, neighbor, s);
+                if (results.size() < ef || distance < results.peek().distance()) {
+                    Candidate candidate = new Candidate(neighbor, distance);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(NEAREST_FIRST);
+        return sorted;
+    }
+
+    /**
+     * The neighbour-selection heuristic: walking candidates nearest first, keep one only if it
+     * is closer to the base than to every neighbour already kept, so edges spread in different
+     * directions instead of clustering.
+     */
+    private int[] selectNeighbors(List<Candidate> nearestFirst, int max, Scratch s) {
+        List<Candidate> selected = new ArrayList<>(max);
+        for (Candidate candidate : nearestFirst) {
+            if (selected.size() >= max) {
+                break;
+            }
+            mapping.read(candidate.node(), s.other);
+            double candidateNorm = mapping.norms().get(candidate.node());
+            boolean diverse = true;
+            for (Candidate kept : selected) {
+                if (distance(s.other, candidateNorm, kept.node(), s) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            }
+        }
+        return selected.stream().mapToInt(Candidate::node).toArray();
+    }
+
+    /**
+     * Distance from a vector to a stored node: 1 - cosine, or the negated dot product.
+     */
+    private float distance(float[] vector, double vectorNorm, int node, Scratch s) {
+        mapping.read(node, s.vector);
+        double dot = LlmEmbedding.dot(vector, s.vector);
+        if (metric == VectorStore.Metric.DOT) {
+            return (float) -dot;
+        }
+        double norms = vectorNorm * mapping.norms().get(node);
+        return (float) (norms == 0 ? 1 : 1 - dot / norms);
+    }
+
+    /**
+     * A node's layer, drawn from an exponential distribution seeded by the node so rebuilds
+     * produce the same graph.
+     */
+    private int randomLevel(int node) {
+        double uniform = new SplittableRandom(node).nextDouble();
+        return (int) (-Math.log(1 - uniform) * levelMultiplier);
+    }
+
+    private int[] neighbors(int node, int layer) {
+        if (layer > 0) {
+            int[] list = upper.get(node)[layer - 1];
+            int[] neighbors = new int[list[0]];
+            System.arraycopy(list, 1, neighbors, 0, neighbors.length);
+            return neighbors;
+        }
+        IntBuffer segment = segments.get(node / SEGMENT_NODES);
+        int offset = (node % SEGMENT_NODES) * recordInts;
+        int[] neighbors = new int[segment.get(offset)];
+        segment.get(offset + 1, neighbors);
+        return neighbors;
+    }
+
+    private void setNeighbors(int node, int layer, int[] neighbors, int size) {
+        if (layer > 0) {
+            int[] list = upper.get(node)[layer - 1];
+            list[0] = size;
+            System.arraycopy(neighbors, 0, list, 1, size);
+            return;
+        }
+        IntBuffer segment = segments.get(node / SEGMENT_NODES);
+        int offset = (node % SEGMENT_NODES) * recordInts;
+        segment.put(offset, size);
+        segment.put(offset + 1, neighbors, 0, size);
+    }
+
+    private void ensureCapacity(int nodes) throws IOException {
+        long segmentBytes = (long) SEGMENT_NODES * recordInts * 4;
+        while ((long) segments.size() * SEGMENT_NODES < nodes) {
+            long start = segments.size() * segmentBytes;
+            MappedByteBuffer mapped = readOnly
+                    ? graph.map(FileChannel.MapMode.READ_ONLY, start, Math.min(segmentBytes, graph.size() - start))
+                    : graph.map(FileChannel.MapMode.READ_WRITE, start, segmentBytes);
+            mappedSegments.add(mapped);
+            segments.add(mapped.order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+        }
+    }
+
+    private void markDirty() throws IOException {
+        if (!dirty) {
+            writeMeta(false);
+            dirty = true;
+        }
+    }
+
+    /**
+     * Writes the graph to disk and marks the index clean; a read-only index has nothing to write.
+     */
+    public void flush() throws IOException {
+        if (readOnly) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            for (MappedByteBuffer segment : mappedSegments) {
+                segment.force();
+            }
+            writeUpper();
+            writeMeta(true);
+            dirty = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void writeMeta(boolean clean) throws IOException {
+        ObjectNode meta = objectMapper.createObjectNode()
+                .put("version", VERSION)
+                .put("metric", metric.name())
+                .put("m", m)
+                .put("efConstruction", efConstruction)
+                .put("count", count)
+                .put("entryPoint", entryPoint)
+                .put("maxLevel", maxLevel)
+                .put("clean", clean);
+        Path temp = directory.resolve("hnsw.meta.tmp");
+        objectMapper.writeValue(temp.toFile(), meta);
+        Files.move(temp, directory.resolve("hnsw.meta"), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void writeUpper() throws IOException {
+        Path temp = directory.resolve("hnsw.upper.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            for (Map.Entry<Integer, int[][]> entry : upper.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue().length);
+                for (int[] list : entry.getValue()) {
+                    for (int value : list) {
+                        out.writeInt(value);
+                    }
+                }
+            }
+        }
+        Files.move(temp, directory.resolve("hnsw.upper"), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void readUpper() throws IOException {
+        Path file = directory.resolve("hnsw.upper");
+        if (!Files.exists(file)) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (true) {
+                int node;
+                try {
+                    node = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+                int[][] lists = new int[in.readInt()][m + 1];
+                for (int[] list : lists) {
+                    for (int i = 0; i < list.length; i++) {
+                        list[i] = in.readInt();
+                    }
+                }
+                upper.put(node, lists);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (dirty) {
+                flush();
+            }
+        } finally {
+            graph.close();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.llm;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.NumberInput;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Streaming reader for JSONL log entries. It pulls only the fields a caller needs from a line
+ * with a {@link JsonParser} and skips everything else, so non-matching records are rejected
+ * without building a tree and matching records bind straight into history strings or
+ * {@link Conversation} objects.
+ */
+public class JsonlEntryScanner {
+    /**
+     * Entry type (one of the {@link JsonlLogIndex} type codes) and the conversation key of a line.
+     */
+    public record EntryKey(char type, String key) {
+    }
+
+    private final JsonFactory jsonFactory;
+
+    public JsonlEntryScanner(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    public EntryKey scanKey(String line) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(line)) {
+            return scanKey(parser);
+        }
+    }
+
+    public EntryKey scanKey(byte[] bytes, int offset, int length) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(bytes, offset, length)) {
+            return scanKey(parser);
+        }
+    }
+
+    private EntryKey scanKey(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return new EntryKey(JsonlLogIndex.UNKNOWN, null);
+        }
+        String type = null;
+        String id = null;
+        String conversationId = null;
+        boolean hasModel = false;
+        boolean hasPrompt = false;
+        boolean hasResponse = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "type" -> type = textOf(parser, value);
+                case "id" -> id = textOf(parser, value);
+                case "conversation_id" -> conversationId = textOf(parser, value);
+                case "model" -> hasModel = true;
+                case "prompt" -> hasPrompt = true;
+                case "response" -> hasResponse = true;
+                default -> { }
+            }
+            parser.skipChildren();
+        }
+        if ("conversation".equals(type)) {
+            return new EntryKey(JsonlLogIndex.CONVERSATION, id);
+        } else if (conversationId != null) {
+            return new EntryKey(JsonlLogIndex.MESSAGE, conversationId);
+        } else if (hasModel && hasPrompt && hasResponse) {
+            return new EntryKey(JsonlLogIndex.LEGACY, null);
+        }
+        return new EntryKey(JsonlLogIndex.UNKNOWN, null);
+    }
+
+    /**
+     * Appends {@code "role: content"} for every element of the entry's {@code messages} array.
+     */
+    public void readMessages(String line, List<String> history) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("messages".equals(field) && value == JsonToken.START_ARRAY) {
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        String role = null;
+                        String content = null;
+                        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                            String messageField = parser.currentName();
+                            JsonToken messageValue = parser.nextToken();
+                            if ("role".equals(messageField)) {
+                                role = textOf(parser, messageValue);
+                            } else if ("content".equals(messageField)) {
+                                content = textOf(parser, messageValue);
+                            }
+                            parser.skipChildren();
+                        }
+                        history.add(role + ": " + content);
+                    }
+                    return;
+                }
+                parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Binds a conversation or legacy log entry into a {@link Conversation}, or returns null for
+     * other entry types. Conversation entries get placeholder prompt and response text because the
+     * exchange itself lives in their {@code messages} array.
+     */
+    public Conversation readConversation(String line) throws IOException {
+        try (JsonParser parser = jsonFactory.createParser(line)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            Conversation conv = new Conversation();
+            String type = null;
+            String id = null;
+            String timestamp = null;
+            boolean hasModel = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "type" -> type = textOf(parser, value);
+                    case "id" -> id = textOf(parser, value);
+                    case "timestamp" -> timestamp = textOf(parser, value);
+                    case "model" -> {
+                        hasModel = true;
+                        conv.setModel(textOf(parser, value));
+                    }
+                    case "prompt" -> conv.setPrompt(textOf(parser, value));
+                    case "response" -> conv.setResponse(textOf(parser, value));
+                    case "prompt_tokens" -> conv.setPromptTokens(parser.getValueAsInt());
+                    case "response_tokens" -> conv.setResponseTokens(parser.getValueAsInt());
+                    case "total_tokens" -> conv.setTotalTokens(parser.getValueAsInt());
+                    case "duration_ms" -> conv.setDurationMs(parser.getValueAsLong());
+                    case "schema" -> conv.setSchema(textOf(parser, value));
+                    default -> { }
+                }
+                parser.skipChildren();
+            }
+
+            if ("conversation".equals(type)) {
+                conv.setId(id != null ? NumberInput.parseAsLong(id, 0L) : 0);
+                conv.setPrompt("Conversation started");
+                conv.setResponse("Conversation initialized");
+            } else if (hasModel && conv.getPrompt() != null && conv.getResponse() != null) {
+                // Legacy format from logConversation
+                conv.setId(0); // Legacy entries don't have IDs
+            } else {
+                return null;
+            }
+            conv.setTimestamp(Instant.parse(timestamp));
+            return conv;
+        }
+    }
+
+    private static String textOf(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.VALUE_NULL) {
+            return "null";
+        }
+        return value.isScalarValue() ? parser.getValueAsString() : "";
+    }
+}
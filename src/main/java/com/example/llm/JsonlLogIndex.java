@@ -0,0 +1,425 @@
+package com.example.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only sidecar index for a JSONL log. Every physical line of the log is recorded with its
+ * byte offset, length, entry type and conversation key, so readers can page by line number and
+ * fetch a conversation's lines with positional reads instead of scanning the whole file.
+ * <p>
+ * The sidecar is a text file with one {@code offset,length,type,key} record per line, plus a
+ * {@code #checksum} line fingerprinting the log's first line. On open and on every refresh it is
+ * validated against the log: a log that grew is indexed from where the sidecar stops, while a log
+ * that shrank, whose indexed prefix no longer ends in a newline or starts with the fingerprinted
+ * line, or a sidecar that does not parse triggers a full rebuild.
+ */
+public class JsonlLogIndex implements AutoCloseable {
+    public static final char CONVERSATION = 'c';
+    public static final char MESSAGE = 'm';
+    public static final char LEGACY = 'l';
+    public static final char BLANK = 'b';
+    public static final char UNKNOWN = 'u';
+
+    private static final String HEADER = "jsonl-index-v2";
+
+    private final JsonlEntryScanner entryScanner = new JsonlEntryScanner(new ObjectMapper().getFactory());
+    private final Path logPath;
+    private final Path indexPath;
+
+    private long[] offsets = new long[1024];
+    private int[] lengths = new int[1024];
+    private int lineCount;
+    private long coveredLength;
+    /** End of the indexed prefix whose offsets were checked against the log's actual size. */
+    private long verifiedLength;
+    /** CRC32 of the log's first line, or -1 until it has been written and read back. */
+    private long firstLineChecksum = -1;
+    private final Map<String, IntList> messageLines = new HashMap<>();
+    private final IntList conversationLines = new IntList();
+    private final List<String> conversationKeys = new ArrayList<>();
+
+    private BufferedWriter indexWriter;
+    private FileChannel readChannel;
+
+    public JsonlLogIndex(Path logPath, Path indexPath) throws IOException {
+        this.logPath = logPath;
+        this.indexPath = indexPath;
+        if (!load()) {
+            rebuild();
+        } else {
+            openWriter(true);
+            refresh();
+        }
+    }
+
+    /**
+     * Records a line appended by this process at the current end of the index.
+     *
+     * @param logEnd the log's size observed right after the line was written, or -1 while the
+     *               write is still queued. If it differs from the index's new end, another
+     *               writer interleaved and the index is rebuilt from the log. Queued lines are
+     *               checked the same way by the next {@link #refresh()}.
+     */
+    public synchronized void recordAppend(int byteLength, char type, String key, long logEnd) throws IOException {
+        record(byteLength, type, key);
+        if (logEnd >= 0) {
+            if (logEnd == coveredLength) {
+                verifiedLength = coveredLength;
+                recordFingerprint();
+            } else {
+                rebuild();
+            }
+        }
+    }
+
+    private void record(int byteLength, char type, String key) throws IOException {
+        long offset = coveredLength;
+        add(offset, byteLength, type, key);
+        indexWriter.write(offset + "," + byteLength + "," + type + "," + (key != null ? key : ""));
+        indexWriter.newLine();
+    }
+
+    /**
+     * Brings the index in line with the log file: indexes lines appended by other writers, and
+     * rebuilds from scratch if the log was truncated or replaced, or if lines recorded by
+     * {@link #recordAppend} without a known end may have been interleaved with another writer's.
+     */
+    public synchronized void refresh() throws IOException {
+        indexWriter.flush();
+        long size = Files.size(logPath);
+        if (size < coveredLength || (size > coveredLength && verifiedLength < coveredLength) || !matchesLog()) {
+            rebuild();
+        } else if (size > coveredLength) {
+            scanFrom(coveredLength);
+        }
+        verifiedLength = coveredLength;
+        recordFingerprint();
+        if (readChannel != null) {
+            // Reopened on the next read, so a log replaced by a rename is read at its new content
+            readChannel.close();
+            readChannel = null;
+        }
+    }
+
+    /**
+     * Whether the indexed prefix is still the log's: the last indexed line still ends in a
+     * newline at {@code coveredLength}, and the first line still has its recorded checksum. A log
+     * rotated or replaced by one that has since grown past {@code coveredLength} fails one or the
+     * other. Reads through a fresh channel, since a cached one would still see a replaced file.
+     */
+    private boolean matchesLog() throws IOException {
+        if (lineCount == 0) {
+            return true;
+        }
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            if (channel.size() < coveredLength) {
+                return false;
+            }
+            ByteBuffer last = ByteBuffer.allocate(1);
+            if (channel.read(last, coveredLength - 1) != 1 || last.get(0) != '\n') {
+                return false;
+            }
+            return firstLineChecksum < 0 || firstLineChecksum == checksum(channel, offsets[0], lengths[0]);
+        }
+    }
+
+    /**
+     * Takes the first line's fingerprint once that line is known to be in the log.
+     */
+    private void recordFingerprint() throws IOException {
+        if (firstLineChecksum >= 0 || lineCount == 0) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            firstLineChecksum = checksum(channel, offsets[0], lengths[0]);
+        }
+        indexWriter.write("#" + firstLineChecksum);
+        indexWriter.newLine();
+    }
+
+    private static long checksum(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) >= 0) {
+            // keep reading until the line is complete or the file ends
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        return crc.getValue();
+    }
+
+    public synchronized void rebuild() throws IOException {
+        closeWriter();
+        if (readChannel != null) {
+            readChannel.close();
+            readChannel = null;
+        }
+        clear();
+        openWriter(false);
+        scanFrom(0);
+    }
+
+    public synchronized int lineCount() {
+        return lineCount;
+    }
+
+    public synchronized List<String> readLines(int fromInclusive, int toExclusive) throws IOException {
+        List<String> lines = new ArrayList<>(Math.max(0, toExclusive - fromInclusive));
+        for (int i = fromInclusive; i < toExclusive; i++) {
+            lines.add(readLine(i));
+        }
+        return lines;
+    }
+
+    /**
+     * Lines of {@code message} entries that belong to the given conversation, in log order.
+     */
+    public synchronized List<String> readMessageLines(String conversationId) throws IOException {
+        IntList lineNumbers = messageLines.get(conversationId);
+        if (lineNumbers == null) {
+            return List.of();
+        }
+        List<String> lines = new ArrayList<>(lineNumbers.size());
+        for (int i = 0; i < lineNumbers.size(); i++) {
+            lines.add(readLine(lineNumbers.get(i)));
+        }
+        return lines;
+    }
+
+    /**
+     * First {@code conversation} entry whose key satisfies the matcher, or null.
+     */
+    public synchronized String findConversationLine(Predicate<String> keyMatcher) throws IOException {
+        for (int i = 0; i < conversationLines.size(); i++) {
+            if (keyMatcher.test(conversationKeys.get(i))) {
+                return readLine(conversationLines.get(i));
+            }
+        }
+        return null;
+    }
+
+    private String readLine(int lineNumber) throws IOException {
+        if (readChannel == null) {
+            readChannel = FileChannel.open(logPath, StandardOpenOption.READ);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(lengths[lineNumber]);
+        long position = offsets[lineNumber];
+        while (buffer.hasRemaining()) {
+            int read = readChannel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                break;
+            }
+        }
+        int end = buffer.position();
+        byte[] bytes = buffer.array();
+        while (end > 0 && (bytes[end - 1] == '\n' || bytes[end - 1] == '\r')) {
+            end--;
+        }
+        return new String(bytes, 0, end, StandardCharsets.UTF_8);
+    }
+
+    private boolean load() {
+        if (!Files.exists(indexPath)) {
+            return false;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(indexPath, StandardCharsets.UTF_8)) {
+            if (!HEADER.equals(reader.readLine())) {
+                return false;
+            }
+            String record;
+            while ((record = reader.readLine()) != null) {
+                if (record.startsWith("#")) {
+                    firstLineChecksum = Long.parseLong(record.substring(1));
+                    continue;
+                }
+                String[] fields = record.split(",", 4);
+                if (fields.length != 4 || fields[2].length() != 1 || Long.parseLong(fields[0]) != coveredLength) {
+                    clear();
+                    return false;
+                }
+                add(coveredLength, Integer.parseInt(fields[1]), fields[2].charAt(0), fields[3].isEmpty() ? null : fields[3]);
+            }
+            // Without a fingerprint the sidecar was left mid-write; with one, it must match the log
+            if (lineCount > 0 && firstLineChecksum < 0 || !matchesLog()) {
+                clear();
+                return false;
+            }
+            verifiedLength = coveredLength;
+            return true;
+        } catch (IOException | NumberFormatException e) {
+            clear();
+            return false;
+        }
+    }
+
+    private void scanFrom(long start) throws IOException {
+        try (FileChannel channel = FileChannel.open(logPath, StandardOpenOption.READ)) {
+            channel.position(start);
+            InputStream in = new BufferedInputStream(Channels.newInputStream(channel), 1 << 16);
+            ByteArrayOutputStream line = new ByteArrayOutputStream();
+            int b;
+            while ((b = in.read()) != -1) {
+                line.write(b);
+                if (b == '\n') {
+                    indexScannedLine(line.toByteArray());
+                    line.reset();
+                }
+            }
+            // A trailing line without a newline is still being written; leave it for the next refresh.
+        }
+        verifiedLength = coveredLength;
+        recordFingerprint();
+        indexWriter.flush();
+    }
+
+    private void indexScannedLine(byte[] bytes) throws IOException {
+        char type = BLANK;
+        String key = null;
+        if (!isBlank(bytes)) {
+            try {
+                JsonlEntryScanner.EntryKey entryKey = entryScanner.scanKey(bytes, 0, bytes.length);
+                type = entryKey.type();
+                key = entryKey.key();
+            } catch (IOException e) {
+                type = UNKNOWN;
+            }
+        }
+        record(bytes.length, type, key);
+    }
+
+    private static boolean isBlank(byte[] bytes) {
+        for (byte b : bytes) {
+            if (b != ' ' && b != '\t' && b != '\r' && b != '\n') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    static char classify(JsonNode node) {
+        if (node.has("type") && "conversation".equals(node.get("type").asText())) {
+            return CONVERSATION;
+        } else if (node.has("conversation_id")) {
+            return MESSAGE;
+        } else if (node.has("model") && node.has("prompt") && node.has("response")) {
+            return LEGACY;
+        }
+        return UNKNOWN;
+    }
+
+    static String keyOf(JsonNode node, char type) {
+        return switch (type) {
+            case CONVERSATION -> node.has("id") ? node.get("id").asText() : null;
+            case MESSAGE -> node.get("conversation_id").asText();
+            default -> null;
+        };
+    }
+
+    private void add(long offset, int length, char type, String key) {
+        if (lineCount == offsets.length) {
+            int capacity = lineCount * 2;
+            offsets = Arrays.copyOf(offsets, capacity);
+            lengths = Arrays.copyOf(lengths, capacity);
+        }
+        offsets[lineCount] = offset;
+        lengths[lineCount] = length;
+        if (type == MESSAGE && key != null) {
+            messageLines.computeIfAbsent(key, k -> new IntList()).add(lineCount);
+        } else if (type == CONVERSATION) {
+            conversationLines.add(lineCount);
+            conversationKeys.add(key != null ? key : "");
+        }
+        lineCount++;
+        coveredLength = offset + length;
+    }
+
+    private void clear() {
+        lineCount = 0;
+        coveredLength = 0;
+        verifiedLength = 0;
+        firstLineChecksum = -1;
+        messageLines.clear();
+        conversationLines.clear();
+        conversationKeys.clear();
+    }
+
+    private void openWriter(boolean append) throws IOException {
+        if (append) {
+            indexWriter = Files.newBufferedWriter(indexPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        } else {
+            indexWriter = Files.newBufferedWriter(indexPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            indexWriter.write(HEADER);
+            indexWriter.newLine();
+        }
+    }
+
+    private void closeWriter() throws IOException {
+        if (indexWriter != null) {
+            indexWriter.close();
+            indexWriter = null;
+        }
+    }
+
+    /**
+     * Checks any appends still unverified against the log, so the sidecar a later process loads
+     * is trusted only as far as it matched, then closes the files.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (indexWriter != null && verifiedLength < coveredLength && Files.exists(logPath)) {
+            refresh();
+        }
+        closeWriter();
+        if (readChannel != null) {
+            readChannel.close();
+            readChannel = null;
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.example.llm;
 
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Llm {
 
@@ -8,6 +11,9 @@ public class Llm {
     private final AliasManager aliasManager;
     private final LogManager logManager;
     private final ConversationManager conversationManager;
+    private final Map<String, LlmChatModel> cachingModels = new ConcurrentHashMap<>();
+    private ResponseCache responseCache;
+    private boolean responseCacheOpened;
 
     public Llm() {
         this(new ModelRegistry(new ModelConfig()), new AliasManager());
@@ -16,14 +22,18 @@ public class Llm {
     public Llm(ModelRegistry modelRegistry, AliasManager aliasManager) {
         this.modelRegistry = modelRegistry;
         this.aliasManager = aliasManager;
+        // The caching decorators wrap registry instances, so they go when those do
+        modelRegistry.addInvalidationListener(cachingModels::clear);
         
         ModelConfig modelConfig = modelRegistry.getConfig();
         String logType = modelConfig.get("log.type").orElse("none");
         String logPath = modelConfig.get("log.path").orElse(System.getProperty("user.home") + "/.llm/logs/conversations");
         
         if (!"none".equalsIgnoreCase(logType)) {
-            this.logManager = new LogManager(logType, logPath);
-            this.conversationManager = new ConversationManager(logManager, this);
+            this.logManager = new LogManager(logType, logPath, modelConfig);
+            long contextCacheChars = Long.parseLong(modelConfig.get("conversation.cache.chars")
+                    .orElse(String.valueOf(ConversationManager.DEFAULT_CONTEXT_CACHE_CHARS)));
+            this.conversationManager = new ConversationManager(logManager, this, contextCacheChars);
         } else {
             this.logManager = null;
             this.conversationManager = null;
@@ -31,7 +41,40 @@ public class Llm {
     }
 
     public LlmChatModel getModel(String modelName) throws IOException {
+        return getModel(modelName, true);
+    }
+
+    /**
+     * The model for {@code modelName}, behind the exact and semantic response caches when they
+     * are configured and {@code useCache} is set.
+     */
+    public LlmChatModel getModel(String modelName, boolean useCache) throws IOException {
         String resolvedModelName = aliasManager.resolveAlias(modelName);
+        if (!useCache) {
+            return getResolvedModel(resolvedModelName);
+        }
+        // One set of caches per model, kept until the registry drops the model so batches and chats hit them
+        LlmChatModel cachingModel = cachingModels.get(resolvedModelName);
+        if (cachingModel != null) {
+            return cachingModel;
+        }
+        LlmChatModel model = getResolvedModel(resolvedModelName);
+        cachingModel = SemanticCachingChatModel.decorate(getConfig(), model, this::getCacheEmbeddingModel);
+        ResponseCache cache = getResponseCache();
+        if (cache != null) {
+            cachingModel = new CachingChatModel(cachingModel, cache, resolvedModelName);
+        }
+        if (cachingModel == model) {
+            return model;
+        }
+        LlmChatModel existing = cachingModels.putIfAbsent(resolvedModelName, cachingModel);
+        return existing != null ? existing : cachingModel;
+    }
+
+    private LlmChatModel getResolvedModel(String resolvedModelName) {
+        if (resolvedModelName.contains(",")) {
+            return modelRegistry.getRoutedModel(AliasManager.targetsOf(resolvedModelName));
+        }
         String[] parts = resolvedModelName.split("/", 2);
         if (parts.length == 2) {
             return modelRegistry.getModel(parts[0], parts[1]);
@@ -40,6 +83,14 @@ public class Llm {
         }
     }
 
+    private LlmEmbeddingModel getCacheEmbeddingModel(String modelName) {
+        try {
+            return getEmbeddingModel(modelName);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to resolve cache embedding model " + modelName, e);
+        }
+    }
+
     public LlmEmbeddingModel getEmbeddingModel(String modelName) throws IOException {
         String resolvedModelName = aliasManager.resolveAlias(modelName);
         String[] parts = resolvedModelName.split(":", 2);
@@ -50,6 +101,36 @@ public class Llm {
         }
     }
 
+    /**
+     * The exact-match response cache, opened on first use, or null when it is disabled.
+     */
+    public synchronized ResponseCache getResponseCache() {
+        if (!responseCacheOpened) {
+            responseCache = ResponseCache.fromConfig(getConfig());
+            responseCacheOpened = true;
+        }
+        return responseCache;
+    }
+
+    public synchronized void closeResponseCache() {
+        if (responseCache != null) {
+            responseCache.close();
+            responseCache = null;
+        }
+    }
+
+    /**
+     * The directory of a named vector collection, under {@code vectors.path}.
+     */
+    public Path getVectorCollectionPath(String collection) {
+        String root = getConfig().get("vectors.path").orElse(System.getProperty("user.home") + "/.llm/vectors");
+        return Path.of(root, collection);
+    }
+
+    public ModelConfig getConfig() {
+        return modelRegistry.getConfig();
+    }
+
     public AliasManager getAliasManager() {
         return aliasManager;
     }
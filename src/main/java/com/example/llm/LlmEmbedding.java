@@ -0,0 +1,125 @@
+package com.example.llm;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * An embedding vector held as a primitive {@code float[]}: 4 bytes per dimension, against about
+ * 16 for a boxed {@code List<Float>}, which matters once hundreds of thousands of vectors are in
+ * memory. The array is not copied; callers must not modify it after handing it over.
+ */
+public final class LlmEmbedding {
+    private final float[] vector;
+
+    public LlmEmbedding(float[] vector) {
+        this.vector = vector;
+    }
+
+    public static LlmEmbedding of(List<Float> values) {
+        float[] vector = new float[values.size()];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = values.get(i);
+        }
+        return new LlmEmbedding(vector);
+    }
+
+    public float[] vector() {
+        return vector;
+    }
+
+    public int dimension() {
+        return vector.length;
+    }
+
+    /**
+     * A read-only list view, boxing each value on access, for callers of the list-based API.
+     */
+    public List<Float> asList() {
+        return new FloatListView(vector);
+    }
+
+    /**
+     * This embedding scaled to unit length, so that {@link #dot} gives cosine similarity.
+     */
+    public LlmEmbedding normalized() {
+        double norm = Math.sqrt(dot(this));
+        if (norm == 0) {
+            return this;
+        }
+        float[] scaled = new float[vector.length];
+        float scale = (float) (1 / norm);
+        for (int i = 0; i < vector.length; i++) {
+            scaled[i] = vector[i] * scale;
+        }
+        return new LlmEmbedding(scaled);
+    }
+
+    public double dot(LlmEmbedding other) {
+        return dot(vector, other.vector);
+    }
+
+    public double cosineSimilarity(LlmEmbedding other) {
+        double norms = Math.sqrt(dot(this) * other.dot(other));
+        return norms == 0 ? 0 : dot(other) / norms;
+    }
+
+    /**
+     * Dot product with four independent accumulators, which lets the JIT keep several
+     * multiply-adds in flight instead of waiting on one running sum.
+     */
+    static double dot(float[] a, float[] b) {
+        if (a.length != b.length) {
+            throw new IllegalArgumentException("Dimension mismatch: " + a.length + " vs " + b.length);
+        }
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (int upper = a.length - 3; i < upper; i += 4) {
+            s0 += a[i] * b[i];
+            s1 += a[i + 1] * b[i + 1];
+            s2 += a[i + 2] * b[i + 2];
+            s3 += a[i + 3] * b[i + 3];
+        }
+        for (; i < a.length; i++) {
+            s0 += a[i] * b[i];
+        }
+        return (double) s0 + s1 + s2 + s3;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof LlmEmbedding other && Arrays.equals(vector, other.vector);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(vector);
+    }
+
+    /**
+     * Formats like {@code List.toString()}, e.g. {@code [0.1, -0.2]}.
+     */
+    @Override
+    public String toString() {
+        return Arrays.toString(vector);
+    }
+
+    private static final class FloatListView extends AbstractList<Float> implements RandomAccess {
+        private final float[] vector;
+
+        private FloatListView(float[] vector) {
+            this.vector = vector;
+        }
+
+        @Override
+        public Float get(int index) {
+            return vector[index];
+        }
+
+        @Override
+        public int size() {
+            return vector.length;
+        }
+    }
+}
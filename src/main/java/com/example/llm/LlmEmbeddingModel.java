@@ -1,7 +1,35 @@
 package com.example.llm;
 
+import java.util.ArrayList;
 import java.util.List;
 
 public interface LlmEmbeddingModel {
     List<Float> embed(String text);
+
+    /**
+     * Embeds every text, returning the embeddings in input order. Providers with a batch
+     * endpoint override this to send many texts per request.
+     */
+    default List<List<Float>> embedAll(List<String> texts) {
+        List<List<Float>> embeddings = new ArrayList<>(texts.size());
+        for (String text : texts) {
+            embeddings.add(embed(text));
+        }
+        return embeddings;
+    }
+
+    /**
+     * Like {@link #embed}, as a primitive vector. Providers that receive a {@code float[]}
+     * override this to skip boxing altogether.
+     */
+    default LlmEmbedding embedVector(String text) {
+        return LlmEmbedding.of(embed(text));
+    }
+
+    /**
+     * Like {@link #embedAll}, as primitive vectors.
+     */
+    default List<LlmEmbedding> embedAllVectors(List<String> texts) {
+        return embedAll(texts).stream().map(LlmEmbedding::of).toList();
+    }
 }
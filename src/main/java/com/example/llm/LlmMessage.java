@@ -0,0 +1,52 @@
+package com.example.llm;
+
+/**
+ * One earlier message of a chat, sent ahead of the request prompt. A message marked as a cache
+ * breakpoint ends a prefix that is resent unchanged across requests (fragments, system text,
+ * earlier turns); providers that support prompt caching are asked to cache up to it.
+ */
+public record LlmMessage(Role role, String content, boolean cacheBreakpoint) {
+    public enum Role { SYSTEM, USER, ASSISTANT }
+
+    public LlmMessage(Role role, String content) {
+        this(role, content, false);
+    }
+
+    /**
+     * This message marked as the end of a cacheable prefix.
+     */
+    public LlmMessage cached() {
+        return new LlmMessage(role, content, true);
+    }
+
+    public static LlmMessage system(String content) {
+        return new LlmMessage(Role.SYSTEM, content);
+    }
+
+    public static LlmMessage user(String content) {
+        return new LlmMessage(Role.USER, content);
+    }
+
+    public static LlmMessage assistant(String content) {
+        return new LlmMessage(Role.ASSISTANT, content);
+    }
+
+    /**
+     * Parses a {@code "role: content"} history line as returned by
+     * {@link LogManager#getConversationHistory(String, int)}. Lines without a known role are kept
+     * whole as user messages.
+     */
+    public static LlmMessage fromHistoryLine(String line) {
+        int separator = line.indexOf(": ");
+        if (separator <= 0) {
+            return user(line);
+        }
+        String content = line.substring(separator + 2);
+        return switch (line.substring(0, separator)) {
+            case "system" -> system(content);
+            case "user" -> user(content);
+            case "assistant" -> assistant(content);
+            default -> user(line);
+        };
+    }
+}
@@ -2,11 +2,21 @@ package com.example.llm;
 
 import java.util.List;
 
-public record LlmRequest(String prompt, String schema, List<Object> tools) {
+/**
+ * A chat request. {@code messages} holds the earlier turns of the conversation (and any system
+ * text), sent as separate messages ahead of {@code prompt}, which is the new user turn.
+ */
+public record LlmRequest(String prompt, String schema, List<Object> tools, List<LlmMessage> messages) {
+    public LlmRequest {
+        messages = messages != null ? List.copyOf(messages) : List.of();
+    }
     public LlmRequest(String prompt) {
         this(prompt, null, null);
     }
     public LlmRequest(String prompt, String schema) {
         this(prompt, schema, null);
     }
+    public LlmRequest(String prompt, String schema, List<Object> tools) {
+        this(prompt, schema, tools, List.of());
+    }
 }
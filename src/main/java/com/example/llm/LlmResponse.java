@@ -1,7 +1,22 @@
 package com.example.llm;
 
-public record LlmResponse(String text, Integer promptTokens, Integer responseTokens, Integer totalTokens) {
+/**
+ * A chat response. {@code cachedTokens} is the part of {@code promptTokens} the provider served
+ * from its prompt cache, or null when the provider does not report it.
+ */
+public record LlmResponse(String text, Integer promptTokens, Integer responseTokens, Integer totalTokens, Integer cachedTokens) {
     public LlmResponse(String text) {
         this(text, null, null, null);
     }
+    public LlmResponse(String text, Integer promptTokens, Integer responseTokens, Integer totalTokens) {
+        this(text, promptTokens, responseTokens, totalTokens, null);
+    }
+
+    /**
+     * This response as served again from a response cache: the same text at no token cost, so
+     * callers that log usage do not count it as spent twice.
+     */
+    public LlmResponse servedFromCache() {
+        return new LlmResponse(text, 0, 0, 0, null);
+    }
 }
@@ -1,11 +1,13 @@
 package com.example.llm;
 
+import com.fasterxml.jackson.core.io.NumberInput;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -15,23 +17,45 @@ import java.util.*;
 import java.util.Properties;
 
 public class LogManager {
+    private static final String MESSAGE_INSERT_SQL = "INSERT INTO messages (conversation_id, role, content) VALUES (?, ?, ?)";
+    private static final String LEGACY_CONVERSATION_INSERT_SQL = """
+        INSERT INTO conversations (model, prompt, response, prompt_tokens, response_tokens, 
+                                 total_tokens, duration_ms, schema, tools, metadata)
+        VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ? FORMAT JSON)
+    """;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
+    private final JsonlEntryScanner jsonlEntryScanner = new JsonlEntryScanner(objectMapper.getFactory());
     private final String logType;
     private final String logPath;
-    private Connection dbConnection;
+    private H2ConnectionPool h2Pool;
+    private H2GroupCommitter h2GroupCommitter;
+    private AsyncJsonlWriter asyncJsonlWriter;
+    private JsonlLogIndex jsonlIndex;
+    private final Object jsonlAppendLock = new Object();
 
     public LogManager(String logType, String logPath) {
+        this(logType, logPath, new ModelConfig(Map.of()));
+    }
+
+    public LogManager(String logType, String logPath, ModelConfig modelConfig) {
         this.logType = logType;
         this.logPath = logPath;
         
         if ("h2".equalsIgnoreCase(logType)) {
-            initializeDatabase();
+            initializeDatabase(modelConfig);
         } else if ("jsonl".equalsIgnoreCase(logType)) {
             ensureJsonlFileExists();
+            if (Boolean.parseBoolean(modelConfig.get("log.async").orElse("false"))) {
+                initializeAsyncJsonlWriter(modelConfig);
+            }
+            if (Boolean.parseBoolean(modelConfig.get("log.index").orElse("true"))) {
+                initializeJsonlIndex();
+            }
         }
     }
 
-    private void initializeDatabase() {
+    private void initializeDatabase(ModelConfig modelConfig) {
         try {
             // Explicitly register H2 driver
             Class.forName("org.h2.Driver");
@@ -43,40 +67,18 @@ public class LogManager {
             dbProps.setProperty("user", "sa");
             dbProps.setProperty("password", "");
             
-            dbConnection = DriverManager.getConnection(jdbcUrl, dbProps);
+            int poolSize = Integer.parseInt(modelConfig.get("log.h2.pool.size").orElse("4"));
+            long acquireTimeoutMs = Long.parseLong(modelConfig.get("log.h2.pool.timeout.ms").orElse("30000"));
+            h2Pool = new H2ConnectionPool(jdbcUrl, dbProps, poolSize, acquireTimeoutMs);
             
-            // Create tables if they don't exist
-            String createConversationsTableSQL = """
-                CREATE TABLE IF NOT EXISTS conversations (
-                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
-                    timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                    model VARCHAR(255) NOT NULL,
-                    prompt TEXT NOT NULL,
-                    response TEXT NOT NULL,
-                    prompt_tokens INTEGER,
-                    response_tokens INTEGER,
-                    total_tokens INTEGER,
-                    duration_ms BIGINT,
-                    schema VARCHAR(500),
-                    tools TEXT,
-                    metadata JSON
-                )
-            """;
-            
-            String createMessagesTableSQL = """
-                CREATE TABLE IF NOT EXISTS messages (
-                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
-                    conversation_id BIGINT NOT NULL,
-                    role VARCHAR(20) NOT NULL,
-                    content TEXT NOT NULL,
-                    timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                    FOREIGN KEY (conversation_id) REFERENCES conversations(id)
-                )
-            """;
+            long groupCommitMs = Long.parseLong(modelConfig.get("log.h2.group.commit.ms").orElse("0"));
+            if (groupCommitMs > 0) {
+                int groupCommitSize = Integer.parseInt(modelConfig.get("log.h2.group.commit.size").orElse("256"));
+                h2GroupCommitter = new H2GroupCommitter(h2Pool, groupCommitSize, groupCommitMs);
+            }
             
-            try (Statement connectionStatement = dbConnection.createStatement()) {
-                connectionStatement.execute(createConversationsTableSQL);
-                connectionStatement.execute(createMessagesTableSQL);
+            try (H2ConnectionPool.PooledConnection connection = h2Pool.acquire()) {
+                new H2SchemaMigrator().migrate(connection);
             }
         } catch (ClassNotFoundException e) {
             throw new RuntimeException("H2 JDBC driver not found. Please ensure H2 dependency is included.", e);
@@ -99,6 +101,97 @@ public class LogManager {
         }
     }
 
+    private void initializeAsyncJsonlWriter(ModelConfig modelConfig) {
+        int queueCapacity = Integer.parseInt(modelConfig.get("log.async.queue.size").orElse("8192"));
+        int fsyncEntries = Integer.parseInt(modelConfig.get("log.async.fsync.entries").orElse("0"));
+        long fsyncMillis = Long.parseLong(modelConfig.get("log.async.fsync.interval.ms").orElse("1000"));
+        AsyncJsonlWriter.OverflowPolicy overflowPolicy = AsyncJsonlWriter.OverflowPolicy.valueOf(
+                modelConfig.get("log.async.overflow").orElse("block").toUpperCase(Locale.ROOT));
+        try {
+            asyncJsonlWriter = new AsyncJsonlWriter(Paths.get(logPath), queueCapacity,
+                    new AsyncJsonlWriter.FsyncPolicy(fsyncEntries, fsyncMillis), overflowPolicy);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open JSONL log for asynchronous writes", e);
+        }
+    }
+
+    private void initializeJsonlIndex() {
+        try {
+            jsonlIndex = new JsonlLogIndex(Paths.get(logPath), Paths.get(logPath + ".idx"));
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open JSONL log index", e);
+        }
+    }
+
+    private void appendJsonlLine(ObjectNode entry) throws IOException {
+        appendJsonlLines(List.of(entry));
+    }
+
+    private void appendJsonlLines(List<ObjectNode> entries) throws IOException {
+        List<String> lines = new ArrayList<>(entries.size());
+        for (ObjectNode entry : entries) {
+            lines.add(objectMapper.writeValueAsString(entry));
+        }
+        synchronized (jsonlAppendLock) {
+            if (asyncJsonlWriter != null) {
+                for (int i = 0; i < lines.size(); i++) {
+                    if (asyncJsonlWriter.append(lines.get(i))) {
+                        recordIndexedAppend(entries.get(i), lines.get(i), 1, -1);
+                    }
+                }
+            } else {
+                try (FileWriter fw = new FileWriter(logPath, StandardCharsets.UTF_8, true);
+                     BufferedWriter bw = new BufferedWriter(fw);
+                     PrintWriter out = new PrintWriter(bw)) {
+                    for (String line : lines) {
+                        out.println(line);
+                    }
+                }
+                long logEnd = jsonlIndex != null ? Files.size(Paths.get(logPath)) : -1;
+                for (int i = 0; i < lines.size(); i++) {
+                    recordIndexedAppend(entries.get(i), lines.get(i), System.lineSeparator().length(),
+                            i == lines.size() - 1 ? logEnd : -1);
+                }
+            }
+        }
+    }
+
+    private void recordIndexedAppend(ObjectNode entry, String line, int separatorLength, long logEnd) throws IOException {
+        if (jsonlIndex != null) {
+            char type = JsonlLogIndex.classify(entry);
+            jsonlIndex.recordAppend(line.getBytes(StandardCharsets.UTF_8).length + separatorLength,
+                    type, JsonlLogIndex.keyOf(entry, type), logEnd);
+        }
+    }
+
+    private void flushJsonl() throws IOException {
+        if (asyncJsonlWriter != null) {
+            asyncJsonlWriter.flush();
+        }
+        if (jsonlIndex != null) {
+            jsonlIndex.refresh();
+        }
+    }
+
+    private List<String> readJsonlLines() throws IOException {
+        flushJsonl();
+        return Files.readAllLines(Paths.get(logPath));
+    }
+
+    /**
+     * Number of JSONL entries dropped because the write-behind queue was full (always 0 in synchronous mode).
+     */
+    public long getDroppedLogEntries() {
+        return asyncJsonlWriter != null ? asyncJsonlWriter.getDroppedEntries() : 0;
+    }
+
+    /**
+     * Number of JSONL appends that had to wait for space in the write-behind queue.
+     */
+    public long getBackpressuredLogEntries() {
+        return asyncJsonlWriter != null ? asyncJsonlWriter.getBackpressuredEntries() : 0;
+    }
+
     public String startConversation(String model, String initialPrompt, String response, 
                                   Integer promptTokens, Integer responseTokens, Integer totalTokens,
                                   Long durationMs, String schema, List<Object> tools, Map<String, Object> metadata) {
@@ -116,41 +209,31 @@ public class LogManager {
                                        Integer promptTokens, Integer responseTokens, Integer totalTokens,
                                        Long durationMs, String schema, List<Object> tools, Map<String, Object> metadata) {
         
+        String conversationSQL = """
+            INSERT INTO conversations (id, model, prompt, response, prompt_tokens, response_tokens,
+                                     total_tokens, duration_ms, schema, tools, metadata)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? FORMAT JSON)
+        """;
+        
         try {
-            // Insert conversation
-            String conversationSQL = """
-                INSERT INTO conversations (id, model, prompt, response, prompt_tokens, response_tokens,
-                                         total_tokens, duration_ms, schema, tools, metadata)
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-            """;
-            
-            try (PreparedStatement pstmt = dbConnection.prepareStatement(conversationSQL)) {
-                pstmt.setString(1, conversationId);
-                pstmt.setString(2, model);
-                pstmt.setString(3, initialPrompt);
-                pstmt.setString(4, response);
-                setNullableInt(pstmt, 5, promptTokens);
-                setNullableInt(pstmt, 6, responseTokens);
-                setNullableInt(pstmt, 7, totalTokens);
-                setNullableLong(pstmt, 8, durationMs);
-                pstmt.setString(9, schema);
-                pstmt.setString(10, tools != null ? objectMapper.writeValueAsString(tools) : null);
-                pstmt.setString(11, metadata != null ? objectMapper.writeValueAsString(metadata) : null);
-                pstmt.executeUpdate();
-            }
-            
-            // Insert messages
-            String messageSQL = "INSERT INTO messages (conversation_id, role, content) VALUES (?, ?, ?)";
-            try (PreparedStatement pstmt = dbConnection.prepareStatement(messageSQL)) {
-                pstmt.setString(1, conversationId);
-                pstmt.setString(2, "user");
-                pstmt.setString(3, initialPrompt);
-                pstmt.executeUpdate();
+            // Conversation row and both messages go out as batches in one transaction
+            writeToH2(connection -> {
+                PreparedStatement conversationStmt = connection.prepareBatch(conversationSQL);
+                conversationStmt.setString(1, conversationId);
+                conversationStmt.setString(2, model);
+                conversationStmt.setString(3, initialPrompt);
+                conversationStmt.setString(4, response);
+                setNullableInt(conversationStmt, 5, promptTokens);
+                setNullableInt(conversationStmt, 6, responseTokens);
+                setNullableInt(conversationStmt, 7, totalTokens);
+                setNullableLong(conversationStmt, 8, durationMs);
+                conversationStmt.setString(9, schema);
+                conversationStmt.setString(10, tools != null ? objectMapper.writeValueAsString(tools) : null);
+                conversationStmt.setString(11, metadata != null ? objectMapper.writeValueAsString(metadata) : null);
+                conversationStmt.addBatch();
                 
-                pstmt.setString(2, "assistant");
-                pstmt.setString(3, response);
-                pstmt.executeUpdate();
-            }
+                addMessageBatch(connection, conversationId, initialPrompt, response);
+            });
             
             return conversationId;
         } catch (SQLException | IOException e) {
@@ -162,10 +245,7 @@ public class LogManager {
                                         Integer promptTokens, Integer responseTokens, Integer totalTokens,
                                         Long durationMs, String schema, List<Object> tools, Map<String, Object> metadata) {
         
-        try (FileWriter fw = new FileWriter(logPath, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            
+        try {
             ObjectNode conversationEntry = objectMapper.createObjectNode();
             conversationEntry.put("id", conversationId);
             conversationEntry.put("timestamp", Instant.now().toString());
@@ -194,7 +274,7 @@ public class LogManager {
             if (tools != null) conversationEntry.set("tools", objectMapper.valueToTree(tools));
             if (metadata != null) conversationEntry.set("metadata", objectMapper.valueToTree(metadata));
             
-            out.println(objectMapper.writeValueAsString(conversationEntry));
+            appendJsonlLine(conversationEntry);
             return conversationId;
         } catch (IOException e) {
             throw new RuntimeException("Failed to start conversation in JSONL", e);
@@ -217,30 +297,44 @@ public class LogManager {
                                       Long durationMs) {
         
         try {
-            String messageSQL = "INSERT INTO messages (conversation_id, role, content) VALUES (?, ?, ?)";
-            try (PreparedStatement pstmt = dbConnection.prepareStatement(messageSQL)) {
-                pstmt.setString(1, conversationId);
-                pstmt.setString(2, "user");
-                pstmt.setString(3, newPrompt);
-                pstmt.executeUpdate();
-                
-                pstmt.setString(2, "assistant");
-                pstmt.setString(3, newResponse);
-                pstmt.executeUpdate();
-            }
-        } catch (SQLException e) {
+            writeToH2(connection -> addMessageBatch(connection, conversationId, newPrompt, newResponse));
+        } catch (SQLException | IOException e) {
             throw new RuntimeException("Failed to continue conversation in H2", e);
         }
     }
 
+    private void addMessageBatch(H2ConnectionPool.PooledConnection connection, String conversationId,
+                                 String prompt, String response) throws SQLException {
+        PreparedStatement pstmt = connection.prepareBatch(MESSAGE_INSERT_SQL);
+        pstmt.setString(1, conversationId);
+        pstmt.setString(2, "user");
+        pstmt.setString(3, prompt);
+        pstmt.addBatch();
+        
+        pstmt.setString(2, "assistant");
+        pstmt.setString(3, response);
+        pstmt.addBatch();
+    }
+
+    /**
+     * Runs an H2 write in its own transaction, or hands it to the group committer when group
+     * commit is enabled.
+     */
+    private void writeToH2(H2ConnectionPool.Work work) throws SQLException, IOException {
+        if (h2GroupCommitter != null) {
+            h2GroupCommitter.submit(work);
+            return;
+        }
+        try (H2ConnectionPool.PooledConnection connection = h2Pool.acquire()) {
+            connection.inTransaction(work);
+        }
+    }
+
     private void continueConversationInJsonl(String conversationId, String newPrompt, String newResponse, 
                                            Integer promptTokens, Integer responseTokens, Integer totalTokens,
                                            Long durationMs) {
         
-        try (FileWriter fw = new FileWriter(logPath, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            
+        try {
             ObjectNode messageEntry = objectMapper.createObjectNode();
             messageEntry.put("conversation_id", conversationId);
             messageEntry.put("timestamp", Instant.now().toString());
@@ -265,7 +359,7 @@ public class LogManager {
             if (totalTokens != null) messageEntry.put("total_tokens", totalTokens);
             if (durationMs != null) messageEntry.put("duration_ms", durationMs);
             
-            out.println(objectMapper.writeValueAsString(messageEntry));
+            appendJsonlLine(messageEntry);
         } catch (IOException e) {
             throw new RuntimeException("Failed to continue conversation in JSONL", e);
         }
@@ -282,14 +376,18 @@ public class LogManager {
     private List<String> getConversationHistoryFromH2(String conversationId, int limit) {
         List<String> history = new ArrayList<>();
         
+        // The most recent messages, oldest first, matching the JSONL backend
         String sql = """
-            SELECT role, content FROM messages
-            WHERE conversation_id = ?
-            ORDER BY timestamp ASC
-            LIMIT ?
+            SELECT role, content FROM (
+                SELECT id, role, content FROM messages
+                WHERE conversation_id = ?
+                ORDER BY id DESC
+                LIMIT ?
+            ) ORDER BY id ASC
         """;
         
-        try (PreparedStatement pstmt = dbConnection.prepareStatement(sql)) {
+        try (H2ConnectionPool.PooledConnection connection = h2Pool.acquire()) {
+            PreparedStatement pstmt = connection.prepare(sql);
             pstmt.setString(1, conversationId);
             pstmt.setInt(2, limit);
             
@@ -311,28 +409,27 @@ public class LogManager {
         List<String> history = new ArrayList<>();
         
         try {
-            List<String> lines = Files.readAllLines(Paths.get(logPath));
-            List<String> conversationLines = new ArrayList<>();
-            
-            // Find all lines for this conversation
-            for (String line : lines) {
-                if (!line.trim().isEmpty()) {
-                    ObjectNode node = objectMapper.readValue(line, ObjectNode.class);
-                    if (node.has("conversation_id") && node.get("conversation_id").asText().equals(conversationId)) {
-                        conversationLines.add(line);
+            List<String> conversationLines;
+            if (jsonlIndex != null) {
+                flushJsonl();
+                conversationLines = jsonlIndex.readMessageLines(conversationId);
+            } else {
+                conversationLines = new ArrayList<>();
+                
+                // Only the conversation id is read from each line; other records are skipped without building a tree
+                for (String line : readJsonlLines()) {
+                    if (!line.trim().isEmpty()) {
+                        JsonlEntryScanner.EntryKey entryKey = jsonlEntryScanner.scanKey(line);
+                        if (entryKey.type() == JsonlLogIndex.MESSAGE && conversationId.equals(entryKey.key())) {
+                            conversationLines.add(line);
+                        }
                     }
                 }
             }
             
             // Process the conversation
             for (String line : conversationLines) {
-                ObjectNode node = objectMapper.readValue(line, ObjectNode.class);
-                if (node.has("messages")) {
-                    List<Map<String, String>> messages = objectMapper.convertValue(node.get("messages"), new TypeReference<List<Map<String, String>>>() {});
-                    for (Map<String, String> msg : messages) {
-                        history.add(msg.get("role") + ": " + msg.get("content"));
-                    }
-                }
+                jsonlEntryScanner.readMessages(line, history);
             }
             
             // Limit the history
@@ -350,29 +447,100 @@ public class LogManager {
         }
     }
 
+    /**
+     * Whether listed conversations carry the ids that {@link #getConversationsBefore} seeks on.
+     * JSONL conversations are keyed by UUID and listed with id 0.
+     */
+    public boolean hasConversationIds() {
+        return "h2".equalsIgnoreCase(logType);
+    }
+
+    /**
+     * Keyset pagination: the {@code limit} conversations logged before the one with
+     * {@code beforeId}, newest first. Unlike {@link #getConversations(int, int)} the cost does not
+     * grow with the page number. Returns nothing when no conversation has that id, which is
+     * always the case without {@link #hasConversationIds()}.
+     */
+    public List<Conversation> getConversationsBefore(long beforeId, int limit) {
+        if (!hasConversationIds()) {
+            return new ArrayList<>();
+        }
+        return getConversationsBeforeFromH2(beforeId, limit);
+    }
+
+    private List<Conversation> getConversationsBeforeFromH2(long beforeId, int limit) {
+        try (H2ConnectionPool.PooledConnection connection = h2Pool.acquire()) {
+            // Resolve the cursor first: a constant bound lets H2 start the index range scan at the cursor
+            PreparedStatement cursorStmt = connection.prepare("SELECT timestamp FROM conversations WHERE id = ?");
+            cursorStmt.setLong(1, beforeId);
+            Timestamp cursorTimestamp;
+            try (ResultSet rs = cursorStmt.executeQuery()) {
+                if (!rs.next()) {
+                    return new ArrayList<>();
+                }
+                cursorTimestamp = rs.getTimestamp(1);
+            }
+            return seekConversations(connection, "<", cursorTimestamp, beforeId, limit);
+        } catch (SQLException | IOException e) {
+            throw new RuntimeException("Failed to retrieve conversations from H2", e);
+        }
+    }
+
     private List<Conversation> getConversationsFromH2(int limit, int offset) {
-        List<Conversation> conversations = new ArrayList<>();
-        String sql = """
+        // Newest first straight off the (timestamp, id) index; the first page needs no cursor at all
+        String firstPageSql = """
             SELECT id, timestamp, model, prompt, response, prompt_tokens, response_tokens, 
                    total_tokens, duration_ms, schema, tools, metadata
             FROM conversations
-            ORDER BY timestamp DESC
-            LIMIT ? OFFSET ?
+            ORDER BY timestamp DESC, id DESC
+            LIMIT ?
         """;
         
-        try (PreparedStatement pstmt = dbConnection.prepareStatement(sql)) {
-            pstmt.setInt(1, limit);
-            pstmt.setInt(2, offset);
-            
-            try (ResultSet rs = pstmt.executeQuery()) {
-                while (rs.next()) {
-                    conversations.add(mapResultSetToConversation(rs));
+        try (H2ConnectionPool.PooledConnection connection = h2Pool.acquire()) {
+            if (offset <= 0) {
+                PreparedStatement pstmt = connection.prepare(firstPageSql);
+                pstmt.setInt(1, limit);
+                return queryConversations(pstmt);
+            }
+            // Skip over index keys only, then seek to the page; skipped rows are never read
+            PreparedStatement cursorStmt = connection.prepare(
+                    "SELECT timestamp, id FROM conversations ORDER BY timestamp DESC, id DESC LIMIT 1 OFFSET ?");
+            cursorStmt.setInt(1, offset);
+            try (ResultSet rs = cursorStmt.executeQuery()) {
+                if (!rs.next()) {
+                    return new ArrayList<>();
                 }
+                return seekConversations(connection, "<=", rs.getTimestamp(1), rs.getLong(2), limit);
             }
         } catch (SQLException | IOException e) {
             throw new RuntimeException("Failed to retrieve conversations from H2", e);
         }
-        
+    }
+
+    private List<Conversation> seekConversations(H2ConnectionPool.PooledConnection connection, String comparison,
+                                                 Timestamp timestamp, long id, int limit) throws SQLException, IOException {
+        String sql = """
+            SELECT id, timestamp, model, prompt, response, prompt_tokens, response_tokens, 
+                   total_tokens, duration_ms, schema, tools, metadata
+            FROM conversations
+            WHERE (timestamp, id) %s (?, ?)
+            ORDER BY timestamp DESC, id DESC
+            LIMIT ?
+        """.formatted(comparison);
+        PreparedStatement pstmt = connection.prepare(sql);
+        pstmt.setTimestamp(1, timestamp);
+        pstmt.setLong(2, id);
+        pstmt.setInt(3, limit);
+        return queryConversations(pstmt);
+    }
+
+    private List<Conversation> queryConversations(PreparedStatement pstmt) throws SQLException, IOException {
+        List<Conversation> conversations = new ArrayList<>();
+        try (ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                conversations.add(mapResultSetToConversation(rs));
+            }
+        }
         return conversations;
     }
 
@@ -380,44 +548,23 @@ public class LogManager {
         List<Conversation> conversations = new ArrayList<>();
         
         try {
-            List<String> lines = Files.readAllLines(Paths.get(logPath));
-            int startIndex = Math.max(0, lines.size() - offset - limit);
-            int endIndex = Math.max(0, lines.size() - offset);
+            List<String> lines;
+            if (jsonlIndex != null) {
+                // Seek straight to the requested page instead of reading the whole log
+                flushJsonl();
+                int lineCount = jsonlIndex.lineCount();
+                lines = jsonlIndex.readLines(Math.max(0, lineCount - offset - limit), Math.max(0, lineCount - offset));
+            } else {
+                // Read backwards from the end of the log so the cost depends on the page, not the file size
+                flushJsonl();
+                lines = ReverseLineReader.readLastLines(Paths.get(logPath), offset, limit);
+            }
             
-            for (int i = startIndex; i < endIndex; i++) {
-                String line = lines.get(i);
+            for (String line : lines) {
                 if (!line.trim().isEmpty()) {
-                    ObjectNode node = objectMapper.readValue(line, ObjectNode.class);
-                    
-                    Conversation conv = new Conversation();
-                    
-                    // Handle both new format (with type=conversation) and legacy format
-                    if (node.has("type") && "conversation".equals(node.get("type").asText())) {
-                        conv.setId(node.get("id").asLong());
-                        conv.setTimestamp(Instant.parse(node.get("timestamp").asText()));
-                        conv.setModel(node.get("model").asText());
-                        conv.setPrompt("Conversation started");
-                        conv.setResponse("Conversation initialized");
-                        
-                        if (node.has("prompt_tokens")) conv.setPromptTokens(node.get("prompt_tokens").asInt());
-                        if (node.has("response_tokens")) conv.setResponseTokens(node.get("response_tokens").asInt());
-                        if (node.has("total_tokens")) conv.setTotalTokens(node.get("total_tokens").asInt());
-                        if (node.has("duration_ms")) conv.setDurationMs(node.get("duration_ms").asLong());
-                        if (node.has("schema")) conv.setSchema(node.get("schema").asText());
-                    } else if (node.has("model") && node.has("prompt") && node.has("response")) {
-                        // Legacy format from logConversation
-                        conv.setId(0); // Legacy entries don't have IDs
-                        conv.setTimestamp(Instant.parse(node.get("timestamp").asText()));
-                        conv.setModel(node.get("model").asText());
-                        conv.setPrompt(node.get("prompt").asText());
-                        conv.setResponse(node.get("response").asText());
-                        
-                        if (node.has("prompt_tokens")) conv.setPromptTokens(node.get("prompt_tokens").asInt());
-                        if (node.has("response_tokens")) conv.setResponseTokens(node.get("response_tokens").asInt());
-                        if (node.has("total_tokens")) conv.setTotalTokens(node.get("total_tokens").asInt());
-                        if (node.has("duration_ms")) conv.setDurationMs(node.get("duration_ms").asLong());
-                        if (node.has("schema")) conv.setSchema(node.get("schema").asText());
-                    } else {
+                    // Handles both new format (with type=conversation) and legacy format
+                    Conversation conv = jsonlEntryScanner.readConversation(line);
+                    if (conv == null) {
                         continue; // Skip unrecognized formats
                     }
                     
@@ -447,7 +594,8 @@ public class LogManager {
             WHERE id = ?
         """;
         
-        try (PreparedStatement pstmt = dbConnection.prepareStatement(sql)) {
+        try (H2ConnectionPool.PooledConnection connection = h2Pool.acquire()) {
+            PreparedStatement pstmt = connection.prepare(sql);
             pstmt.setLong(1, id);
             
             try (ResultSet rs = pstmt.executeQuery()) {
@@ -464,9 +612,16 @@ public class LogManager {
 
     private Conversation getConversationFromJsonl(long id) {
         try {
-            List<String> lines = Files.readAllLines(Paths.get(logPath));
+            List<String> lines;
+            if (jsonlIndex != null) {
+                flushJsonl();
+                String line = jsonlIndex.findConversationLine(key -> NumberInput.parseAsLong(key, 0L) == id);
+                lines = line != null ? List.of(line) : List.of();
+            } else {
+                lines = readJsonlLines();
+            }
             for (String line : lines) {
-                if (!line.trim().isEmpty()) {
+                if (!line.trim().isEmpty() && jsonlEntryScanner.scanKey(line).type() == JsonlLogIndex.CONVERSATION) {
                     ObjectNode node = objectMapper.readValue(line, ObjectNode.class);
                     if (node.has("type") && "conversation".equals(node.get("type").asText()) && 
                         node.get("id").asLong() == id) {
@@ -561,65 +716,125 @@ public class LogManager {
                                     Integer promptTokens, Integer responseTokens, Integer totalTokens,
                                     Long durationMs, String schema, List<Object> tools, Map<String, Object> metadata) {
         
-        try (FileWriter fw = new FileWriter(logPath, true);
-             BufferedWriter bw = new BufferedWriter(fw);
-             PrintWriter out = new PrintWriter(bw)) {
-            
-            ObjectNode entry = objectMapper.createObjectNode();
-            entry.put("timestamp", Instant.now().toString());
-            entry.put("model", model);
-            entry.put("prompt", prompt);
-            entry.put("response", response);
-            
-            if (promptTokens != null) entry.put("prompt_tokens", promptTokens);
-            if (responseTokens != null) entry.put("response_tokens", responseTokens);
-            if (totalTokens != null) entry.put("total_tokens", totalTokens);
-            if (durationMs != null) entry.put("duration_ms", durationMs);
-            if (schema != null) entry.put("schema", schema);
-            if (tools != null) entry.set("tools", objectMapper.valueToTree(tools));
-            if (metadata != null) entry.set("metadata", objectMapper.valueToTree(metadata));
-            
-            out.println(objectMapper.writeValueAsString(entry));
+        try {
+            appendJsonlLine(legacyEntry(model, prompt, response, promptTokens, responseTokens, totalTokens,
+                    durationMs, schema, tools, metadata));
         } catch (IOException e) {
             throw new RuntimeException("Failed to log conversation to JSONL", e);
         }
     }
 
+    private ObjectNode legacyEntry(String model, String prompt, String response, 
+                                   Integer promptTokens, Integer responseTokens, Integer totalTokens,
+                                   Long durationMs, String schema, List<Object> tools, Map<String, Object> metadata) {
+        ObjectNode entry = objectMapper.createObjectNode();
+        entry.put("timestamp", Instant.now().toString());
+        entry.put("model", model);
+        entry.put("prompt", prompt);
+        entry.put("response", response);
+        
+        if (promptTokens != null) entry.put("prompt_tokens", promptTokens);
+        if (responseTokens != null) entry.put("response_tokens", responseTokens);
+        if (totalTokens != null) entry.put("total_tokens", totalTokens);
+        if (durationMs != null) entry.put("duration_ms", durationMs);
+        if (schema != null) entry.put("schema", schema);
+        if (tools != null) entry.set("tools", objectMapper.valueToTree(tools));
+        if (metadata != null) entry.set("metadata", objectMapper.valueToTree(metadata));
+        return entry;
+    }
+
     private void logConversationToH2(String model, String prompt, String response, 
                                    Integer promptTokens, Integer responseTokens, Integer totalTokens,
                                    Long durationMs, String schema, List<Object> tools, Map<String, Object> metadata) {
         try {
-            // Insert conversation without specifying ID (auto-generated)
-            String conversationSQL = """
-                INSERT INTO conversations (model, prompt, response, prompt_tokens, response_tokens, 
-                                         total_tokens, duration_ms, schema, tools, metadata)
-                VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
-            """;
-            
-            try (PreparedStatement pstmt = dbConnection.prepareStatement(conversationSQL, Statement.RETURN_GENERATED_KEYS)) {
-                pstmt.setString(1, model);
-                pstmt.setString(2, prompt);
-                pstmt.setString(3, response);
-                setNullableInt(pstmt, 4, promptTokens);
-                setNullableInt(pstmt, 5, responseTokens);
-                setNullableInt(pstmt, 6, totalTokens);
-                setNullableLong(pstmt, 7, durationMs);
-                pstmt.setString(8, schema);
-                pstmt.setString(9, tools != null ? objectMapper.writeValueAsString(tools) : null);
-                pstmt.setString(10, metadata != null ? objectMapper.writeValueAsString(metadata) : null);
-                pstmt.executeUpdate();
-            }
+            writeToH2(connection -> addLegacyConversationBatch(connection, model, prompt, response,
+                    promptTokens, responseTokens, totalTokens, durationMs, schema, tools, metadata));
         } catch (SQLException | IOException e) {
             throw new RuntimeException("Failed to log conversation to H2", e);
         }
     }
 
+    private void addLegacyConversationBatch(H2ConnectionPool.PooledConnection connection, String model,
+                                            String prompt, String response,
+                                            Integer promptTokens, Integer responseTokens, Integer totalTokens,
+                                            Long durationMs, String schema, List<Object> tools,
+                                            Map<String, Object> metadata) throws SQLException, IOException {
+        // Insert conversation without specifying ID (auto-generated)
+        PreparedStatement pstmt = connection.prepareBatch(LEGACY_CONVERSATION_INSERT_SQL);
+        pstmt.setString(1, model);
+        pstmt.setString(2, prompt);
+        pstmt.setString(3, response);
+        setNullableInt(pstmt, 4, promptTokens);
+        setNullableInt(pstmt, 5, responseTokens);
+        setNullableInt(pstmt, 6, totalTokens);
+        setNullableLong(pstmt, 7, durationMs);
+        pstmt.setString(8, schema);
+        pstmt.setString(9, tools != null ? objectMapper.writeValueAsString(tools) : null);
+        pstmt.setString(10, metadata != null ? objectMapper.writeValueAsString(metadata) : null);
+        pstmt.addBatch();
+    }
+
+    /**
+     * Logs many completed calls at once: a single H2 transaction, or a single append to the JSONL
+     * log, instead of one write per call.
+     */
+    public void logConversations(List<LoggedCall> calls) {
+        if (calls.isEmpty()) {
+            return;
+        }
+        if ("h2".equalsIgnoreCase(logType)) {
+            try {
+                writeToH2(connection -> {
+                    for (LoggedCall call : calls) {
+                        addLegacyConversationBatch(connection, call.model(), call.prompt(), call.response(),
+                                call.promptTokens(), call.responseTokens(), call.totalTokens(), call.durationMs(),
+                                null, null, call.metadata());
+                    }
+                });
+            } catch (SQLException | IOException e) {
+                throw new RuntimeException("Failed to log conversations to H2", e);
+            }
+        } else {
+            List<ObjectNode> entries = new ArrayList<>(calls.size());
+            for (LoggedCall call : calls) {
+                entries.add(legacyEntry(call.model(), call.prompt(), call.response(), call.promptTokens(),
+                        call.responseTokens(), call.totalTokens(), call.durationMs(), null, null, call.metadata()));
+            }
+            try {
+                appendJsonlLines(entries);
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to log conversations to JSONL", e);
+            }
+        }
+    }
+
+    /**
+     * One completed prompt/response call, as logged by {@link #logConversations(List)}.
+     */
+    public record LoggedCall(String model, String prompt, String response, Integer promptTokens,
+                             Integer responseTokens, Integer totalTokens, Long durationMs,
+                             Map<String, Object> metadata) {
+    }
+
     public void close() {
-        if (dbConnection != null) {
+        if (asyncJsonlWriter != null) {
+            asyncJsonlWriter.close();
+        }
+        if (jsonlIndex != null) {
+            try {
+                jsonlIndex.close();
+            } catch (IOException e) {
+                throw new RuntimeException("Failed to close JSONL log index", e);
+            }
+        }
+        if (h2GroupCommitter != null) {
+            h2GroupCommitter.close();
+        }
+        if (h2Pool != null) {
             try {
-                dbConnection.close();
+                h2Pool.close();
             } catch (SQLException e) {
-                throw new RuntimeException("Failed to close H2 connection", e);
+                throw new RuntimeException("Failed to close H2 connection pool", e);
             }
         }
     }
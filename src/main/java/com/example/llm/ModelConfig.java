@@ -1,27 +1,105 @@
 package com.example.llm;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 public class ModelConfig {
+    private static final List<String> PROVIDERS =
+            List.of("anthropic", "azure", "gemini", "groq", "ollama", "openai", "openrouter");
+
     private final Map<String, String> config = new HashMap<>();
 
     public ModelConfig() {
         // Load from environment variables
         config.put("anthropic.api.key", System.getenv("ANTHROPIC_API_KEY"));
+        config.put("anthropic.base.url", System.getenv("ANTHROPIC_BASE_URL"));
         config.put("azure.openai.api.key", System.getenv("AZURE_OPENAI_API_KEY"));
         config.put("azure.openai.endpoint", System.getenv("AZURE_OPENAI_ENDPOINT"));
         config.put("gemini.api.key", System.getenv("GEMINI_API_KEY"));
         config.put("groq.api.key", System.getenv("GROQ_API_KEY"));
         config.put("huggingface.api.key", System.getenv("HF_API_KEY"));
         config.put("openai.api.key", System.getenv("OPENAI_API_KEY"));
+        config.put("openai.base.url", System.getenv("OPENAI_BASE_URL"));
         config.put("openrouter.api.key", System.getenv("OPENROUTER_API_KEY"));
         
         // Logging configuration
         config.put("log.type", System.getenv().getOrDefault("LLM_LOG_TYPE", "none"));
         config.put("log.path", System.getenv().getOrDefault("LLM_LOG_PATH", 
             System.getProperty("user.home") + "/.llm/logs/conversations"));
+        config.put("log.async", System.getenv("LLM_LOG_ASYNC"));
+        config.put("log.async.queue.size", System.getenv("LLM_LOG_ASYNC_QUEUE_SIZE"));
+        config.put("log.async.fsync.entries", System.getenv("LLM_LOG_ASYNC_FSYNC_ENTRIES"));
+        config.put("log.async.fsync.interval.ms", System.getenv("LLM_LOG_ASYNC_FSYNC_INTERVAL_MS"));
+        config.put("log.async.overflow", System.getenv("LLM_LOG_ASYNC_OVERFLOW"));
+        config.put("log.h2.pool.size", System.getenv("LLM_LOG_H2_POOL_SIZE"));
+        config.put("log.h2.group.commit.ms", System.getenv("LLM_LOG_H2_GROUP_COMMIT_MS"));
+        config.put("log.h2.group.commit.size", System.getenv("LLM_LOG_H2_GROUP_COMMIT_SIZE"));
+        config.put("conversation.cache.chars", System.getenv("LLM_CONVERSATION_CACHE_CHARS"));
+        config.put("context.max.tokens", System.getenv("LLM_CONTEXT_MAX_TOKENS"));
+
+        // HTTP transport shared by the provider clients; timeouts may be set per provider
+        config.put("http.connect.timeout.ms", System.getenv("LLM_HTTP_CONNECT_TIMEOUT_MS"));
+        config.put("http.read.timeout.ms", System.getenv("LLM_HTTP_READ_TIMEOUT_MS"));
+        config.put("http.http2", System.getenv("LLM_HTTP_HTTP2"));
+        config.put("http.pool.size", System.getenv("LLM_HTTP_POOL_SIZE"));
+        config.put("http.idle.timeout.seconds", System.getenv("LLM_HTTP_IDLE_TIMEOUT_SECONDS"));
+        for (String provider : PROVIDERS) {
+            String prefix = "LLM_HTTP_" + provider.toUpperCase() + "_";
+            config.put("http." + provider + ".connect.timeout.ms", System.getenv(prefix + "CONNECT_TIMEOUT_MS"));
+            config.put("http." + provider + ".read.timeout.ms", System.getenv(prefix + "READ_TIMEOUT_MS"));
+            config.put("http." + provider + ".http2", System.getenv(prefix + "HTTP2"));
+        }
+
+        // Retry, deadline and hedging policy; per-model settings as retry.<provider>/<model>.*
+        config.put("retry.max.attempts", System.getenv("LLM_RETRY_MAX_ATTEMPTS"));
+        config.put("retry.attempt.timeout.ms", System.getenv("LLM_RETRY_ATTEMPT_TIMEOUT_MS"));
+        config.put("retry.hedge", System.getenv("LLM_RETRY_HEDGE"));
+        for (String provider : PROVIDERS) {
+            String prefix = "LLM_RETRY_" + provider.toUpperCase() + "_";
+            config.put("retry." + provider + ".max.attempts", System.getenv(prefix + "MAX_ATTEMPTS"));
+            config.put("retry." + provider + ".attempt.timeout.ms", System.getenv(prefix + "ATTEMPT_TIMEOUT_MS"));
+            config.put("retry." + provider + ".hedge", System.getenv(prefix + "HEDGE"));
+        }
+
+        // Batched embeddings: inputs per request and requests in flight
+        config.put("embedding.batch.size", System.getenv("LLM_EMBEDDING_BATCH_SIZE"));
+        config.put("embedding.concurrency", System.getenv("LLM_EMBEDDING_CONCURRENCY"));
+
+        // On-disk vector collections written by embed --store
+        config.put("vectors.path", System.getenv("LLM_VECTORS_PATH"));
+        config.put("vectors.hnsw.m", System.getenv("LLM_VECTORS_HNSW_M"));
+        config.put("vectors.hnsw.ef.construction", System.getenv("LLM_VECTORS_HNSW_EF_CONSTRUCTION"));
+        config.put("vectors.hnsw.ef.search", System.getenv("LLM_VECTORS_HNSW_EF_SEARCH"));
+        config.put("vectors.pq.subspaces", System.getenv("LLM_VECTORS_PQ_SUBSPACES"));
+        config.put("vectors.quantization.rerank", System.getenv("LLM_VECTORS_QUANTIZATION_RERANK"));
+
+        // Exact-match response cache, off unless enabled
+        config.put("cache.exact.enabled", System.getenv("LLM_CACHE_EXACT_ENABLED"));
+        config.put("cache.exact.path", System.getenv("LLM_CACHE_EXACT_PATH"));
+        config.put("cache.exact.memory.entries", System.getenv("LLM_CACHE_EXACT_MEMORY_ENTRIES"));
+        config.put("cache.exact.max.mb", System.getenv("LLM_CACHE_EXACT_MAX_MB"));
+
+        // Semantic response cache, enabled by naming the embedding model (e.g. openai:text-embedding-3-small)
+        config.put("cache.semantic.embedding.model", System.getenv("LLM_CACHE_SEMANTIC_EMBEDDING_MODEL"));
+        config.put("cache.semantic.threshold", System.getenv("LLM_CACHE_SEMANTIC_THRESHOLD"));
+        config.put("cache.semantic.ttl.seconds", System.getenv("LLM_CACHE_SEMANTIC_TTL_SECONDS"));
+        config.put("cache.semantic.max.entries", System.getenv("LLM_CACHE_SEMANTIC_MAX_ENTRIES"));
+
+        // Circuit breaking for routed aliases such as fast=groq/llama3,openai/gpt-4o-mini
+        config.put("routing.failure.threshold", System.getenv("LLM_ROUTING_FAILURE_THRESHOLD"));
+        config.put("routing.open.ms", System.getenv("LLM_ROUTING_OPEN_MS"));
+
+        // Per-provider rate limits; per-model limits can be set as ratelimit.<provider>/<model>.*
+        for (String provider : PROVIDERS) {
+            String prefix = "LLM_RATELIMIT_" + provider.toUpperCase() + "_";
+            config.put("ratelimit." + provider + ".rpm", System.getenv(prefix + "RPM"));
+            config.put("ratelimit." + provider + ".tpm", System.getenv(prefix + "TPM"));
+            config.put("ratelimit." + provider + ".adaptive", System.getenv(prefix + "ADAPTIVE"));
+            config.put("ratelimit." + provider + ".concurrency.max", System.getenv(prefix + "CONCURRENCY_MAX"));
+            config.put("ratelimit." + provider + ".latency.target.ms", System.getenv(prefix + "LATENCY_TARGET_MS"));
+        }
     }
 
     /**
@@ -38,4 +116,14 @@ public class ModelConfig {
     public String getOrThrow(String key, String message) {
         return Optional.ofNullable(config.get(key)).orElseThrow(() -> new IllegalArgumentException(message));
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof ModelConfig other && config.equals(other.config);
+    }
+
+    @Override
+    public int hashCode() {
+        return config.hashCode();
+    }
 }
@@ -1,13 +1,28 @@
 package com.example.llm;
 
 import com.example.llm.provider.*;
-import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.BiFunction;
 
+/**
+ * Builds chat and embedding models by provider and keeps the built instances, so repeated
+ * lookups of the same model reuse its clients and their warm HTTP connections instead of
+ * constructing new ones per call.
+ */
 public class ModelRegistry {
-    private final Map<String, BiFunction<ModelConfig, String, LlmChatModel>> chatModelFactories = new HashMap<>();
-    private final Map<String, BiFunction<ModelConfig, String, LlmEmbeddingModel>> embeddingModelFactories = new HashMap<>();
+    private record ModelKey(String provider, String modelName) {
+    }
+
+    private final Map<String, BiFunction<ModelConfig, String, LlmChatModel>> chatModelFactories = new ConcurrentHashMap<>();
+    private final Map<String, BiFunction<ModelConfig, String, LlmEmbeddingModel>> embeddingModelFactories = new ConcurrentHashMap<>();
+    private final Map<ModelKey, LlmChatModel> chatModels = new ConcurrentHashMap<>();
+    private final Map<ModelKey, LlmEmbeddingModel> embeddingModels = new ConcurrentHashMap<>();
+    private final Map<List<String>, LlmChatModel> routedModels = new ConcurrentHashMap<>();
+    private final RateLimitedChatModel.ProviderLimits providerLimits = new RateLimitedChatModel.ProviderLimits();
+    private final List<Runnable> invalidationListeners = new CopyOnWriteArrayList<>();
     private final ModelConfig modelConfig;
 
     public ModelRegistry(ModelConfig modelConfig) {
@@ -26,10 +41,33 @@ public class ModelRegistry {
     }
 
     public LlmChatModel getModel(String provider, String modelName) {
-        if (!chatModelFactories.containsKey(provider)) {
+        BiFunction<ModelConfig, String, LlmChatModel> factory = chatModelFactories.get(provider);
+        if (factory == null) {
             throw new IllegalArgumentException("Provider not found: " + provider);
         }
-        return chatModelFactories.get(provider).apply(modelConfig, modelName);
+        // Retries and hedges sit outside the rate limiter, so every attempt is admitted by it
+        return chatModels.computeIfAbsent(keyOf(provider, modelName), key ->
+                ResilientChatModel.decorate(modelConfig, provider, modelName,
+                        RateLimitedChatModel.decorate(modelConfig, provider, modelName,
+                                factory.apply(modelConfig, modelName), providerLimits)));
+    }
+
+    /**
+     * A model that routes between {@code targets}, each {@code provider/model} or a bare provider.
+     * Routers are shared like single models, so their latency and health statistics accumulate
+     * across calls.
+     */
+    public LlmChatModel getRoutedModel(List<String> targets) {
+        if (targets.size() == 1) {
+            return getTargetModel(targets.get(0));
+        }
+        return routedModels.computeIfAbsent(List.copyOf(targets), key ->
+                RoutingChatModel.of(targets, modelConfig, this::getTargetModel));
+    }
+
+    private LlmChatModel getTargetModel(String target) {
+        String[] parts = target.split("/", 2);
+        return parts.length == 2 ? getModel(parts[0], parts[1]) : getModel(target);
     }
 
     public LlmChatModel getModel(String provider) {
@@ -43,10 +81,11 @@ public class ModelRegistry {
     }
 
     public LlmEmbeddingModel getEmbeddingModel(String provider, String modelName) {
-        if (!embeddingModelFactories.containsKey(provider)) {
+        BiFunction<ModelConfig, String, LlmEmbeddingModel> factory = embeddingModelFactories.get(provider);
+        if (factory == null) {
             throw new IllegalArgumentException("Embedding provider not found: " + provider);
         }
-        return embeddingModelFactories.get(provider).apply(modelConfig, modelName);
+        return embeddingModels.computeIfAbsent(keyOf(provider, modelName), key -> factory.apply(modelConfig, modelName));
     }
 
     public LlmEmbeddingModel getEmbeddingModel(String provider) {
@@ -58,10 +97,49 @@ public class ModelRegistry {
 
     public void registerChatModelFactory(String provider, BiFunction<ModelConfig, String, LlmChatModel> factory) {
         chatModelFactories.put(provider, factory);
+        chatModels.keySet().removeIf(key -> key.provider().equals(provider));
+        routedModels.clear();
+        notifyInvalidated();
     }
 
     public void registerEmbeddingModelFactory(String provider, BiFunction<ModelConfig, String, LlmEmbeddingModel> factory) {
         embeddingModelFactories.put(provider, factory);
+        embeddingModels.keySet().removeIf(key -> key.provider().equals(provider));
+        notifyInvalidated();
+    }
+
+    /**
+     * Runs {@code listener} whenever cached instances are dropped, so holders of models built on
+     * top of them can drop theirs too.
+     */
+    public void addInvalidationListener(Runnable listener) {
+        invalidationListeners.add(listener);
+    }
+
+    private void notifyInvalidated() {
+        invalidationListeners.forEach(Runnable::run);
+    }
+
+    /**
+     * Drops the cached chat and embedding instances of a model; the next lookup builds new ones.
+     */
+    public void invalidate(String provider, String modelName) {
+        chatModels.remove(keyOf(provider, modelName));
+        embeddingModels.remove(keyOf(provider, modelName));
+        // Routers hold their backends, so any of them may hold the invalidated model
+        routedModels.clear();
+        notifyInvalidated();
+    }
+
+    public void invalidateAll() {
+        chatModels.clear();
+        embeddingModels.clear();
+        routedModels.clear();
+        notifyInvalidated();
+    }
+
+    private ModelKey keyOf(String provider, String modelName) {
+        return new ModelKey(provider, modelName);
     }
 
     public String[] getAvailableChatProviders() {
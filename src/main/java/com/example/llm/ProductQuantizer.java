@@ -0,0 +1,221 @@
+package com.example.llm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Product quantization (Jegou et al.): vectors are split into equal subspaces, and each
+ * sub-vector is replaced by the one-byte id of its nearest centroid from a per-subspace codebook
+ * of up to 256 centroids learned by k-means. With the default of one subspace per four
+ * dimensions, a code is a sixteenth the size of the float32 vector.
+ *
+ * <p>Queries are scored asymmetrically: the query stays in full precision, and its dot product
+ * with every centroid is tabulated once, so scoring a code is one table lookup per subspace.
+ */
+public class ProductQuantizer implements VectorQuantizer {
+    public static final int DIMENSIONS_PER_SUBSPACE = 4;
+    static final int MAX_CENTROIDS = 256;
+    static final int TRAINING_ITERATIONS = 20;
+    static final int TRAINING_POINTS_PER_CENTROID = 40;
+
+    private final int dimension;
+    private final int subspaces;
+    private final int subDimension;
+    private final int centroids;
+    /**
+     * Per subspace, the centroids dimension-major: coordinate {@code d} of centroid {@code c} is
+     * at {@code d * centroids + c}, so distances to all centroids accumulate in contiguous,
+     * vectorizable loops.
+     */
+    private final float[][] codebooks;
+
+    ProductQuantizer(int dimension, int subspaces, int centroids, float[][] codebooks) {
+        this.dimension = dimension;
+        this.subspaces = subspaces;
+        this.subDimension = dimension / subspaces;
+        this.centroids = centroids;
+        this.codebooks = codebooks;
+    }
+
+    /**
+     * The default subspace count for a dimension: one per four dimensions, or failing that the
+     * largest divisor of the dimension below it.
+     */
+    public static int defaultSubspaces(int dimension) {
+        for (int subspaces = Math.max(1, dimension / DIMENSIONS_PER_SUBSPACE); subspaces > 1; subspaces--) {
+            if (dimension % subspaces == 0) {
+                return subspaces;
+            }
+        }
+        return 1;
+    }
+
+    /**
+     * Learns the codebooks with k-means in every subspace, the subspaces in parallel. At most
+     * about {@value #TRAINING_POINTS_PER_CENTROID} points per centroid of {@code vectors} are used,
+     * which is plenty for 256 centroids and bounds training time.
+     */
+    public static ProductQuantizer train(List<float[]> vectors, int subspaces, long seed) {
+        int dimension = vectors.get(0).length;
+        int maxPoints = MAX_CENTROIDS * TRAINING_POINTS_PER_CENTROID;
+        int stride = (vectors.size() + maxPoints - 1) / maxPoints;
+        List<float[]> sample = IntStream.range(0, vectors.size() / stride).mapToObj(i -> vectors.get(i * stride)).toList();
+        if (subspaces <= 0 || dimension % subspaces != 0) {
+            throw new IllegalArgumentException(subspaces + " subspaces do not divide dimension " + dimension);
+        }
+        int subDimension = dimension / subspaces;
+        int centroids = Math.min(MAX_CENTROIDS, sample.size());
+        float[][] codebooks = new float[subspaces][];
+        IntStream.range(0, subspaces).parallel().forEach(subspace ->
+                codebooks[subspace] = kMeans(sample, subspace * subDimension, subDimension, centroids,
+                        new Random(seed + subspace)));
+        return new ProductQuantizer(dimension, subspaces, centroids, codebooks);
+    }
+
+    /**
+     * Lloyd's k-means over one slice of the sample, seeded with distinct random points, until
+     * fewer than one point in a thousand changes cluster. A centroid left without points is
+     * reseeded with a random point.
+     */
+    private static float[] kMeans(List<float[]> sample, int offset, int width, int k, Random random) {
+        float[] centres = new float[width * k];
+        int[] seeds = random.ints(0, sample.size()).distinct().limit(k).toArray();
+        for (int c = 0; c < k; c++) {
+            setCentre(centres, k, c, sample.get(seeds[c]), offset, width);
+        }
+        int[] assignment = new int[sample.size()];
+        float[] distances = new float[k];
+        for (int iteration = 0; iteration < TRAINING_ITERATIONS; iteration++) {
+            int changed = 0;
+            for (int i = 0; i < sample.size(); i++) {
+                int nearest = nearest(centres, k, width, sample.get(i), offset, distances);
+                if (nearest != assignment[i] || iteration == 0) {
+                    changed++;
+                }
+                assignment[i] = nearest;
+            }
+            if (changed * 1000L < sample.size()) {
+                break;
+            }
+            float[] sums = new float[width * k];
+            int[] counts = new int[k];
+            for (int i = 0; i < sample.size(); i++) {
+                float[] vector = sample.get(i);
+                int c = assignment[i];
+                counts[c]++;
+                for (int d = 0; d < width; d++) {
+                    sums[d * k + c] += vector[offset + d];
+                }
+            }
+            for (int c = 0; c < k; c++) {
+                if (counts[c] == 0) {
+                    setCentre(centres, k, c, sample.get(random.nextInt(sample.size())), offset, width);
+                    continue;
+                }
+                for (int d = 0; d < width; d++) {
+                    centres[d * k + c] = sums[d * k + c] / counts[c];
+                }
+            }
+        }
+        return centres;
+    }
+
+    private static void setCentre(float[] centres, int k, int c, float[] vector, int offset, int width) {
+        for (int d = 0; d < width; d++) {
+            centres[d * k + c] = vector[offset + d];
+        }
+    }
+
+    private static int nearest(float[] centres, int k, int width, float[] vector, int offset, float[] distances) {
+        Arrays.fill(distances, 0, k, 0);
+        for (int d = 0; d < width; d++) {
+            float value = vector[offset + d];
+            for (int c = 0, base = d * k; c < k; c++) {
+                float diff = value - centres[base + c];
+                distances[c] += diff * diff;
+            }
+        }
+        int best = 0;
+        for (int c = 1; c < k; c++) {
+            if (distances[c] < distances[best]) {
+                best = c;
+            }
+        }
+        return best;
+    }
+
+    @Override
+    public Kind kind() {
+        return Kind.PQ;
+    }
+
+    @Override
+    public int dimension() {
+        return dimension;
+    }
+
+    @Override
+    public int codeSize() {
+        return subspaces;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] code) {
+        float[] distances = new float[centroids];
+        for (int s = 0; s < subspaces; s++) {
+            code[s] = (byte) nearest(codebooks[s], centroids, subDimension, vector, s * subDimension, distances);
+        }
+    }
+
+    @Override
+    public Scorer scorer(float[] query) {
+        float[] table = new float[subspaces * centroids];
+        for (int s = 0; s < subspaces; s++) {
+            float[] codebook = codebooks[s];
+            for (int d = 0; d < subDimension; d++) {
+                float value = query[s * subDimension + d];
+                for (int c = 0, base = d * centroids; c < centroids; c++) {
+                    table[s * centroids + c] += value * codebook[base + c];
+                }
+            }
+        }
+        return code -> {
+            float sum = 0;
+            for (int s = 0, base = 0; s < code.length; s++, base += centroids) {
+                sum += table[base + (code[s] & 0xFF)];
+            }
+            return sum;
+        };
+    }
+
+    @Override
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(Kind.PQ.ordinal());
+        out.writeInt(dimension);
+        out.writeInt(subspaces);
+        out.writeInt(centroids);
+        for (float[] codebook : codebooks) {
+            for (float value : codebook) {
+                out.writeFloat(value);
+            }
+        }
+    }
+
+    static ProductQuantizer read(DataInputStream in) throws IOException {
+        int dimension = in.readInt();
+        int subspaces = in.readInt();
+        int centroids = in.readInt();
+        float[][] codebooks = new float[subspaces][centroids * (dimension / subspaces)];
+        for (float[] codebook : codebooks) {
+            for (int i = 0; i < codebook.length; i++) {
+                codebook[i] = in.readFloat();
+            }
+        }
+        return new ProductQuantizer(dimension, subspaces, centroids, codebooks);
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.llm;
+
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.exception.RetriableException;
+import dev.langchain4j.exception.TimeoutException;
+
+import java.io.IOException;
+
+/**
+ * Classifies failures thrown through {@link LlmChatModel#chat}, which arrive wrapped in one or
+ * more {@link RuntimeException}s, by looking through the cause chain.
+ */
+public final class ProviderErrors {
+    private ProviderErrors() {
+    }
+
+    /**
+     * Whether the provider rejected the request for exceeding its rate limit (HTTP 429).
+     */
+    public static boolean isRateLimited(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RateLimitException
+                    || cause instanceof HttpException httpException && httpException.statusCode() == 429) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Whether the same request may succeed if sent again: rate limits, server errors, timeouts
+     * and I/O failures, but not authentication or invalid-request errors.
+     */
+    public static boolean isRetryable(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof RetriableException || cause instanceof TimeoutException
+                    || cause instanceof IOException) {
+                return true;
+            }
+            if (cause instanceof HttpException httpException) {
+                int status = httpException.statusCode();
+                return status == 408 || status == 429 || status >= 500;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,221 @@
+package com.example.llm;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Compressed copies of a {@link VectorStore}'s vectors for searches that touch a fraction of the
+ * bytes. The quantizer is trained once from a sample of the stored vectors and kept in
+ * {@code quantizer.bin}; codes are appended to {@code codes.u8} as the store grows and
+ * memory-mapped for search.
+ *
+ * <p>A search scans the codes for the {@code k * rerank} best approximate candidates and then
+ * re-scores only those against the full-precision vectors, so the float32 file is read for a
+ * handful of vectors per query while the scan's working set is the codes.
+ */
+public class QuantizedVectors implements AutoCloseable {
+    public static final int DEFAULT_RERANK = 10;
+    static final int TRAINING_SAMPLE = 20_000;
+
+    private static final long SEGMENT_BYTES = 1L << 30;
+    private static final int SEARCH_CHUNK = 4096;
+
+    private record CodeMapping(List<ByteBuffer> segments, int count) {
+    }
+
+    private final VectorQuantizer quantizer;
+    private final int segmentCodes;
+    private final FileChannel codes;
+    private CodeMapping mapping = new CodeMapping(List.of(), 0);
+    private volatile int rerank = DEFAULT_RERANK;
+    private int count;
+
+    private QuantizedVectors(Path directory, VectorQuantizer quantizer, boolean readOnly) throws IOException {
+        this.quantizer = quantizer;
+        this.segmentCodes = (int) Math.max(1, SEGMENT_BYTES / quantizer.codeSize());
+        this.codes = readOnly
+                ? FileChannel.open(directory.resolve("codes.u8"), StandardOpenOption.READ)
+                : FileChannel.open(directory.resolve("codes.u8"),
+                        StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    public static boolean exists(Path directory) {
+        return Files.exists(directory.resolve("quantizer.bin"));
+    }
+
+    /**
+     * Trains a quantizer of {@code kind} on up to {@value #TRAINING_SAMPLE} evenly spaced stored
+     * vectors and encodes the whole store, replacing any existing quantization.
+     *
+     * @param subspaces product-quantization subspaces, or 0 for
+     *                  {@link ProductQuantizer#defaultSubspaces}; ignored for int8
+     */
+    static QuantizedVectors create(Path directory, VectorQuantizer.Kind kind, int subspaces,
+                                   VectorStore.Mapping vectors, int dimension) throws IOException {
+        if (vectors.count() == 0) {
+            throw new IllegalStateException("Cannot train a quantizer on an empty collection");
+        }
+        List<float[]> sample = new ArrayList<>();
+        long stride = Math.max(1, vectors.count() / TRAINING_SAMPLE);
+        for (long i = 0; i < vectors.count() && sample.size() < TRAINING_SAMPLE; i += stride) {
+            float[] vector = new float[dimension];
+            vectors.read(i, vector);
+            sample.add(vector);
+        }
+        VectorQuantizer quantizer = switch (kind) {
+            case INT8 -> ScalarQuantizer.train(sample);
+            case PQ -> ProductQuantizer.train(sample,
+                    subspaces > 0 ? subspaces : ProductQuantizer.defaultSubspaces(dimension), 42);
+        };
+
+        Path temp = directory.resolve("quantizer.bin.tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            quantizer.write(out);
+        }
+        Files.deleteIfExists(directory.resolve("codes.u8"));
+        Files.move(temp, directory.resolve("quantizer.bin"), StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+        QuantizedVectors quantized = new QuantizedVectors(directory, quantizer, false);
+        quantized.addThrough(vectors);
+        return quantized;
+    }
+
+    /**
+     * Opens existing codes, dropping a partly written last code and encoding vectors added to
+     * the store since. Read-only, it just uses the complete codes it finds; searches score the
+     * vectors not yet encoded at full precision.
+     */
+    static QuantizedVectors open(Path directory, VectorStore.Mapping vectors, boolean readOnly) throws IOException {
+        VectorQuantizer quantizer;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(directory.resolve("quantizer.bin"))))) {
+            quantizer = VectorQuantizer.read(in);
+        }
+        QuantizedVectors quantized = new QuantizedVectors(directory, quantizer, readOnly);
+        quantized.count = (int) Math.min(vectors.count(), quantized.codes.size() / quantizer.codeSize());
+        if (readOnly) {
+            return quantized;
+        }
+        quantized.codes.truncate((long) quantized.count * quantizer.codeSize());
+        quantized.addThrough(vectors);
+        return quantized;
+    }
+
+    public VectorQuantizer quantizer() {
+        return quantizer;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Sets how many approximate candidates per requested result are re-scored at full precision.
+     */
+    public void setRerank(int rerank) {
+        this.rerank = rerank;
+    }
+
+    /**
+     * Encodes and appends the vectors of {@code vectors} not yet quantized.
+     */
+    synchronized void addThrough(VectorStore.Mapping vectors) throws IOException {
+        float[] vector = new float[quantizer.dimension()];
+        byte[] code = new byte[quantizer.codeSize()];
+        while (count < vectors.count()) {
+            int batch = Math.min(SEARCH_CHUNK, vectors.count() - count);
+            ByteBuffer buffer = ByteBuffer.allocate(batch * code.length);
+            for (int i = 0; i < batch; i++) {
+                vectors.read(count + i, vector);
+                quantizer.encode(vector, code);
+                buffer.put(code);
+            }
+            buffer.flip();
+            long position = (long) count * code.length;
+            while (buffer.hasRemaining()) {
+                position += codes.write(buffer, position);
+            }
+            count += batch;
+        }
+    }
+
+    /**
+     * The {@code k} best matches by approximate scan and full-precision re-ranking, scored like
+     * {@link VectorStore#searchExact}.
+     */
+    VectorStore.TopK search(LlmEmbedding query, int k, VectorStore.Metric metric, VectorStore.Mapping vectors)
+            throws IOException {
+        CodeMapping current = mapThrough();
+        int searchCount = Math.min(current.count(), vectors.count());
+        float[] q = query.vector();
+        double queryNorm = Math.sqrt(query.dot(query));
+        VectorQuantizer.Scorer scorer = quantizer.scorer(q);
+        int candidates = k * Math.max(1, rerank);
+        int chunks = (searchCount + SEARCH_CHUNK - 1) / SEARCH_CHUNK;
+        VectorStore.TopK approximate = IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> {
+                    VectorStore.TopK chunkTop = new VectorStore.TopK(candidates);
+                    byte[] code = new byte[quantizer.codeSize()];
+                    int end = Math.min(searchCount, (chunk + 1) * SEARCH_CHUNK);
+                    for (int i = chunk * SEARCH_CHUNK; i < end; i++) {
+                        current.segments().get(i / segmentCodes).get((i % segmentCodes) * code.length, code);
+                        double score = scorer.dot(code);
+                        if (metric == VectorStore.Metric.COSINE) {
+                            double norms = queryNorm * vectors.norms().get(i);
+                            score = norms == 0 ? 0 : score / norms;
+                        }
+                        chunkTop.offer(i, score);
+                    }
+                    return chunkTop;
+                })
+                .reduce(VectorStore.TopK::merge)
+                .orElseGet(() -> new VectorStore.TopK(candidates));
+
+        VectorStore.TopK top = new VectorStore.TopK(k);
+        float[] scratch = new float[quantizer.dimension()];
+        for (int[] entry : approximate.sorted()) {
+            top.offer(entry[0], vectors.score(entry[0], q, queryNorm, metric, scratch));
+        }
+        for (int i = searchCount; i < vectors.count(); i++) {
+            top.offer(i, vectors.score(i, q, queryNorm, metric, scratch));
+        }
+        return top;
+    }
+
+    private synchronized CodeMapping mapThrough() throws IOException {
+        if (mapping.count() == count) {
+            return mapping;
+        }
+        List<ByteBuffer> segments = new ArrayList<>(mapping.segments().subList(0, mapping.count() / segmentCodes));
+        int codeSize = quantizer.codeSize();
+        for (long start = (long) segments.size() * segmentCodes; start < count; start += segmentCodes) {
+            long length = Math.min(segmentCodes, count - start);
+            MappedByteBuffer mapped = codes.map(FileChannel.MapMode.READ_ONLY, start * codeSize, length * codeSize);
+            segments.add(mapped);
+        }
+        mapping = new CodeMapping(segments, count);
+        return mapping;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            codes.force(false);
+        } finally {
+            codes.close();
+        }
+    }
+}
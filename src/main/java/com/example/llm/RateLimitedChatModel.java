@@ -0,0 +1,271 @@
+package com.example.llm;
+
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.output.TokenUsage;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds a model's traffic under its provider limits. Requests first wait on the requests-per-minute
+ * and tokens-per-minute buckets, then for a slot under an adaptive concurrency limit that backs
+ * off on 429s (and, if a latency target is set, on slow responses) and creeps back up while the
+ * provider keeps up. Token reservations use an estimate of the prompt and are settled against the
+ * reported usage once the response arrives.
+ *
+ * <p>Configured through {@link ModelConfig}, most specific key first:
+ * {@code ratelimit.<provider>/<model>.<setting>}, then {@code ratelimit.<provider>.<setting>},
+ * with settings {@code rpm}, {@code tpm}, {@code adaptive} (true/false),
+ * {@code concurrency.max} (default 64) and {@code latency.target.ms}. Limits set per provider
+ * are one quota for all of its models: every model decorated with the same {@link ProviderLimits}
+ * draws on the same buckets and concurrency limit. Per-model settings get their own.
+ */
+public class RateLimitedChatModel implements LlmChatModel {
+    static final int DEFAULT_MAX_CONCURRENCY = 64;
+    static final int DEFAULT_INITIAL_CONCURRENCY = 8;
+
+    private final LlmChatModel delegate;
+    private final TokenBucket requestBucket;
+    private final TokenBucket tokenBucket;
+    private final AdaptiveConcurrencyLimit concurrencyLimit;
+    private final TokenEstimator estimator = TokenEstimator.defaultEstimator();
+    private final AtomicLong throttledNanos = new AtomicLong();
+    private final AtomicLong rateLimitedCount = new AtomicLong();
+
+    /**
+     * @param requestBucket     requests per minute, or null for no limit
+     * @param tokenBucket       tokens per minute, or null for no limit
+     * @param concurrencyLimit  adaptive concurrency limit, or null for none
+     */
+    public RateLimitedChatModel(LlmChatModel delegate, TokenBucket requestBucket, TokenBucket tokenBucket,
+                                AdaptiveConcurrencyLimit concurrencyLimit) {
+        this.delegate = delegate;
+        this.requestBucket = requestBucket;
+        this.tokenBucket = tokenBucket;
+        this.concurrencyLimit = concurrencyLimit;
+    }
+
+    /**
+     * Limiters built from {@code ratelimit.<provider>.*} settings, one set per provider. A
+     * {@link ModelRegistry} keeps one of these so all the models it builds share them.
+     */
+    public static final class ProviderLimits {
+        private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+        private final Map<String, AdaptiveConcurrencyLimit> concurrencyLimits = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Wraps {@code delegate} with the limits configured for the provider and model, or returns it
+     * unchanged when none are. Provider-level limits are not shared with other models.
+     */
+    public static LlmChatModel decorate(ModelConfig modelConfig, String provider, String modelName,
+                                        LlmChatModel delegate) {
+        return decorate(modelConfig, provider, modelName, delegate, new ProviderLimits());
+    }
+
+    /**
+     * Wraps {@code delegate} like {@link #decorate(ModelConfig, String, String, LlmChatModel)},
+     * taking provider-level limiters from {@code shared} so other models of the provider use the
+     * same ones.
+     */
+    public static LlmChatModel decorate(ModelConfig modelConfig, String provider, String modelName,
+                                        LlmChatModel delegate, ProviderLimits shared) {
+        TokenBucket requestBucket = bucket(modelConfig, provider, modelName, "rpm", shared);
+        TokenBucket tokenBucket = bucket(modelConfig, provider, modelName, "tpm", shared);
+        AdaptiveConcurrencyLimit concurrencyLimit = null;
+        if (Boolean.parseBoolean(setting(modelConfig, provider, modelName, "adaptive").orElse("false"))) {
+            boolean perModel = modelSetting(modelConfig, provider, modelName, "adaptive").isPresent()
+                    || modelSetting(modelConfig, provider, modelName, "concurrency.max").isPresent()
+                    || modelSetting(modelConfig, provider, modelName, "latency.target.ms").isPresent();
+            concurrencyLimit = perModel
+                    ? concurrencyLimit(modelConfig, provider, modelName)
+                    : shared.concurrencyLimits.computeIfAbsent(provider,
+                            key -> concurrencyLimit(modelConfig, provider, modelName));
+        }
+        if (requestBucket == null && tokenBucket == null && concurrencyLimit == null) {
+            return delegate;
+        }
+        return new RateLimitedChatModel(delegate, requestBucket, tokenBucket, concurrencyLimit);
+    }
+
+    private static TokenBucket bucket(ModelConfig modelConfig, String provider, String modelName, String name,
+                                      ProviderLimits shared) {
+        Optional<String> perModel = modelSetting(modelConfig, provider, modelName, name);
+        if (perModel.isPresent()) {
+            return new TokenBucket(Double.parseDouble(perModel.get()));
+        }
+        return modelConfig.get("ratelimit." + provider + "." + name).map(String::trim)
+                .map(value -> shared.buckets.computeIfAbsent(provider + "." + name,
+                        key -> new TokenBucket(Double.parseDouble(value))))
+                .orElse(null);
+    }
+
+    private static AdaptiveConcurrencyLimit concurrencyLimit(ModelConfig modelConfig, String provider, String modelName) {
+        int maxConcurrency = setting(modelConfig, provider, modelName, "concurrency.max")
+                .map(Integer::parseInt).orElse(DEFAULT_MAX_CONCURRENCY);
+        long latencyTargetMs = setting(modelConfig, provider, modelName, "latency.target.ms")
+                .map(Long::parseLong).orElse(0L);
+        return new AdaptiveConcurrencyLimit(Math.min(DEFAULT_INITIAL_CONCURRENCY, maxConcurrency),
+                1, maxConcurrency, TimeUnit.MILLISECONDS.toNanos(latencyTargetMs));
+    }
+
+    private static Optional<String> setting(ModelConfig modelConfig, String provider, String modelName, String name) {
+        return modelSetting(modelConfig, provider, modelName, name)
+                .or(() -> modelConfig.get("ratelimit." + provider + "." + name).map(String::trim));
+    }
+
+    private static Optional<String> modelSetting(ModelConfig modelConfig, String provider, String modelName, String name) {
+        return modelConfig.get("ratelimit." + provider + "/" + modelName + "." + name).map(String::trim);
+    }
+
+    @Override
+    public LlmResponse chat(LlmRequest llmRequest) {
+        int estimatedTokens = estimateTokens(llmRequest);
+        long startNanos = admit(estimatedTokens);
+        LlmResponse response;
+        try {
+            response = delegate.chat(llmRequest);
+        } catch (RuntimeException e) {
+            onFailure(startNanos, e);
+            throw e;
+        }
+        onSuccess(startNanos, estimatedTokens, response.totalTokens());
+        return response;
+    }
+
+    @Override
+    public void streamChat(LlmRequest llmRequest, StreamingChatResponseHandler handler) {
+        int estimatedTokens = estimateTokens(llmRequest);
+        long startNanos = admit(estimatedTokens);
+        AtomicBoolean settled = new AtomicBoolean();
+        try {
+            delegate.streamChat(llmRequest, new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                    handler.onPartialResponse(partialResponse);
+                }
+
+                @Override
+                public void onPartialThinking(PartialThinking partialThinking) {
+                    handler.onPartialThinking(partialThinking);
+                }
+
+                @Override
+                public void onPartialToolCall(PartialToolCall partialToolCall) {
+                    handler.onPartialToolCall(partialToolCall);
+                }
+
+                @Override
+                public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+                    handler.onCompleteToolCall(completeToolCall);
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    if (settled.compareAndSet(false, true)) {
+                        TokenUsage usage = completeResponse.tokenUsage();
+                        onSuccess(startNanos, estimatedTokens, usage != null ? usage.totalTokenCount() : null);
+                    }
+                    handler.onCompleteResponse(completeResponse);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    if (settled.compareAndSet(false, true)) {
+                        onFailure(startNanos, error);
+                    }
+                    handler.onError(error);
+                }
+            });
+        } catch (RuntimeException e) {
+            if (settled.compareAndSet(false, true)) {
+                onFailure(startNanos, e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for both buckets and a concurrency slot; returns the slot's start time.
+     */
+    private long admit(int estimatedTokens) {
+        long waitNanos = 0;
+        if (requestBucket != null) {
+            waitNanos = requestBucket.reserve(1);
+        }
+        if (tokenBucket != null) {
+            waitNanos = Math.max(waitNanos, tokenBucket.reserve(estimatedTokens));
+        }
+        try {
+            if (waitNanos > 0) {
+                throttledNanos.addAndGet(waitNanos);
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+            return concurrencyLimit != null ? concurrencyLimit.acquire() : System.nanoTime();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for rate limit", e);
+        }
+    }
+
+    private void onSuccess(long startNanos, int estimatedTokens, Integer actualTokens) {
+        if (concurrencyLimit != null) {
+            concurrencyLimit.onSuccess(startNanos);
+        }
+        if (tokenBucket != null && actualTokens != null) {
+            tokenBucket.adjust(estimatedTokens - actualTokens);
+        }
+    }
+
+    private void onFailure(long startNanos, Throwable error) {
+        boolean rateLimited = ProviderErrors.isRateLimited(error);
+        if (rateLimited) {
+            rateLimitedCount.incrementAndGet();
+        }
+        if (concurrencyLimit != null) {
+            if (rateLimited) {
+                concurrencyLimit.onRateLimited(startNanos);
+            } else {
+                concurrencyLimit.onIgnored();
+            }
+        }
+    }
+
+    private int estimateTokens(LlmRequest llmRequest) {
+        int tokens = estimator.estimate(llmRequest.prompt());
+        for (LlmMessage message : llmRequest.messages()) {
+            tokens += estimator.estimate(message.content());
+        }
+        return tokens;
+    }
+
+    public AdaptiveConcurrencyLimit getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public TokenBucket getRequestBucket() {
+        return requestBucket;
+    }
+
+    /**
+     * Total time callers have spent waiting on the request and token buckets.
+     */
+    public long getThrottledMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(throttledNanos.get());
+    }
+
+    /**
+     * Number of calls the provider rejected as rate limited.
+     */
+    public long getRateLimitedCount() {
+        return rateLimitedCount.get();
+    }
+}
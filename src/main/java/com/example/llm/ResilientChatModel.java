@@ -0,0 +1,290 @@
+package com.example.llm;
+
+import dev.langchain4j.exception.TimeoutException;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Retries, deadlines and hedging around a chat model. Retryable failures (see
+ * {@link ProviderErrors#isRetryable}) are retried with exponential backoff and full jitter. Each
+ * attempt may have its own deadline. With hedging on, an attempt still running after the model's
+ * recent p95 latency gets a duplicate request, and whichever answers first wins.
+ *
+ * <p>Streaming calls pass straight through: once partial output has reached the handler, the
+ * request cannot be transparently repeated.
+ *
+ * <p>Configured through {@link ModelConfig}, most specific key first:
+ * {@code retry.<provider>/<model>.<setting>}, {@code retry.<provider>.<setting>}, then
+ * {@code retry.<setting>}, with settings {@code max.attempts} (default 1, no retries),
+ * {@code backoff.initial.ms} (200), {@code backoff.max.ms} (10000), {@code attempt.timeout.ms}
+ * (none), {@code hedge} (false) and {@code hedge.min.delay.ms} (50).
+ */
+public class ResilientChatModel implements LlmChatModel {
+    /**
+     * @param attemptTimeout per-attempt deadline, or null for none
+     * @param minHedgeDelay  never hedge sooner than this, however fast recent calls were
+     */
+    public record Policy(int maxAttempts, Duration initialBackoff, Duration maxBackoff, Duration attemptTimeout,
+                         boolean hedge, Duration minHedgeDelay) {
+        public Policy {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("maxAttempts must be at least 1");
+            }
+        }
+    }
+
+    @FunctionalInterface
+    interface Sleeper {
+        void sleep(long nanos) throws InterruptedException;
+    }
+
+    static final int HEDGE_MIN_SAMPLES = 20;
+
+    private final LlmChatModel delegate;
+    private final Policy policy;
+    private final Sleeper sleeper;
+    private final DoubleSupplier jitter;
+    private final LatencyWindow latencies = new LatencyWindow(256);
+    private final ExecutorService executor;
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong hedgesFired = new AtomicLong();
+    private final AtomicLong hedgesWon = new AtomicLong();
+    private final AtomicLong attemptTimeouts = new AtomicLong();
+
+    public ResilientChatModel(LlmChatModel delegate, Policy policy) {
+        this(delegate, policy, TimeUnit.NANOSECONDS::sleep, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    ResilientChatModel(LlmChatModel delegate, Policy policy, Sleeper sleeper, DoubleSupplier jitter) {
+        this.delegate = delegate;
+        this.policy = policy;
+        this.sleeper = sleeper;
+        this.jitter = jitter;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "llm-attempt-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Wraps {@code delegate} with the policy configured for the provider and model, or returns it
+     * unchanged when neither retries, deadlines nor hedging are configured.
+     */
+    public static LlmChatModel decorate(ModelConfig modelConfig, String provider, String modelName,
+                                        LlmChatModel delegate) {
+        int maxAttempts = setting(modelConfig, provider, modelName, "max.attempts").map(Integer::parseInt).orElse(1);
+        Duration attemptTimeout = setting(modelConfig, provider, modelName, "attempt.timeout.ms")
+                .map(value -> Duration.ofMillis(Long.parseLong(value))).orElse(null);
+        boolean hedge = Boolean.parseBoolean(setting(modelConfig, provider, modelName, "hedge").orElse("false"));
+        if (maxAttempts <= 1 && attemptTimeout == null && !hedge) {
+            return delegate;
+        }
+        Policy policy = new Policy(maxAttempts,
+                Duration.ofMillis(setting(modelConfig, provider, modelName, "backoff.initial.ms").map(Long::parseLong).orElse(200L)),
+                Duration.ofMillis(setting(modelConfig, provider, modelName, "backoff.max.ms").map(Long::parseLong).orElse(10_000L)),
+                attemptTimeout,
+                hedge,
+                Duration.ofMillis(setting(modelConfig, provider, modelName, "hedge.min.delay.ms").map(Long::parseLong).orElse(50L)));
+        return new ResilientChatModel(delegate, policy);
+    }
+
+    private static Optional<String> setting(ModelConfig modelConfig, String provider, String modelName, String name) {
+        return modelConfig.get("retry." + provider + "/" + modelName + "." + name)
+                .or(() -> modelConfig.get("retry." + provider + "." + name))
+                .or(() -> modelConfig.get("retry." + name))
+                .map(String::trim);
+    }
+
+    @Override
+    public LlmResponse chat(LlmRequest llmRequest) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return attempt(llmRequest);
+            } catch (RuntimeException e) {
+                if (attempt >= policy.maxAttempts() || !ProviderErrors.isRetryable(e)) {
+                    throw e;
+                }
+                retries.incrementAndGet();
+                try {
+                    sleeper.sleep(backoffNanos(attempt));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    e.addSuppressed(interrupted);
+                    throw e;
+                }
+            }
+        }
+    }
+
+    @Override
+    public void streamChat(LlmRequest llmRequest, StreamingChatResponseHandler handler) {
+        delegate.streamChat(llmRequest, handler);
+    }
+
+    /**
+     * Full jitter: a uniformly random delay up to the capped exponential backoff for this attempt.
+     */
+    long backoffNanos(int attempt) {
+        long initial = policy.initialBackoff().toNanos();
+        long ceiling = attempt >= 63 || initial > (policy.maxBackoff().toNanos() >> (attempt - 1))
+                ? policy.maxBackoff().toNanos()
+                : initial << (attempt - 1);
+        return (long) (jitter.getAsDouble() * ceiling);
+    }
+
+    private LlmResponse attempt(LlmRequest llmRequest) {
+        long hedgeDelayNanos = hedgeDelayNanos();
+        if (policy.attemptTimeout() == null && hedgeDelayNanos < 0) {
+            return timedChat(llmRequest);
+        }
+
+        long start = System.nanoTime();
+        long deadline = policy.attemptTimeout() != null ? start + policy.attemptTimeout().toNanos() : Long.MAX_VALUE;
+        long hedgeAt = hedgeDelayNanos >= 0 ? start + hedgeDelayNanos : Long.MAX_VALUE;
+        CompletionService<LlmResponse> completion = new ExecutorCompletionService<>(executor);
+        Future<LlmResponse> primary = completion.submit(() -> timedChat(llmRequest));
+        Future<LlmResponse> hedge = null;
+        long hedgeStart = 0;
+        boolean primaryWon = false;
+        int outstanding = 1;
+        RuntimeException firstFailure = null;
+        try {
+            while (outstanding > 0) {
+                long now = System.nanoTime();
+                boolean canHedge = hedge == null && firstFailure == null;
+                long waitUntil = canHedge ? Math.min(deadline, hedgeAt) : deadline;
+                Future<LlmResponse> done = waitUntil == Long.MAX_VALUE
+                        ? completion.take()
+                        : completion.poll(Math.max(0, waitUntil - now), TimeUnit.NANOSECONDS);
+                if (done == null) {
+                    if (System.nanoTime() >= deadline) {
+                        attemptTimeouts.incrementAndGet();
+                        throw new TimeoutException("Attempt timed out after " + policy.attemptTimeout().toMillis() + " ms");
+                    }
+                    hedgeStart = System.nanoTime();
+                    hedge = completion.submit(() -> timedChat(llmRequest));
+                    hedgesFired.incrementAndGet();
+                    outstanding++;
+                    continue;
+                }
+                outstanding--;
+                try {
+                    LlmResponse response = done.get();
+                    if (done == hedge) {
+                        hedgesWon.incrementAndGet();
+                    }
+                    primaryWon = done == primary;
+                    return response;
+                } catch (ExecutionException e) {
+                    RuntimeException failure = e.getCause() instanceof RuntimeException runtimeException
+                            ? runtimeException
+                            : new RuntimeException(e.getCause());
+                    if (firstFailure == null) {
+                        firstFailure = failure;
+                    }
+                }
+            }
+            throw firstFailure;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for response", e);
+        } finally {
+            // An attempt cut off by the deadline or a faster hedge took at least this long; leaving
+            // it out would skew the window towards fast calls. A hedge that lost to the primary
+            // says nothing the primary's own sample doesn't.
+            long now = System.nanoTime();
+            if (primary.cancel(true)) {
+                latencies.record(now - start);
+            }
+            if (hedge != null && hedge.cancel(true) && !primaryWon) {
+                latencies.record(now - hedgeStart);
+            }
+        }
+    }
+
+    private LlmResponse timedChat(LlmRequest llmRequest) {
+        long start = System.nanoTime();
+        LlmResponse response = delegate.chat(llmRequest);
+        latencies.record(System.nanoTime() - start);
+        return response;
+    }
+
+    /**
+     * The delay before hedging, or -1 when hedging is off or there are too few samples yet.
+     */
+    private long hedgeDelayNanos() {
+        if (!policy.hedge()) {
+            return -1;
+        }
+        long p95 = latencies.percentile(0.95, HEDGE_MIN_SAMPLES);
+        return p95 < 0 ? -1 : Math.max(policy.minHedgeDelay().toNanos(), p95);
+    }
+
+    public long getRetryCount() {
+        return retries.get();
+    }
+
+    public long getHedgesFired() {
+        return hedgesFired.get();
+    }
+
+    public long getHedgesWon() {
+        return hedgesWon.get();
+    }
+
+    public long getAttemptTimeouts() {
+        return attemptTimeouts.get();
+    }
+
+    LatencyWindow getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * The most recent call latencies, successful or cut off, in a ring buffer.
+     */
+    static final class LatencyWindow {
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        /**
+         * The given percentile of the recorded latencies, or -1 with fewer than
+         * {@code minSamples} recorded.
+         */
+        synchronized long percentile(double percentile, int minSamples) {
+            if (size < minSamples) {
+                return -1;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            return sorted[Math.min(size - 1, (int) Math.ceil(percentile * size) - 1)];
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.example.llm;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Deterministic response cache keyed on a SHA-256 hash of everything that shapes a response: the
+ * resolved model, prompt, schema, tools and earlier messages. Responses live in an H2 table, so
+ * they survive restarts and are shared between processes, with an in-memory LRU tier in front so
+ * repeated lookups within a run skip the database as well.
+ *
+ * <p>The table is bounded by the total size of the stored responses; beyond {@code maxBytes} the
+ * least recently read or written rows are deleted. Hits served from memory do not refresh a row's
+ * position on disk, so disk eviction order is an approximation of LRU.
+ */
+public class ResponseCache implements AutoCloseable {
+    static final int DEFAULT_MEMORY_ENTRIES = 1024;
+    static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+    private static final String CREATE_TABLE_SQL = """
+        CREATE TABLE IF NOT EXISTS response_cache (
+            cache_key CHAR(64) PRIMARY KEY,
+            response TEXT NOT NULL,
+            prompt_tokens INTEGER,
+            response_tokens INTEGER,
+            total_tokens INTEGER,
+            cached_tokens INTEGER,
+            size_bytes INTEGER NOT NULL,
+            last_used_at BIGINT NOT NULL
+        )
+    """;
+    private static final String CREATE_INDEX_SQL =
+            "CREATE INDEX IF NOT EXISTS idx_response_cache_last_used ON response_cache(last_used_at)";
+    private static final String SELECT_SQL = """
+        SELECT response, prompt_tokens, response_tokens, total_tokens, cached_tokens
+        FROM response_cache WHERE cache_key = ?
+    """;
+    private static final String TOUCH_SQL = "UPDATE response_cache SET last_used_at = ? WHERE cache_key = ?";
+    private static final String MERGE_SQL = """
+        MERGE INTO response_cache (cache_key, response, prompt_tokens, response_tokens, total_tokens,
+                                   cached_tokens, size_bytes, last_used_at)
+        KEY (cache_key) VALUES (?, ?, ?, ?, ?, ?, ?, ?)
+    """;
+    private static final String OLDEST_SQL =
+            "SELECT cache_key, size_bytes FROM response_cache ORDER BY last_used_at LIMIT ?";
+    private static final String DELETE_SQL = "DELETE FROM response_cache WHERE cache_key = ?";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final H2ConnectionPool h2Pool;
+    private final int memoryEntries;
+    private final long maxBytes;
+    private final Map<String, LlmResponse> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long storedBytes;
+    private long lastStamp;
+
+    private long memoryHits;
+    private long diskHits;
+    private long misses;
+    private long evictions;
+
+    public ResponseCache(String dbPath, int memoryEntries, long maxBytes) {
+        this.memoryEntries = memoryEntries;
+        this.maxBytes = maxBytes;
+        try {
+            Class.forName("org.h2.Driver");
+            String path = dbPath.endsWith(".db") ? dbPath : dbPath + ".db";
+            Properties dbProps = new Properties();
+            dbProps.setProperty("user", "sa");
+            dbProps.setProperty("password", "");
+            this.h2Pool = new H2ConnectionPool("jdbc:h2:file:" + path + ";AUTO_SERVER=TRUE", dbProps, 2, 30_000);
+            try (H2ConnectionPool.PooledConnection connection = h2Pool.acquire();
+                 Statement statement = connection.connection().createStatement()) {
+                statement.execute(CREATE_TABLE_SQL);
+                statement.execute(CREATE_INDEX_SQL);
+                try (ResultSet rs = statement.executeQuery("SELECT COALESCE(SUM(size_bytes), 0) FROM response_cache")) {
+                    rs.next();
+                    storedBytes = rs.getLong(1);
+                }
+            }
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException("H2 JDBC driver not found. Please ensure H2 dependency is included.", e);
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to initialize response cache", e);
+        }
+    }
+
+    /**
+     * Opens the cache configured by {@code cache.exact.*}, or returns null unless
+     * {@code cache.exact.enabled} is true. Entries never expire, so the cache is opt-in.
+     */
+    public static ResponseCache fromConfig(ModelConfig modelConfig) {
+        if (!Boolean.parseBoolean(modelConfig.get("cache.exact.enabled").orElse("false").trim())) {
+            return null;
+        }
+        String path = modelConfig.get("cache.exact.path")
+                .orElse(System.getProperty("user.home") + "/.llm/cache/responses");
+        int memoryEntries = modelConfig.get("cache.exact.memory.entries")
+                .map(value -> Integer.parseInt(value.trim())).orElse(DEFAULT_MEMORY_ENTRIES);
+        long maxBytes = modelConfig.get("cache.exact.max.mb")
+                .map(value -> Long.parseLong(value.trim()) * 1024 * 1024).orElse(DEFAULT_MAX_BYTES);
+        return new ResponseCache(path, memoryEntries, maxBytes);
+    }
+
+    /**
+     * The cache key for a request to a resolved model. Tools are identified by class, since
+     * their methods are what the model sees.
+     */
+    public String keyOf(String modelName, LlmRequest llmRequest) {
+        ArrayNode canonical = objectMapper.createArrayNode()
+                .add(modelName)
+                .add(llmRequest.prompt())
+                .add(llmRequest.schema());
+        ArrayNode tools = canonical.addArray();
+        if (llmRequest.tools() != null) {
+            llmRequest.tools().forEach(tool -> tools.add(tool.getClass().getName()));
+        }
+        ArrayNode messages = canonical.addArray();
+        for (LlmMessage message : llmRequest.messages()) {
+            messages.addArray().add(message.role().name()).add(message.content());
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256")
+                    .digest(objectMapper.writeValueAsString(canonical).getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new RuntimeException("Failed to compute cache key", e);
+        }
+    }
+
+    public Optional<LlmResponse> get(String key) {
+        synchronized (this) {
+            LlmResponse cached = memory.get(key);
+            if (cached != null) {
+                memoryHits++;
+                return Optional.of(cached);
+            }
+        }
+        LlmResponse stored;
+        try (H2ConnectionPool.PooledConnection connection = h2Pool.acquire()) {
+            PreparedStatement select = connection.prepare(SELECT_SQL);
+            select.setString(1, key);
+            try (ResultSet rs = select.executeQuery()) {
+                stored = rs.next()
+                        ? new LlmResponse(rs.getString(1), getInteger(rs, 2), getInteger(rs, 3), getInteger(rs, 4),
+                                getInteger(rs, 5))
+                        : null;
+            }
+            if (stored != null) {
+                PreparedStatement touch = connection.prepare(TOUCH_SQL);
+                touch.setLong(1, nextStamp());
+                touch.setString(2, key);
+                touch.executeUpdate();
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to read response cache", e);
+        }
+        synchronized (this) {
+            if (stored == null) {
+                misses++;
+                return Optional.empty();
+            }
+            diskHits++;
+            remember(key, stored);
+            return Optional.of(stored);
+        }
+    }
+
+    public void put(String key, LlmResponse response) {
+        int sizeBytes = response.text().getBytes(StandardCharsets.UTF_8).length;
+        synchronized (this) {
+            remember(key, response);
+        }
+        try (H2ConnectionPool.PooledConnection connection = h2Pool.acquire()) {
+            PreparedStatement merge = connection.prepare(MERGE_SQL);
+            merge.setString(1, key);
+            merge.setString(2, response.text());
+            setInteger(merge, 3, response.promptTokens());
+            setInteger(merge, 4, response.responseTokens());
+            setInteger(merge, 5, response.totalTokens());
+            setInteger(merge, 6, response.cachedTokens());
+            merge.setInt(7, sizeBytes);
+            merge.setLong(8, nextStamp());
+            merge.executeUpdate();
+            boolean overLimit;
+            synchronized (this) {
+                // A replaced row is counted twice until evictOverflow recounts the table
+                storedBytes += sizeBytes;
+                overLimit = storedBytes > maxBytes;
+            }
+            if (overLimit) {
+                evictOverflow(connection);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to write response cache", e);
+        }
+    }
+
+    /**
+     * Deletes least recently used rows until the table is back under its size limit.
+     */
+    private void evictOverflow(H2ConnectionPool.PooledConnection connection) throws SQLException {
+        try (Statement statement = connection.connection().createStatement();
+             ResultSet rs = statement.executeQuery("SELECT COALESCE(SUM(size_bytes), 0) FROM response_cache")) {
+            rs.next();
+            synchronized (this) {
+                storedBytes = rs.getLong(1);
+            }
+        }
+        while (true) {
+            long excess;
+            synchronized (this) {
+                excess = storedBytes - maxBytes;
+            }
+            if (excess <= 0) {
+                return;
+            }
+            PreparedStatement oldest = connection.prepare(OLDEST_SQL);
+            oldest.setInt(1, 256);
+            List<String> keys = new ArrayList<>();
+            long freed = 0;
+            try (ResultSet rs = oldest.executeQuery()) {
+                while (freed < excess && rs.next()) {
+                    keys.add(rs.getString(1));
+                    freed += rs.getInt(2);
+                }
+            }
+            if (keys.isEmpty()) {
+                return;
+            }
+            PreparedStatement delete = connection.prepareBatch(DELETE_SQL);
+            for (String key : keys) {
+                delete.setString(1, key);
+                delete.addBatch();
+            }
+            connection.executeBatches();
+            synchronized (this) {
+                storedBytes -= freed;
+                evictions += keys.size();
+                keys.forEach(memory::remove);
+            }
+        }
+    }
+
+    /**
+     * A wall-clock millisecond stamp that never repeats within this process, so rows written in
+     * the same millisecond still have a definite LRU order.
+     */
+    private synchronized long nextStamp() {
+        lastStamp = Math.max(System.currentTimeMillis(), lastStamp + 1);
+        return lastStamp;
+    }
+
+    private void remember(String key, LlmResponse response) {
+        memory.put(key, response);
+        if (memory.size() > memoryEntries) {
+            var eldest = memory.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+    }
+
+    public synchronized long getMemoryHitCount() {
+        return memoryHits;
+    }
+
+    public synchronized long getDiskHitCount() {
+        return diskHits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized long getStoredBytes() {
+        return storedBytes;
+    }
+
+    @Override
+    public void close() {
+        try {
+            h2Pool.close();
+        } catch (SQLException e) {
+            throw new RuntimeException("Failed to close response cache", e);
+        }
+    }
+
+    private static Integer getInteger(ResultSet rs, int column) throws SQLException {
+        int value = rs.getInt(column);
+        return rs.wasNull() ? null : value;
+    }
+
+    private static void setInteger(PreparedStatement statement, int index, Integer value) throws SQLException {
+        if (value != null) {
+            statement.setInt(index, value);
+        } else {
+            statement.setNull(index, Types.INTEGER);
+        }
+    }
+}
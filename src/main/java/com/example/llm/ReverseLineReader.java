@@ -0,0 +1,100 @@
+package com.example.llm;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads lines from the end of a file backwards in fixed-size chunks, so fetching the last few
+ * lines of a large JSONL log costs work proportional to the lines returned rather than to the
+ * size of the file. Line numbering matches {@link java.nio.file.Files#readAllLines(Path)}.
+ */
+public final class ReverseLineReader {
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private ReverseLineReader() {
+    }
+
+    /**
+     * Returns up to {@code count} lines that precede the last {@code skip} lines of the file,
+     * in file order.
+     */
+    public static List<String> readLastLines(Path path, int skip, int count) throws IOException {
+        List<String> lines = new ArrayList<>(Math.max(0, count));
+        if (count <= 0) {
+            return lines;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long end = channel.size();
+            if (end == 0) {
+                return lines;
+            }
+            if (byteAt(channel, end - 1) == '\n') {
+                end--;
+            }
+
+            ByteBuffer chunk = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, Math.max(1, end)));
+            ByteArrayOutputStream partial = new ByteArrayOutputStream();
+            List<byte[]> partialPieces = new ArrayList<>();
+            int seen = 0;
+            long position = end;
+            while (position > 0 && lines.size() < count) {
+                int length = (int) Math.min(chunk.capacity(), position);
+                position -= length;
+                chunk.clear().limit(length);
+                while (chunk.hasRemaining()) {
+                    if (channel.read(chunk, position + chunk.position()) < 0) {
+                        throw new IOException("Unexpected end of file while reading " + path);
+                    }
+                }
+                byte[] bytes = chunk.array();
+                int lineEnd = length;
+                for (int i = length - 1; i >= 0 && lines.size() < count; i--) {
+                    if (bytes[i] == '\n') {
+                        if (seen++ >= skip) {
+                            lines.add(decode(bytes, i + 1, lineEnd, partialPieces, partial));
+                        }
+                        partialPieces.clear();
+                        lineEnd = i;
+                    }
+                }
+                if (lineEnd > 0 && seen >= skip) {
+                    partialPieces.add(Arrays.copyOfRange(bytes, 0, lineEnd));
+                }
+            }
+            if (position == 0 && lines.size() < count && seen >= skip) {
+                lines.add(decode(new byte[0], 0, 0, partialPieces, partial));
+            }
+        }
+        Collections.reverse(lines);
+        return lines;
+    }
+
+    private static String decode(byte[] bytes, int from, int to, List<byte[]> partialPieces, ByteArrayOutputStream partial) {
+        partial.reset();
+        partial.write(bytes, from, to - from);
+        for (int i = partialPieces.size() - 1; i >= 0; i--) {
+            partial.write(partialPieces.get(i), 0, partialPieces.get(i).length);
+        }
+        byte[] line = partial.toByteArray();
+        int length = line.length;
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private static byte byteAt(FileChannel channel, long position) throws IOException {
+        ByteBuffer single = ByteBuffer.allocate(1);
+        channel.read(single, position);
+        return single.get(0);
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.llm;
+
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.CompleteToolCall;
+import dev.langchain4j.model.chat.response.PartialThinking;
+import dev.langchain4j.model.chat.response.PartialToolCall;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Spreads requests over several interchangeable backends, for example an alias
+ * {@code fast -> groq/llama3,openai/gpt-4o-mini}. Each backend keeps an exponentially weighted
+ * moving average of its latency and error rate, and each request goes to the backend with the
+ * lowest latency scaled by its error rate; backends not yet measured are tried first, in list
+ * order. A request that fails with a retryable error (see {@link ProviderErrors#isRetryable})
+ * fails over to the next best backend; any other error, such as a rejected request, is the
+ * caller's problem and is thrown straight away without counting against the backend.
+ *
+ * <p>A backend that fails {@code failureThreshold} times in a row has its circuit opened and gets
+ * no traffic for {@code openMillis}, after which a single probe request decides whether it closes
+ * again. When every circuit is open, the one due to close first is tried anyway.
+ */
+public class RoutingChatModel implements LlmChatModel {
+    public enum CircuitState { CLOSED, OPEN, HALF_OPEN }
+
+    public record BackendStats(String name, double latencyMillis, double errorRate, CircuitState state, long requests) {
+    }
+
+    static final double EWMA_ALPHA = 0.2;
+    static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    static final long DEFAULT_OPEN_MILLIS = 30_000;
+
+    private final List<Backend> backends = new ArrayList<>();
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    public RoutingChatModel(Map<String, LlmChatModel> backends, int failureThreshold, long openMillis) {
+        this(backends, failureThreshold, openMillis, System::nanoTime);
+    }
+
+    RoutingChatModel(Map<String, LlmChatModel> backends, int failureThreshold, long openMillis, LongSupplier nanoClock) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("At least one backend is required");
+        }
+        backends.forEach((name, model) -> this.backends.add(new Backend(name, model)));
+        this.failureThreshold = failureThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMillis);
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Builds a router over {@code targets} (each {@code provider/model}), resolving each one with
+     * {@code resolver}, with circuit settings {@code routing.failure.threshold} and
+     * {@code routing.open.ms} from {@code modelConfig}.
+     */
+    public static RoutingChatModel of(List<String> targets, ModelConfig modelConfig,
+                                      Function<String, LlmChatModel> resolver) {
+        Map<String, LlmChatModel> backends = new LinkedHashMap<>();
+        for (String target : targets) {
+            backends.put(target, resolver.apply(target));
+        }
+        int failureThreshold = modelConfig.get("routing.failure.threshold")
+                .map(value -> Integer.parseInt(value.trim())).orElse(DEFAULT_FAILURE_THRESHOLD);
+        long openMillis = modelConfig.get("routing.open.ms")
+                .map(value -> Long.parseLong(value.trim())).orElse(DEFAULT_OPEN_MILLIS);
+        return new RoutingChatModel(backends, failureThreshold, openMillis);
+    }
+
+    @Override
+    public LlmResponse chat(LlmRequest llmRequest) {
+        List<Backend> tried = new ArrayList<>();
+        RuntimeException lastFailure = null;
+        Backend backend;
+        while ((backend = select(tried)) != null) {
+            tried.add(backend);
+            long start = nanoClock.getAsLong();
+            try {
+                LlmResponse response = backend.model.chat(llmRequest);
+                backend.onSuccess(nanoClock.getAsLong() - start);
+                return response;
+            } catch (RuntimeException e) {
+                if (!ProviderErrors.isRetryable(e)) {
+                    backend.onRejected();
+                    if (lastFailure != null) {
+                        e.addSuppressed(lastFailure);
+                    }
+                    throw e;
+                }
+                backend.onFailure(nanoClock.getAsLong() - start, nanoClock.getAsLong());
+                if (lastFailure != null) {
+                    e.addSuppressed(lastFailure);
+                }
+                lastFailure = e;
+            }
+        }
+        throw lastFailure;
+    }
+
+    /**
+     * Streams from the best backend. There is no failover once the request is under way, since
+     * partial output may already have reached the handler; the outcome still updates the
+     * backend's health.
+     */
+    @Override
+    public void streamChat(LlmRequest llmRequest, StreamingChatResponseHandler handler) {
+        Backend backend = select(List.of());
+        long start = nanoClock.getAsLong();
+        try {
+            backend.model.streamChat(llmRequest, new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                    handler.onPartialResponse(partialResponse);
+                }
+
+                @Override
+                public void onPartialThinking(PartialThinking partialThinking) {
+                    handler.onPartialThinking(partialThinking);
+                }
+
+                @Override
+                public void onPartialToolCall(PartialToolCall partialToolCall) {
+                    handler.onPartialToolCall(partialToolCall);
+                }
+
+                @Override
+                public void onCompleteToolCall(CompleteToolCall completeToolCall) {
+                    handler.onCompleteToolCall(completeToolCall);
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    backend.onSuccess(nanoClock.getAsLong() - start);
+                    handler.onCompleteResponse(completeResponse);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    onStreamFailure(backend, start, error);
+                    handler.onError(error);
+                }
+            });
+        } catch (RuntimeException e) {
+            onStreamFailure(backend, start, e);
+            throw e;
+        }
+    }
+
+    private void onStreamFailure(Backend backend, long start, Throwable error) {
+        if (ProviderErrors.isRetryable(error)) {
+            long end = nanoClock.getAsLong();
+            backend.onFailure(end - start, end);
+        } else {
+            backend.onRejected();
+        }
+    }
+
+    /**
+     * Among the backends not yet tried: one whose open circuit is due a probe, else the best
+     * scoring one with a closed circuit, else the one due to close first. Null once all have
+     * been tried.
+     */
+    private Backend select(List<Backend> tried) {
+        long now = nanoClock.getAsLong();
+        Backend probe = null;
+        Backend best = null;
+        Backend soonestToClose = null;
+        for (Backend backend : backends) {
+            if (tried.contains(backend)) {
+                continue;
+            }
+            synchronized (backend) {
+                if (backend.state != CircuitState.CLOSED) {
+                    if (probe == null && backend.state == CircuitState.OPEN && now - backend.openedAt >= openNanos) {
+                        // Half-open straight away, so concurrent requests do not probe it too
+                        backend.state = CircuitState.HALF_OPEN;
+                        probe = backend;
+                    } else if (soonestToClose == null || backend.openedAt < soonestToClose.openedAt) {
+                        soonestToClose = backend;
+                    }
+                    continue;
+                }
+            }
+            if (best == null || backend.score() < best.score()) {
+                best = backend;
+            }
+        }
+        Backend chosen = probe != null ? probe : best != null ? best : soonestToClose;
+        if (chosen != null) {
+            chosen.onDispatch();
+        }
+        return chosen;
+    }
+
+    public List<BackendStats> getStats() {
+        List<BackendStats> stats = new ArrayList<>();
+        for (Backend backend : backends) {
+            synchronized (backend) {
+                stats.add(new BackendStats(backend.name, backend.latencyNanos / 1_000_000.0, backend.errorRate,
+                        backend.state, backend.requests));
+            }
+        }
+        return stats;
+    }
+
+    private final class Backend {
+        private final String name;
+        private final LlmChatModel model;
+        private double latencyNanos;
+        private double errorRate;
+        private int consecutiveFailures;
+        private CircuitState state = CircuitState.CLOSED;
+        private long openedAt;
+        private long requests;
+
+        private Backend(String name, LlmChatModel model) {
+            this.name = name;
+            this.model = model;
+        }
+
+        /**
+         * Lower is better. Unmeasured backends score 0 so each is tried once; errors inflate the
+         * latency so a fast but failing backend loses to a slower healthy one.
+         */
+        synchronized double score() {
+            return latencyNanos * (1 + 10 * errorRate);
+        }
+
+        synchronized void onDispatch() {
+            requests++;
+        }
+
+        synchronized void onSuccess(long elapsedNanos) {
+            recordLatency(elapsedNanos);
+            errorRate = (1 - EWMA_ALPHA) * errorRate;
+            consecutiveFailures = 0;
+            state = CircuitState.CLOSED;
+        }
+
+        /**
+         * A failure's elapsed time counts towards latency too, so a backend that is slow to fail
+         * does not look fast.
+         */
+        synchronized void onFailure(long elapsedNanos, long now) {
+            recordLatency(elapsedNanos);
+            errorRate = EWMA_ALPHA + (1 - EWMA_ALPHA) * errorRate;
+            consecutiveFailures++;
+            if (state == CircuitState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+                state = CircuitState.OPEN;
+                openedAt = now;
+            }
+        }
+
+        /**
+         * The backend answered, only not with a result, so a probe closes the circuit; latency
+         * and error rate are left alone.
+         */
+        synchronized void onRejected() {
+            consecutiveFailures = 0;
+            state = CircuitState.CLOSED;
+        }
+
+        private void recordLatency(long elapsedNanos) {
+            latencyNanos = latencyNanos == 0 ? elapsedNanos : EWMA_ALPHA * elapsedNanos + (1 - EWMA_ALPHA) * latencyNanos;
+        }
+    }
+}
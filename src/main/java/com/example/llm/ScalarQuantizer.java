@@ -0,0 +1,118 @@
+package com.example.llm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Int8 scalar quantization: each dimension is mapped linearly from its trained [min, max] range
+ * onto 256 levels, for codes a quarter the size of float32 vectors. Values outside the range are
+ * clamped.
+ */
+public class ScalarQuantizer implements VectorQuantizer {
+    private final float[] min;
+    private final float[] step;
+
+    ScalarQuantizer(float[] min, float[] step) {
+        this.min = min;
+        this.step = step;
+    }
+
+    /**
+     * Learns each dimension's range from {@code sample}.
+     */
+    public static ScalarQuantizer train(List<float[]> sample) {
+        int dimension = sample.get(0).length;
+        float[] min = new float[dimension];
+        float[] max = new float[dimension];
+        Arrays.fill(min, Float.POSITIVE_INFINITY);
+        Arrays.fill(max, Float.NEGATIVE_INFINITY);
+        for (float[] vector : sample) {
+            for (int i = 0; i < dimension; i++) {
+                min[i] = Math.min(min[i], vector[i]);
+                max[i] = Math.max(max[i], vector[i]);
+            }
+        }
+        float[] step = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            step[i] = max[i] > min[i] ? (max[i] - min[i]) / 255 : 1;
+        }
+        return new ScalarQuantizer(min, step);
+    }
+
+    @Override
+    public Kind kind() {
+        return Kind.INT8;
+    }
+
+    @Override
+    public int dimension() {
+        return min.length;
+    }
+
+    @Override
+    public int codeSize() {
+        return min.length;
+    }
+
+    @Override
+    public void encode(float[] vector, byte[] code) {
+        for (int i = 0; i < min.length; i++) {
+            int level = Math.round((vector[i] - min[i]) / step[i]);
+            code[i] = (byte) Math.max(0, Math.min(255, level));
+        }
+    }
+
+    /**
+     * Since each value decodes to {@code min + step * level}, the dot product splits into a
+     * constant and a weighted sum of the levels. The weights are scaled to integers as large as
+     * an int sum of {@code 255 * dimension} terms allows, which keeps the loop in integer
+     * arithmetic that the JIT vectorizes, at a rounding error well below the quantization error.
+     */
+    @Override
+    public Scorer scorer(float[] query) {
+        double offset = 0;
+        double maxWeight = 0;
+        for (int i = 0; i < query.length; i++) {
+            offset += query[i] * min[i];
+            maxWeight = Math.max(maxWeight, Math.abs(query[i] * step[i]));
+        }
+        double scale = maxWeight == 0 ? 0 : (Integer.MAX_VALUE / (255.0 * query.length)) / maxWeight;
+        int[] weights = new int[query.length];
+        for (int i = 0; i < query.length; i++) {
+            weights[i] = (int) Math.round(query[i] * step[i] * scale);
+        }
+        double constant = offset;
+        double unscale = scale == 0 ? 0 : 1 / scale;
+        return code -> {
+            int sum = 0;
+            for (int i = 0; i < weights.length; i++) {
+                sum += weights[i] * (code[i] & 0xFF);
+            }
+            return constant + sum * unscale;
+        };
+    }
+
+    @Override
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(Kind.INT8.ordinal());
+        out.writeInt(min.length);
+        for (int i = 0; i < min.length; i++) {
+            out.writeFloat(min[i]);
+            out.writeFloat(step[i]);
+        }
+    }
+
+    static ScalarQuantizer read(DataInputStream in) throws IOException {
+        int dimension = in.readInt();
+        float[] min = new float[dimension];
+        float[] step = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            min[i] = in.readFloat();
+            step[i] = in.readFloat();
+        }
+        return new ScalarQuantizer(min, step);
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.llm;
+
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Answers near-duplicate prompts from memory. Each prompt is embedded with an
+ * {@link LlmEmbeddingModel}; when a stored prompt with the same schema and earlier messages has
+ * cosine similarity of at least {@code threshold}, its response is returned without calling the
+ * provider. Entries expire after {@code ttl} and the least recently used ones are evicted beyond
+ * {@code maxEntries}. Hits report zero tokens, like {@link CachingChatModel}'s.
+ *
+ * <p>Requests with tools are never cached, since tool calls have side effects. Streaming calls
+ * pass straight through.
+ *
+ * <p>The index is a linear scan over normalized vectors, which for the few thousand entries a
+ * response cache holds costs microseconds next to the embedding call itself.
+ */
+public class SemanticCachingChatModel implements LlmChatModel {
+    static final double DEFAULT_THRESHOLD = 0.95;
+    static final long DEFAULT_TTL_SECONDS = 3600;
+    static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final LlmChatModel delegate;
+    private final LlmEmbeddingModel embeddingModel;
+    private final double threshold;
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final LongSupplier nanoClock;
+    private final Map<Long, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long nextId;
+
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public SemanticCachingChatModel(LlmChatModel delegate, LlmEmbeddingModel embeddingModel, double threshold,
+                                    Duration ttl, int maxEntries) {
+        this(delegate, embeddingModel, threshold, ttl, maxEntries, System::nanoTime);
+    }
+
+    SemanticCachingChatModel(LlmChatModel delegate, LlmEmbeddingModel embeddingModel, double threshold,
+                             Duration ttl, int maxEntries, LongSupplier nanoClock) {
+        this.delegate = delegate;
+        this.embeddingModel = embeddingModel;
+        this.threshold = threshold;
+        this.ttlNanos = ttl.toNanos();
+        this.maxEntries = maxEntries;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Wraps {@code delegate} when {@code cache.semantic.embedding.model} is configured, embedding
+     * with the model {@code embeddingModels} resolves for it; otherwise returns it unchanged. The
+     * threshold, TTL and size come from {@code cache.semantic.threshold},
+     * {@code cache.semantic.ttl.seconds} and {@code cache.semantic.max.entries}.
+     */
+    public static LlmChatModel decorate(ModelConfig modelConfig, LlmChatModel delegate,
+                                        Function<String, LlmEmbeddingModel> embeddingModels) {
+        Optional<String> embeddingModel = modelConfig.get("cache.semantic.embedding.model").map(String::trim);
+        if (embeddingModel.isEmpty()) {
+            return delegate;
+        }
+        double threshold = modelConfig.get("cache.semantic.threshold")
+                .map(value -> Double.parseDouble(value.trim())).orElse(DEFAULT_THRESHOLD);
+        long ttlSeconds = modelConfig.get("cache.semantic.ttl.seconds")
+                .map(value -> Long.parseLong(value.trim())).orElse(DEFAULT_TTL_SECONDS);
+        int maxEntries = modelConfig.get("cache.semantic.max.entries")
+                .map(value -> Integer.parseInt(value.trim())).orElse(DEFAULT_MAX_ENTRIES);
+        return new SemanticCachingChatModel(delegate, embeddingModels.apply(embeddingModel.get()), threshold,
+                Duration.ofSeconds(ttlSeconds), maxEntries);
+    }
+
+    @Override
+    public LlmResponse chat(LlmRequest llmRequest) {
+        if (llmRequest.tools() != null && !llmRequest.tools().isEmpty()) {
+            return delegate.chat(llmRequest);
+        }
+        LlmEmbedding vector;
+        try {
+            vector = embeddingModel.embedVector(llmRequest.prompt()).normalized();
+        } catch (RuntimeException e) {
+            // The cache is only a shortcut: a prompt that cannot be embedded, a blank one included, is a miss
+            synchronized (this) {
+                misses++;
+            }
+            return delegate.chat(llmRequest);
+        }
+        LlmResponse cached = lookup(llmRequest, vector);
+        if (cached != null) {
+            return cached;
+        }
+        LlmResponse response = delegate.chat(llmRequest);
+        store(llmRequest, vector, response);
+        return response;
+    }
+
+    @Override
+    public void streamChat(LlmRequest llmRequest, StreamingChatResponseHandler handler) {
+        delegate.streamChat(llmRequest, handler);
+    }
+
+    private synchronized LlmResponse lookup(LlmRequest llmRequest, LlmEmbedding vector) {
+        long now = nanoClock.getAsLong();
+        Long bestId = null;
+        double bestSimilarity = threshold;
+        Iterator<Map.Entry<Long, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<Long, Entry> candidate = iterator.next();
+            Entry entry = candidate.getValue();
+            if (now - entry.storedAt() >= ttlNanos) {
+                iterator.remove();
+                evictions++;
+                continue;
+            }
+            if (!entry.matchesContext(llmRequest)) {
+                continue;
+            }
+            if (entry.vector().dimension() != vector.dimension()) {
+                continue;
+            }
+            double similarity = vector.dot(entry.vector());
+            if (similarity >= bestSimilarity) {
+                bestSimilarity = similarity;
+                bestId = candidate.getKey();
+            }
+        }
+        if (bestId == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        // Access-ordered map: the lookup marks the entry as recently used
+        return entries.get(bestId).response().servedFromCache();
+    }
+
+    private synchronized void store(LlmRequest llmRequest, LlmEmbedding vector, LlmResponse response) {
+        entries.put(nextId++, new Entry(vector, llmRequest.schema(), llmRequest.messages(), response,
+                nanoClock.getAsLong()));
+        Iterator<Long> eldest = entries.keySet().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private record Entry(LlmEmbedding vector, String schema, List<LlmMessage> messages, LlmResponse response,
+                         long storedAt) {
+        boolean matchesContext(LlmRequest llmRequest) {
+            return Objects.equals(schema, llmRequest.schema()) && messages.equals(llmRequest.messages());
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.llm;
+
+import java.util.function.LongSupplier;
+
+/**
+ * A token bucket refilled continuously at {@code perMinute} tokens per minute, holding at most a
+ * minute's worth. Callers reserve tokens up front and are told how long to wait; the balance may
+ * go negative, so a large reservation is served once enough has refilled rather than never.
+ */
+public class TokenBucket {
+    private final double capacity;
+    private final double refillPerNano;
+    private final LongSupplier nanoClock;
+    private double available;
+    private long lastRefillNanos;
+
+    public TokenBucket(double perMinute) {
+        this(perMinute, System::nanoTime);
+    }
+
+    TokenBucket(double perMinute, LongSupplier nanoClock) {
+        if (perMinute <= 0) {
+            throw new IllegalArgumentException("Rate must be positive: " + perMinute);
+        }
+        this.capacity = perMinute;
+        this.refillPerNano = perMinute / 60_000_000_000.0;
+        this.nanoClock = nanoClock;
+        this.available = perMinute;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Takes {@code tokens} from the bucket and returns how many nanoseconds the caller must wait
+     * before using them (0 if they were available).
+     */
+    public synchronized long reserve(double tokens) {
+        refill();
+        available -= tokens;
+        return available >= 0 ? 0 : (long) Math.ceil(-available / refillPerNano);
+    }
+
+    /**
+     * Returns tokens to the bucket (or takes more, if negative) once the real cost of a request
+     * is known.
+     */
+    public synchronized void adjust(double tokens) {
+        refill();
+        available = Math.min(capacity, available + tokens);
+    }
+
+    public synchronized double available() {
+        refill();
+        return available;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        available = Math.min(capacity, available + (now - lastRefillNanos) * refillPerNano);
+        lastRefillNanos = now;
+    }
+}
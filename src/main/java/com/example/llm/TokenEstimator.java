@@ -0,0 +1,23 @@
+package com.example.llm;
+
+/**
+ * Cheap token count estimate for a piece of text. Implementations should be fast enough to run
+ * over every message of a conversation on each turn; plug in a real tokenizer where exact counts
+ * matter.
+ */
+@FunctionalInterface
+public interface TokenEstimator {
+    int estimate(String text);
+
+    /**
+     * Estimates one token per {@code charsPerToken} characters, rounded up. About four characters
+     * per token holds for English text with the common BPE tokenizers.
+     */
+    static TokenEstimator charsPerToken(double charsPerToken) {
+        return text -> text == null || text.isEmpty() ? 0 : (int) Math.ceil(text.length() / charsPerToken);
+    }
+
+    static TokenEstimator defaultEstimator() {
+        return charsPerToken(4.0);
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.llm;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Lossy compression of embedding vectors into fixed-size byte codes that can be scored against a
+ * full-precision query without decoding.
+ */
+public interface VectorQuantizer {
+    enum Kind { INT8, PQ }
+
+    /**
+     * Approximate dot products of one query against codes.
+     */
+    interface Scorer {
+        double dot(byte[] code);
+    }
+
+    Kind kind();
+
+    int dimension();
+
+    /**
+     * Bytes per encoded vector.
+     */
+    int codeSize();
+
+    void encode(float[] vector, byte[] code);
+
+    /**
+     * Prepares {@code query} for scoring many codes, precomputing whatever does not depend on them.
+     */
+    Scorer scorer(float[] query);
+
+    void write(DataOutputStream out) throws IOException;
+
+    static VectorQuantizer read(DataInputStream in) throws IOException {
+        Kind kind = Kind.values()[in.readInt()];
+        return switch (kind) {
+            case INT8 -> ScalarQuantizer.read(in);
+            case PQ -> ProductQuantizer.read(in);
+        };
+    }
+}
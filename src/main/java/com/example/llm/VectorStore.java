@@ -0,0 +1,598 @@
+package com.example.llm;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+/**
+ * An embedded, append-only store of embedding vectors with brute-force nearest-neighbour search.
+ * A collection is a directory holding three files that grow in step:
+ * <ul>
+ *   <li>{@code vectors.f32}: a 16-byte header (magic, version, dimension) followed by each
+ *       vector as little-endian float32,</li>
+ *   <li>{@code norms.f32}: each vector's Euclidean norm, so cosine search needs no extra pass,</li>
+ *   <li>{@code ids.jsonl}: one {@code {"id", "metadata"}} line per vector.</li>
+ * </ul>
+ * Vectors and norms are memory-mapped for search, so a collection larger than the heap is served
+ * from the page cache. Only the sidecar's line offsets are kept in memory; ids and metadata are
+ * read for the matches alone.
+ *
+ * <p>A collection has at most one writer, which holds a lock on {@code vectors.f32} while it is
+ * open; on open, the writer truncates a tail left by an interrupted append so the three files
+ * agree again. Any number of {@link #openReadOnly read-only} instances may search alongside it:
+ * they leave the files alone and see the entries complete when they were opened.
+ *
+ * <p>Search scans all vectors in parallel chunks across the common fork-join pool, each chunk
+ * keeping its own top-k. A collection may also carry an {@link HnswIndex}, which is kept up to
+ * date on append and answers searches by its metric approximately, and {@link QuantizedVectors}
+ * for compressed scans re-ranked at full precision. Appends and searches may run
+ * concurrently; a search sees the vectors added before it started.
+ */
+public class VectorStore implements AutoCloseable {
+    public enum Metric { COSINE, DOT }
+
+    public record Match(long index, String id, double score, Map<String, String> metadata) {
+    }
+
+    private static final int MAGIC = 0x4C4C4D56; // "LLMV"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final long SEGMENT_BYTES = 1L << 30;
+    private static final int SEARCH_CHUNK = 4096;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final Path directory;
+    private final int dimension;
+    private final int segmentVectors;
+    private final boolean readOnly;
+    private final FileChannel vectors;
+    private final FileChannel norms;
+    private final RandomAccessFile ids;
+    private final FileLock writeLock;
+    private Mapping mapping = new Mapping(List.of(), 1, FloatBuffer.allocate(0), 0);
+    private volatile HnswIndex index;
+    private volatile QuantizedVectors quantized;
+    private long[] idOffsets;
+    private int count;
+
+    private VectorStore(Path directory, int dimension, boolean readOnly) throws IOException {
+        this.directory = directory;
+        this.dimension = dimension;
+        this.segmentVectors = (int) Math.max(1, SEGMENT_BYTES / (4L * dimension));
+        this.readOnly = readOnly;
+        if (readOnly) {
+            this.vectors = FileChannel.open(directory.resolve("vectors.f32"), StandardOpenOption.READ);
+            this.norms = FileChannel.open(directory.resolve("norms.f32"), StandardOpenOption.READ);
+            this.ids = new RandomAccessFile(directory.resolve("ids.jsonl").toFile(), "r");
+            this.writeLock = null;
+            return;
+        }
+        this.vectors = FileChannel.open(directory.resolve("vectors.f32"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.norms = FileChannel.open(directory.resolve("norms.f32"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.ids = new RandomAccessFile(directory.resolve("ids.jsonl").toFile(), "rw");
+        FileLock lock;
+        try {
+            lock = vectors.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            vectors.close();
+            norms.close();
+            ids.close();
+            throw new IOException("Collection " + directory.getFileName() + " is already open for writing");
+        }
+        this.writeLock = lock;
+    }
+
+    /**
+     * Opens the collection in {@code directory}, creating it for vectors of {@code dimension}
+     * if it does not exist yet.
+     */
+    public static VectorStore open(Path directory, int dimension) throws IOException {
+        Files.createDirectories(directory);
+        Path vectorFile = directory.resolve("vectors.f32");
+        if (!Files.exists(vectorFile) || Files.size(vectorFile) < HEADER_BYTES) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC).putInt(VERSION).putInt(dimension).putInt(0).flip();
+            try (FileChannel channel = FileChannel.open(vectorFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(header);
+            }
+            Files.deleteIfExists(directory.resolve("norms.f32"));
+            Files.deleteIfExists(directory.resolve("ids.jsonl"));
+            Files.deleteIfExists(directory.resolve("hnsw.meta"));
+            Files.deleteIfExists(directory.resolve("quantizer.bin"));
+        }
+        VectorStore store = open(directory);
+        if (store.dimension != dimension) {
+            store.close();
+            throw new IllegalArgumentException("Collection " + directory.getFileName() + " holds " + store.dimension
+                    + "-dimensional vectors, not " + dimension);
+        }
+        return store;
+    }
+
+    /**
+     * Opens an existing collection for writing.
+     */
+    public static VectorStore open(Path directory) throws IOException {
+        return open(directory, false);
+    }
+
+    /**
+     * Opens an existing collection for searching only. It takes no lock and changes no files, so
+     * it can be used while a writer is appending; it sees the entries complete at this point.
+     */
+    public static VectorStore openReadOnly(Path directory) throws IOException {
+        return open(directory, true);
+    }
+
+    private static VectorStore open(Path directory, boolean readOnly) throws IOException {
+        Path vectorFile = directory.resolve("vectors.f32");
+        if (!Files.exists(vectorFile)) {
+            throw new IOException("No vector collection at " + directory);
+        }
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(vectorFile, StandardOpenOption.READ)) {
+            channel.read(header, 0);
+        }
+        header.flip();
+        if (header.remaining() < HEADER_BYTES || header.getInt() != MAGIC || header.getInt() != VERSION) {
+            throw new IOException("Not a vector collection: " + vectorFile);
+        }
+        VectorStore store = new VectorStore(directory, header.getInt(), readOnly);
+        try {
+            store.recover();
+            if (HnswIndex.exists(directory)) {
+                store.index = HnswIndex.open(directory, store.dimension, store.mapThrough(), readOnly);
+            }
+            if (QuantizedVectors.exists(directory)) {
+                store.quantized = QuantizedVectors.open(directory, store.mapThrough(), readOnly);
+            }
+        } catch (IOException | RuntimeException e) {
+            try {
+                store.close();
+            } catch (IOException closeFailure) {
+                e.addSuppressed(closeFailure);
+            }
+            throw e;
+        }
+        return store;
+    }
+
+    /**
+     * Counts the complete entries in all three files and, for a writer, truncates any longer
+     * tail. An id line is complete once its newline is written.
+     */
+    private void recover() throws IOException {
+        long limit = Math.min((vectors.size() - HEADER_BYTES) / (4L * dimension), norms.size() / 4);
+        idOffsets = new long[16];
+        count = 0;
+        long lineStart = 0;
+        long position = 0;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(directory.resolve("ids.jsonl")), 1 << 16)) {
+            byte[] buffer = new byte[1 << 16];
+            int read;
+            while (count < limit && (read = in.read(buffer)) > 0) {
+                for (int i = 0; i < read && count < limit; i++, position++) {
+                    if (buffer[i] == '\n') {
+                        if (count == idOffsets.length) {
+                            idOffsets = Arrays.copyOf(idOffsets, count * 2);
+                        }
+                        idOffsets[count++] = lineStart;
+                        lineStart = position + 1;
+                    }
+                }
+            }
+        }
+        if (!readOnly) {
+            vectors.truncate(HEADER_BYTES + (long) count * dimension * 4);
+            norms.truncate((long) count * 4);
+            ids.setLength(lineStart);
+        }
+    }
+
+    public int dimension() {
+        return dimension;
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+
+    public Path directory() {
+        return directory;
+    }
+
+    public void add(String id, LlmEmbedding embedding, Map<String, String> metadata) throws IOException {
+        addAll(List.of(id), List.of(embedding), metadata != null ? List.of(metadata) : null);
+    }
+
+    /**
+     * Appends vectors with their ids and optional metadata (null, or one map per vector).
+     */
+    public synchronized void addAll(List<String> entryIds, List<LlmEmbedding> embeddings,
+                                    List<Map<String, String>> metadata) throws IOException {
+        checkWritable();
+        ByteBuffer vectorBytes = ByteBuffer.allocate(embeddings.size() * dimension * 4).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer normBytes = ByteBuffer.allocate(embeddings.size() * 4).order(ByteOrder.LITTLE_ENDIAN);
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < embeddings.size(); i++) {
+            LlmEmbedding embedding = embeddings.get(i);
+            if (embedding.dimension() != dimension) {
+                throw new IllegalArgumentException("Expected a " + dimension + "-dimensional vector, got "
+                        + embedding.dimension());
+            }
+            for (float value : embedding.vector()) {
+                vectorBytes.putFloat(value);
+            }
+            normBytes.putFloat((float) Math.sqrt(embedding.dot(embedding)));
+            ObjectNode line = objectMapper.createObjectNode().put("id", entryIds.get(i));
+            if (metadata != null && metadata.get(i) != null) {
+                line.set("metadata", objectMapper.valueToTree(metadata.get(i)));
+            }
+            lines.append(objectMapper.writeValueAsString(line)).append('\n');
+        }
+
+        // Sidecar last: recovery keeps only entries whose id line is complete
+        writeFully(vectors, vectorBytes.flip(), vectors.size());
+        writeFully(norms, normBytes.flip(), norms.size());
+        long offset = ids.length();
+        ids.seek(offset);
+        byte[] lineBytes = lines.toString().getBytes(StandardCharsets.UTF_8);
+        ids.write(lineBytes);
+
+        if (count + embeddings.size() > idOffsets.length) {
+            idOffsets = Arrays.copyOf(idOffsets, Math.max(idOffsets.length * 2, count + embeddings.size()));
+        }
+        for (int i = 0, start = 0; i < lineBytes.length; i++) {
+            if (lineBytes[i] == '\n') {
+                idOffsets[count++] = offset + start;
+                start = i + 1;
+            }
+        }
+        if (index != null) {
+            index.addThrough(mapThrough());
+        }
+        if (quantized != null) {
+            quantized.addThrough(mapThrough());
+        }
+    }
+
+    /**
+     * Builds an HNSW index for {@code metric} over the stored vectors, replacing any existing
+     * one. Vectors added later are inserted as they arrive, and searches by that metric use it.
+     */
+    public synchronized HnswIndex createIndex(Metric metric, int m, int efConstruction) throws IOException {
+        checkWritable();
+        if (index != null) {
+            index.close();
+        }
+        index = HnswIndex.create(directory, dimension, metric, m, efConstruction, mapThrough());
+        return index;
+    }
+
+    /**
+     * Trains a quantizer on the stored vectors and encodes them, replacing any existing
+     * quantization; later vectors are encoded as they arrive. Searches not answered by the HNSW
+     * index then scan the codes and re-rank the best candidates at full precision.
+     *
+     * @param subspaces product-quantization subspaces, or 0 for the default; ignored for int8
+     */
+    public synchronized QuantizedVectors createQuantization(VectorQuantizer.Kind kind, int subspaces)
+            throws IOException {
+        checkWritable();
+        if (quantized != null) {
+            quantized.close();
+        }
+        quantized = QuantizedVectors.create(directory, kind, subspaces, mapThrough(), dimension);
+        return quantized;
+    }
+
+    /**
+     * The collection's quantized codes, or null if it is not quantized.
+     */
+    public QuantizedVectors quantized() {
+        return quantized;
+    }
+
+    /**
+     * The collection's HNSW index, or null if it has none.
+     */
+    public HnswIndex index() {
+        return index;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new IllegalStateException("Collection " + directory.getFileName() + " is open read-only");
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * The stored vector at {@code index}, copied out of the mapped file.
+     */
+    public LlmEmbedding get(long index) throws IOException {
+        Mapping current = mapThrough();
+        if (index < 0 || index >= current.count()) {
+            throw new IndexOutOfBoundsException("No vector at " + index);
+        }
+        float[] vector = new float[dimension];
+        current.read(index, vector);
+        return new LlmEmbedding(vector);
+    }
+
+    /**
+     * The index of the first vector stored under {@code id}, or -1.
+     */
+    public long indexOf(String id) throws IOException {
+        int searchCount = size();
+        try (BufferedReader reader = Files.newBufferedReader(directory.resolve("ids.jsonl"), StandardCharsets.UTF_8)) {
+            String line;
+            for (int i = 0; i < searchCount && (line = reader.readLine()) != null; i++) {
+                if (id.equals(objectMapper.readTree(line).get("id").asText())) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * The {@code k} stored vectors most similar to {@code query}, best first. Uses the HNSW index
+     * when it was built for {@code metric}, else the quantized codes, so results are approximate;
+     * without either it scans exactly.
+     */
+    public List<Match> search(LlmEmbedding query, int k, Metric metric) throws IOException {
+        HnswIndex currentIndex = index;
+        QuantizedVectors currentQuantized = quantized;
+        if (currentIndex != null && currentIndex.metric() == metric) {
+            checkDimension(query);
+            return matchesOf(currentIndex.search(query, k));
+        }
+        if (currentQuantized != null) {
+            checkDimension(query);
+            return matchesOf(currentQuantized.search(query, k, metric, mapThrough()));
+        }
+        return searchExact(query, k, metric);
+    }
+
+    /**
+     * The {@code k} stored vectors most similar to {@code query} by exhaustive scan, best first.
+     */
+    public List<Match> searchExact(LlmEmbedding query, int k, Metric metric) throws IOException {
+        checkDimension(query);
+        Mapping current = mapThrough();
+        int searchCount = current.count();
+        float[] q = query.vector();
+        double queryNorm = Math.sqrt(query.dot(query));
+        int chunks = (searchCount + SEARCH_CHUNK - 1) / SEARCH_CHUNK;
+        TopK top = IntStream.range(0, chunks).parallel()
+                .mapToObj(chunk -> {
+                    TopK chunkTop = new TopK(k);
+                    float[] vector = new float[dimension];
+                    int end = Math.min(searchCount, (chunk + 1) * SEARCH_CHUNK);
+                    for (int i = chunk * SEARCH_CHUNK; i < end; i++) {
+                        chunkTop.offer(i, current.score(i, q, queryNorm, metric, vector));
+                    }
+                    return chunkTop;
+                })
+                .reduce(TopK::merge)
+                .orElseGet(() -> new TopK(k));
+        return matchesOf(top);
+    }
+
+    private void checkDimension(LlmEmbedding query) {
+        if (query.dimension() != dimension) {
+            throw new IllegalArgumentException("Expected a " + dimension + "-dimensional query, got " + query.dimension());
+        }
+    }
+
+    /**
+     * Resolves ids and metadata for scored indexes, best first.
+     */
+    List<Match> matchesOf(TopK top) throws IOException {
+        List<Match> matches = new ArrayList<>();
+        for (int[] entry : top.sorted()) {
+            Match match = readEntry(entry[0]);
+            matches.add(new Match(entry[0], match.id(), top.scoreOf(entry[1]), match.metadata()));
+        }
+        return matches;
+    }
+
+    private synchronized Match readEntry(long index) throws IOException {
+        ids.seek(idOffsets[(int) index]);
+        String line = new String(ids.readLine().getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+        var node = objectMapper.readTree(line);
+        Map<String, String> metadata = node.has("metadata")
+                ? objectMapper.convertValue(node.get("metadata"), new TypeReference<Map<String, String>>() {})
+                : Map.of();
+        return new Match(index, node.get("id").asText(), 0, metadata);
+    }
+
+    /**
+     * Maps every vector appended so far. Segments are read-only views of at most 1 GiB; only the
+     * last one is remapped as the collection grows, and searches keep the mapping they started with.
+     */
+    synchronized Mapping mapThrough() throws IOException {
+        if (mapping.count() == count) {
+            return mapping;
+        }
+        List<FloatBuffer> segments = new ArrayList<>(mapping.segments().subList(0, mapping.count() / segmentVectors));
+        for (long start = (long) segments.size() * segmentVectors; start < count; start += segmentVectors) {
+            long length = Math.min(segmentVectors, count - start);
+            MappedByteBuffer mapped = vectors.map(FileChannel.MapMode.READ_ONLY,
+                    HEADER_BYTES + start * dimension * 4, length * dimension * 4);
+            segments.add(mapped.order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer());
+        }
+        FloatBuffer mappedNorms = norms.map(FileChannel.MapMode.READ_ONLY, 0, (long) count * 4)
+                .order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+        mapping = new Mapping(segments, segmentVectors, mappedNorms, count);
+        return mapping;
+    }
+
+    /**
+     * The mapped vectors and norms of the first {@code count} entries.
+     */
+    record Mapping(List<FloatBuffer> segments, int segmentVectors, FloatBuffer norms, int count) {
+        void read(long index, float[] into) {
+            segments.get((int) (index / segmentVectors)).get((int) (index % segmentVectors) * into.length, into);
+        }
+
+        /**
+         * The full-precision similarity of a stored vector to {@code query}, read via {@code scratch}.
+         */
+        double score(long index, float[] query, double queryNorm, Metric metric, float[] scratch) {
+            read(index, scratch);
+            double dot = LlmEmbedding.dot(query, scratch);
+            if (metric == Metric.DOT) {
+                return dot;
+            }
+            double norms = queryNorm * this.norms.get((int) index);
+            return norms == 0 ? 0 : dot / norms;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (index != null) {
+                index.close();
+            }
+            if (quantized != null) {
+                quantized.close();
+            }
+            if (!readOnly) {
+                vectors.force(false);
+                norms.force(false);
+                ids.getFD().sync();
+            }
+        } finally {
+            vectors.close();
+            norms.close();
+            ids.close();
+        }
+    }
+
+    /**
+     * A bounded min-heap of (index, score) pairs keeping the best {@code k} offered.
+     */
+    static final class TopK {
+        private final int k;
+        private final int[] indexes;
+        private final double[] scores;
+        private int size;
+
+        TopK(int k) {
+            this.k = k;
+            this.indexes = new int[k];
+            this.scores = new double[k];
+        }
+
+        void offer(int index, double score) {
+            if (size < k) {
+                indexes[size] = index;
+                scores[size] = score;
+                siftUp(size++);
+            } else if (k > 0 && score > scores[0]) {
+                indexes[0] = index;
+                scores[0] = score;
+                siftDown(0);
+            }
+        }
+
+        TopK merge(TopK other) {
+            for (int i = 0; i < other.size; i++) {
+                offer(other.indexes[i], other.scores[i]);
+            }
+            return this;
+        }
+
+        /**
+         * Pairs of (index, heap slot), best score first.
+         */
+        List<int[]> sorted() {
+            List<int[]> entries = new ArrayList<>();
+            for (int i = 0; i < size; i++) {
+                entries.add(new int[]{indexes[i], i});
+            }
+            entries.sort(Comparator.comparingDouble((int[] entry) -> -scores[entry[1]]));
+            return entries;
+        }
+
+        double scoreOf(int slot) {
+            return scores[slot];
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (scores[parent] <= scores[i]) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i) {
+            while (true) {
+                int smallest = i;
+                int left = 2 * i + 1;
+                int right = left + 1;
+                if (left < size && scores[left] < scores[smallest]) {
+                    smallest = left;
+                }
+                if (right < size && scores[right] < scores[smallest]) {
+                    smallest = right;
+                }
+                if (smallest == i) {
+                    return;
+                }
+                swap(i, smallest);
+                i = smallest;
+            }
+        }
+
+        private void swap(int a, int b) {
+            int index = indexes[a];
+            indexes[a] = indexes[b];
+            indexes[b] = index;
+            double score = scores[a];
+            scores[a] = scores[b];
+            scores[b] = score;
+        }
+    }
+}
@@ -1,24 +1,70 @@
 package com.example.llm.provider;
 
+import com.example.llm.LlmMessage;
+import com.example.llm.LlmRequest;
 import com.example.llm.ModelConfig;
 import dev.langchain4j.model.anthropic.AnthropicChatModel;
 import dev.langchain4j.model.anthropic.AnthropicStreamingChatModel;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
 
-import java.time.Duration;
-
+/**
+ * Requests that mark a system message as a cache breakpoint are sent through clients built with
+ * {@code cacheSystemMessages}, which put an Anthropic {@code cache_control} breakpoint at the end
+ * of the system prompt. langchain4j cannot place breakpoints on user or assistant turns, so only
+ * the system prefix (fragments and system text) is cached; other requests carry no cache control
+ * and pay no cache-write surcharge.
+ */
 public class AnthropicChatModelWrapper extends BaseChatModelWrapper {
+    private final Lazy<ChatModel> cachingChatModel;
+    private final Lazy<StreamingChatModel> cachingStreamingModel;
+
     public AnthropicChatModelWrapper(ModelConfig modelConfig, String modelName) {
-        super(
-                AnthropicChatModel.builder()
-                        .apiKey(modelConfig.getOrThrow("anthropic.api.key", "Missing ANTHROPIC_API_KEY environment variable"))
-                        .modelName(modelName)
-                        .timeout(Duration.ofSeconds(60))
-                        .build(),
-                AnthropicStreamingChatModel.builder()
-                        .apiKey(modelConfig.getOrThrow("anthropic.api.key", "Missing ANTHROPIC_API_KEY environment variable"))
-                        .modelName(modelName)
-                        .timeout(Duration.ofSeconds(60))
-                        .build()
-        );
+        this(modelConfig, modelConfig.getOrThrow("anthropic.api.key", "Missing ANTHROPIC_API_KEY environment variable"),
+                modelConfig.get("anthropic.base.url").orElse("https://api.anthropic.com/v1/"), modelName);
+    }
+
+    private AnthropicChatModelWrapper(ModelConfig modelConfig, String apiKey, String baseUrl, String modelName) {
+        super(() -> chatModel(modelConfig, apiKey, baseUrl, modelName, false),
+                () -> streamingModel(modelConfig, apiKey, baseUrl, modelName, false));
+        this.cachingChatModel = new Lazy<>(() -> chatModel(modelConfig, apiKey, baseUrl, modelName, true));
+        this.cachingStreamingModel = new Lazy<>(() -> streamingModel(modelConfig, apiKey, baseUrl, modelName, true));
+    }
+
+    @Override
+    protected ChatModel chatModelFor(LlmRequest llmRequest) {
+        return cachesSystemPrompt(llmRequest) ? cachingChatModel.get() : super.chatModelFor(llmRequest);
+    }
+
+    @Override
+    protected StreamingChatModel streamingModelFor(LlmRequest llmRequest) {
+        return cachesSystemPrompt(llmRequest) ? cachingStreamingModel.get() : super.streamingModelFor(llmRequest);
+    }
+
+    private static boolean cachesSystemPrompt(LlmRequest llmRequest) {
+        return llmRequest.messages().stream()
+                .anyMatch(message -> message.cacheBreakpoint() && message.role() == LlmMessage.Role.SYSTEM);
+    }
+
+    private static ChatModel chatModel(ModelConfig modelConfig, String apiKey, String baseUrl,
+            String modelName, boolean cacheSystemMessages) {
+        return AnthropicChatModel.builder()
+                .apiKey(apiKey)
+                .baseUrl(baseUrl)
+                .modelName(modelName)
+                .cacheSystemMessages(cacheSystemMessages)
+                .httpClientBuilder(HttpTransport.forProvider(modelConfig, "anthropic"))
+                .build();
+    }
+
+    private static StreamingChatModel streamingModel(ModelConfig modelConfig, String apiKey, String baseUrl,
+            String modelName, boolean cacheSystemMessages) {
+        return AnthropicStreamingChatModel.builder()
+                .apiKey(apiKey)
+                .baseUrl(baseUrl)
+                .modelName(modelName)
+                .cacheSystemMessages(cacheSystemMessages)
+                .httpClientBuilder(HttpTransport.forProvider(modelConfig, "anthropic"))
+                .build();
     }
 }
@@ -9,16 +9,22 @@ import java.time.Duration;
 public class AzureOpenAiChatModelWrapper extends BaseChatModelWrapper {
 
     public AzureOpenAiChatModelWrapper(ModelConfig modelConfig, String endPoint) {
+        this(HttpTransport.settings(modelConfig, "azure").readTimeout(),
+                modelConfig.getOrThrow("azure.openai.api.key", "Missing AZURE_OPENAI_API_KEY environment variable"),
+                endPoint);
+    }
+
+    private AzureOpenAiChatModelWrapper(Duration timeout, String apiKey, String endPoint) {
         super(
-                AzureOpenAiChatModel.builder()
-                        .apiKey(modelConfig.getOrThrow("azure.openai.api.key", "Missing AZURE_OPENAI_API_KEY environment variable"))
+                () -> AzureOpenAiChatModel.builder()
+                        .apiKey(apiKey)
                         .endpoint(endPoint)
-                        .timeout(Duration.ofSeconds(60))
+                        .timeout(timeout)
                         .build(),
-                AzureOpenAiStreamingChatModel.builder()
-                        .apiKey(modelConfig.getOrThrow("azure.openai.api.key", "Missing AZURE_OPENAI_API_KEY environment variable"))
+                () -> AzureOpenAiStreamingChatModel.builder()
+                        .apiKey(apiKey)
                         .endpoint(endPoint)
-                        .timeout(Duration.ofSeconds(60))
+                        .timeout(timeout)
                         .build()
         );
     }
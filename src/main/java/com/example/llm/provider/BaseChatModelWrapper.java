@@ -1,29 +1,48 @@
 package com.example.llm.provider;
 
 import com.example.llm.LlmChatModel;
+import com.example.llm.LlmMessage;
 import com.example.llm.LlmRequest;
 import com.example.llm.LlmResponse;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
 import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.anthropic.AnthropicTokenUsage;
 import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
 import dev.langchain4j.model.chat.response.ChatResponse;
 import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import dev.langchain4j.model.openai.OpenAiTokenUsage;
+import dev.langchain4j.model.output.TokenUsage;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Base for langchain4j-backed chat models. The blocking and streaming clients are built on first
+ * use, once each, so a caller that only chats or only streams never pays for the other client.
+ */
 public abstract class BaseChatModelWrapper implements LlmChatModel {
-    private final ChatModel chatModel;
-    private final StreamingChatModel streamingModel;
+    private final Lazy<ChatModel> chatModel;
+    private final Lazy<StreamingChatModel> streamingModel;
 
     public BaseChatModelWrapper(ChatModel chatModel, StreamingChatModel streamingModel) {
-        this.chatModel = chatModel;
-        this.streamingModel = streamingModel;
+        this(() -> chatModel, () -> streamingModel);
+    }
+
+    public BaseChatModelWrapper(Supplier<ChatModel> chatModel, Supplier<StreamingChatModel> streamingModel) {
+        this.chatModel = new Lazy<>(chatModel);
+        this.streamingModel = new Lazy<>(streamingModel);
     }
 
     @Override
     public LlmResponse chat(LlmRequest llmRequest) {
-        UserMessage userMessage = UserMessage.from(llmRequest.prompt());
         try {
-            ChatResponse response = chatModel.chat(userMessage);
-            return new LlmResponse(response.aiMessage().text());
+            ChatResponse response = chatModelFor(llmRequest).chat(toChatRequest(llmRequest));
+            return toLlmResponse(response);
         } catch (Exception e) {
             throw new RuntimeException("Error calling API: " + e.getMessage(), e);
         }
@@ -32,9 +51,76 @@ public abstract class BaseChatModelWrapper implements LlmChatModel {
     @Override
     public void streamChat(LlmRequest llmRequest, StreamingChatResponseHandler responseHandler) {
         try {
-            streamingModel.chat(llmRequest.prompt(), responseHandler);
+            streamingModelFor(llmRequest).chat(toChatRequest(llmRequest), responseHandler);
         } catch (Exception e) {
             throw new RuntimeException("Error calling API: " + e.getMessage(), e);
         }
     }
+
+    /**
+     * The model that serves this request; wrappers override this to pick a differently configured
+     * client, for example one with prompt caching enabled.
+     */
+    protected ChatModel chatModelFor(LlmRequest llmRequest) {
+        return chatModel.get();
+    }
+
+    protected StreamingChatModel streamingModelFor(LlmRequest llmRequest) {
+        return streamingModel.get();
+    }
+
+    /**
+     * Whether the blocking and streaming clients have been built yet.
+     */
+    public boolean isChatModelBuilt() {
+        return chatModel.isInitialized();
+    }
+
+    public boolean isStreamingModelBuilt() {
+        return streamingModel.isInitialized();
+    }
+
+    protected static LlmResponse toLlmResponse(ChatResponse response) {
+        TokenUsage usage = response.tokenUsage();
+        if (usage == null) {
+            return new LlmResponse(response.aiMessage().text());
+        }
+        return new LlmResponse(response.aiMessage().text(), usage.inputTokenCount(), usage.outputTokenCount(),
+                usage.totalTokenCount(), cachedTokens(usage));
+    }
+
+    /**
+     * Prompt tokens read from the provider's cache, for the providers that report them.
+     */
+    static Integer cachedTokens(TokenUsage usage) {
+        if (usage instanceof AnthropicTokenUsage anthropicUsage) {
+            return anthropicUsage.cacheReadInputTokens();
+        } else if (usage instanceof OpenAiTokenUsage openAiUsage && openAiUsage.inputTokensDetails() != null) {
+            return openAiUsage.inputTokensDetails().cachedTokens();
+        }
+        return null;
+    }
+
+    /**
+     * Earlier turns go out as their own system/user/assistant messages, followed by the prompt as
+     * the final user message, so providers see a stable message prefix from turn to turn.
+     */
+    protected ChatRequest toChatRequest(LlmRequest llmRequest) {
+        return ChatRequest.builder()
+                .messages(toChatMessages(llmRequest))
+                .build();
+    }
+
+    protected static List<ChatMessage> toChatMessages(LlmRequest llmRequest) {
+        List<ChatMessage> messages = new ArrayList<>(llmRequest.messages().size() + 1);
+        for (LlmMessage message : llmRequest.messages()) {
+            messages.add(switch (message.role()) {
+                case SYSTEM -> SystemMessage.from(message.content());
+                case USER -> UserMessage.from(message.content());
+                case ASSISTANT -> AiMessage.from(message.content());
+            });
+        }
+        messages.add(UserMessage.from(llmRequest.prompt()));
+        return messages;
+    }
 }
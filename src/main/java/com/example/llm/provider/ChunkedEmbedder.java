@@ -0,0 +1,105 @@
+package com.example.llm.provider;
+
+import com.example.llm.TokenEstimator;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Splits a large {@code embedAll} into requests no bigger than the provider accepts, by input
+ * count and by estimated tokens, and sends up to {@code concurrency} of them at once. Results
+ * come back in input order. Idle pool threads exit after a while, so an embedder that is
+ * dropped, e.g. when the registry is invalidated, holds no threads.
+ *
+ * @param <E> the embedding type the provider call returns
+ */
+public final class ChunkedEmbedder<E> {
+    private static final long IDLE_THREAD_SECONDS = 30;
+
+    private final Function<List<String>, List<E>> batchCall;
+    private final int maxBatchSize;
+    private final int maxBatchTokens;
+    private final TokenEstimator tokenEstimator;
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param batchCall embeds one chunk in a single provider request
+     */
+    public ChunkedEmbedder(Function<List<String>, List<E>> batchCall, int maxBatchSize, int maxBatchTokens,
+                           int concurrency) {
+        this.batchCall = batchCall;
+        this.maxBatchSize = maxBatchSize;
+        this.maxBatchTokens = maxBatchTokens;
+        this.tokenEstimator = TokenEstimator.defaultEstimator();
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Embedding concurrency must be at least 1, got " + concurrency);
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(concurrency, concurrency, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "llm-embed-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public List<E> embedAll(List<String> texts) {
+        if (texts.isEmpty()) {
+            return List.of();
+        }
+        List<List<String>> chunks = chunk(texts);
+        if (chunks.size() == 1) {
+            return batchCall.apply(chunks.get(0));
+        }
+        List<Future<List<E>>> futures = new ArrayList<>(chunks.size());
+        for (List<String> chunk : chunks) {
+            futures.add(executor.submit(() -> batchCall.apply(chunk)));
+        }
+        List<E> embeddings = new ArrayList<>(texts.size());
+        try {
+            for (Future<List<E>> future : futures) {
+                embeddings.addAll(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while embedding", e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new RuntimeException("Failed to embed chunk", e.getCause());
+        } finally {
+            futures.forEach(future -> future.cancel(true));
+        }
+        return embeddings;
+    }
+
+    /**
+     * Consecutive runs of texts, each within both limits; a single text over the token limit
+     * still gets a chunk of its own and is left for the provider to reject or truncate.
+     */
+    private List<List<String>> chunk(List<String> texts) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<String> current = new ArrayList<>();
+        long currentTokens = 0;
+        for (String text : texts) {
+            int tokens = tokenEstimator.estimate(text);
+            if (!current.isEmpty() && (current.size() >= maxBatchSize || currentTokens + tokens > maxBatchTokens)) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                currentTokens = 0;
+            }
+            current.add(text);
+            currentTokens += tokens;
+        }
+        chunks.add(current);
+        return chunks;
+    }
+}
@@ -4,20 +4,22 @@ import com.example.llm.ModelConfig;
 import dev.langchain4j.model.googleai.GoogleAiGeminiChatModel;
 import dev.langchain4j.model.googleai.GoogleAiGeminiStreamingChatModel;
 
-import java.time.Duration;
-
 public class GeminiChatModelWrapper extends BaseChatModelWrapper {
     public GeminiChatModelWrapper(ModelConfig modelConfig, String modelName) {
+        this(modelConfig, modelConfig.getOrThrow("gemini.api.key", "Missing GEMINI_API_KEY environment variable"), modelName);
+    }
+
+    private GeminiChatModelWrapper(ModelConfig modelConfig, String apiKey, String modelName) {
         super(
-                GoogleAiGeminiChatModel.builder()
-                        .apiKey(modelConfig.getOrThrow("gemini.api.key", "Missing GEMINI_API_KEY environment variable"))
+                () -> GoogleAiGeminiChatModel.builder()
+                        .apiKey(apiKey)
                         .modelName(modelName)
-                        .timeout(Duration.ofSeconds(60))
+                        .httpClientBuilder(HttpTransport.forProvider(modelConfig, "gemini"))
                         .build(),
-                GoogleAiGeminiStreamingChatModel.builder()
-                        .apiKey(modelConfig.getOrThrow("gemini.api.key", "Missing GEMINI_API_KEY environment variable"))
+                () -> GoogleAiGeminiStreamingChatModel.builder()
+                        .apiKey(apiKey)
                         .modelName(modelName)
-                        .timeout(Duration.ofSeconds(60))
+                        .httpClientBuilder(HttpTransport.forProvider(modelConfig, "gemini"))
                         .build()
         );
     }
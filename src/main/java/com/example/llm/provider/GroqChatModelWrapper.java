@@ -4,22 +4,24 @@ import com.example.llm.ModelConfig;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 
-import java.time.Duration;
-
 public class GroqChatModelWrapper extends BaseChatModelWrapper {
     public GroqChatModelWrapper(ModelConfig modelConfig, String modelName) {
+        this(modelConfig, modelConfig.getOrThrow("groq.api.key", "Missing GROQ_API_KEY environment variable"), modelName);
+    }
+
+    private GroqChatModelWrapper(ModelConfig modelConfig, String apiKey, String modelName) {
         super(
-                OpenAiChatModel.builder()
-                        .apiKey(modelConfig.getOrThrow("groq.api.key", "Missing GROQ_API_KEY environment variable"))
+                () -> OpenAiChatModel.builder()
+                        .apiKey(apiKey)
                         .modelName(modelName)
                         .baseUrl("https://api.groq.com/openai/v1")
-                        .timeout(Duration.ofSeconds(60))
+                        .httpClientBuilder(HttpTransport.forProvider(modelConfig, "groq"))
                         .build(),
-                OpenAiStreamingChatModel.builder()
-                        .apiKey(modelConfig.getOrThrow("groq.api.key", "Missing GROQ_API_KEY environment variable"))
+                () -> OpenAiStreamingChatModel.builder()
+                        .apiKey(apiKey)
                         .modelName(modelName)
                         .baseUrl("https://api.groq.com/openai/v1")
-                        .timeout(Duration.ofSeconds(60))
+                        .httpClientBuilder(HttpTransport.forProvider(modelConfig, "groq"))
                         .build()
         );
     }
@@ -0,0 +1,118 @@
+package com.example.llm.provider;
+
+import com.example.llm.ModelConfig;
+import dev.langchain4j.http.client.HttpClient;
+import dev.langchain4j.http.client.HttpClientBuilder;
+import dev.langchain4j.http.client.jdk.JdkHttpClient;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide HTTP transport for the langchain4j provider clients. Every client built with the
+ * same timeouts and protocol shares one JDK {@link java.net.http.HttpClient}, and with it one
+ * connection pool, so a process talking to several providers keeps a bounded set of warm
+ * connections instead of a cold stack per model.
+ *
+ * <p>Settings are read from {@link ModelConfig}, with {@code http.<provider>.<setting>} taking
+ * precedence over {@code http.<setting>}:
+ * <ul>
+ *   <li>{@code connect.timeout.ms}, {@code read.timeout.ms} - per provider, default 60 seconds</li>
+ *   <li>{@code http2} - negotiate HTTP/2 where the server supports it, default {@code true}</li>
+ *   <li>{@code pool.size}, {@code idle.timeout.seconds} - global only; the JDK reads them once,
+ *   when its first client is built, so they only apply if set before then</li>
+ * </ul>
+ */
+public final class HttpTransport {
+    static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(60);
+
+    record Settings(Duration connectTimeout, Duration readTimeout, java.net.http.HttpClient.Version version) {
+    }
+
+    private static final Map<Settings, HttpClient> CLIENTS = new ConcurrentHashMap<>();
+
+    private HttpTransport() {
+    }
+
+    /**
+     * A builder for the given provider's langchain4j client. Providers whose settings match get
+     * the same client.
+     */
+    public static HttpClientBuilder forProvider(ModelConfig modelConfig, String provider) {
+        applyPoolSettings(modelConfig);
+        return new SharedClientBuilder(settings(modelConfig, provider));
+    }
+
+    static Settings settings(ModelConfig modelConfig, String provider) {
+        return new Settings(
+                Duration.ofMillis(longSetting(modelConfig, provider, "connect.timeout.ms", DEFAULT_TIMEOUT.toMillis())),
+                Duration.ofMillis(longSetting(modelConfig, provider, "read.timeout.ms", DEFAULT_TIMEOUT.toMillis())),
+                Boolean.parseBoolean(setting(modelConfig, provider, "http2", "true"))
+                        ? java.net.http.HttpClient.Version.HTTP_2
+                        : java.net.http.HttpClient.Version.HTTP_1_1);
+    }
+
+    private static HttpClient sharedClient(Settings settings) {
+        return CLIENTS.computeIfAbsent(settings, key -> JdkHttpClient.builder()
+                .httpClientBuilder(java.net.http.HttpClient.newBuilder().version(key.version()))
+                .connectTimeout(key.connectTimeout())
+                .readTimeout(key.readTimeout())
+                .build());
+    }
+
+    private static void applyPoolSettings(ModelConfig modelConfig) {
+        modelConfig.get("http.pool.size")
+                .ifPresent(value -> setIfAbsent("jdk.httpclient.connectionPoolSize", value.trim()));
+        modelConfig.get("http.idle.timeout.seconds")
+                .ifPresent(value -> setIfAbsent("jdk.httpclient.keepalive.timeout", value.trim()));
+    }
+
+    private static void setIfAbsent(String property, String value) {
+        if (System.getProperty(property) == null) {
+            System.setProperty(property, value);
+        }
+    }
+
+    private static String setting(ModelConfig modelConfig, String provider, String name, String defaultValue) {
+        return modelConfig.get("http." + provider + "." + name)
+                .or(() -> modelConfig.get("http." + name))
+                .map(String::trim)
+                .orElse(defaultValue);
+    }
+
+    private static long longSetting(ModelConfig modelConfig, String provider, String name, long defaultValue) {
+        return Long.parseLong(setting(modelConfig, provider, name, Long.toString(defaultValue)));
+    }
+
+    /**
+     * Keeps the configured timeouts: the provider clients push their own defaults into the builder
+     * (OpenAI always does), which would otherwise override {@link ModelConfig} and split the pool.
+     */
+    private record SharedClientBuilder(Settings settings) implements HttpClientBuilder {
+        @Override
+        public Duration connectTimeout() {
+            return settings.connectTimeout();
+        }
+
+        @Override
+        public HttpClientBuilder connectTimeout(Duration connectTimeout) {
+            return this;
+        }
+
+        @Override
+        public Duration readTimeout() {
+            return settings.readTimeout();
+        }
+
+        @Override
+        public HttpClientBuilder readTimeout(Duration readTimeout) {
+            return this;
+        }
+
+        @Override
+        public HttpClient build() {
+            return sharedClient(settings);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.llm.provider;
+
+import java.util.function.Supplier;
+
+/**
+ * Thread-safe memoizing supplier: the delegate runs on the first {@link #get()} only.
+ */
+final class Lazy<T> implements Supplier<T> {
+    private Supplier<T> delegate;
+    private volatile T value;
+
+    Lazy(Supplier<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public T get() {
+        T result = value;
+        if (result == null) {
+            synchronized (this) {
+                result = value;
+                if (result == null) {
+                    result = delegate.get();
+                    value = result;
+                    delegate = null;
+                }
+            }
+        }
+        return result;
+    }
+
+    boolean isInitialized() {
+        return value != null;
+    }
+}
@@ -4,20 +4,25 @@ import com.example.llm.ModelConfig;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 
-import java.time.Duration;
-
 public class OpenAiChatModelWrapper extends BaseChatModelWrapper {
     public OpenAiChatModelWrapper(ModelConfig modelConfig, String modelName) {
+        this(modelConfig, modelConfig.getOrThrow("openai.api.key", "Missing OPENAI_API_KEY environment variable"),
+                modelConfig.get("openai.base.url").orElse("https://api.openai.com/v1"), modelName);
+    }
+
+    private OpenAiChatModelWrapper(ModelConfig modelConfig, String apiKey, String baseUrl, String modelName) {
         super(
-                OpenAiChatModel.builder()
-                        .apiKey(modelConfig.getOrThrow("openai.api.key", "Missing OPENAI_API_KEY environment variable"))
+                () -> OpenAiChatModel.builder()
+                        .apiKey(apiKey)
+                        .baseUrl(baseUrl)
                         .modelName(modelName)
-                        .timeout(Duration.ofSeconds(60))
+                        .httpClientBuilder(HttpTransport.forProvider(modelConfig, "openai"))
                         .build(),
-                OpenAiStreamingChatModel.builder()
-                        .apiKey(modelConfig.getOrThrow("openai.api.key", "Missing OPENAI_API_KEY environment variable"))
+                () -> OpenAiStreamingChatModel.builder()
+                        .apiKey(apiKey)
+                        .baseUrl(baseUrl)
                         .modelName(modelName)
-                        .timeout(Duration.ofSeconds(60))
+                        .httpClientBuilder(HttpTransport.forProvider(modelConfig, "openai"))
                         .build()
         );
     }
@@ -1,24 +1,59 @@
 package com.example.llm.provider;
 
+import com.example.llm.LlmEmbedding;
 import com.example.llm.ModelConfig;
 import com.example.llm.LlmEmbeddingModel;
+import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.model.openai.OpenAiEmbeddingModel;
 
 import java.util.List;
 
 public class OpenAiLlmEmbeddingModelWrapper implements LlmEmbeddingModel {
+    // OpenAI accepts up to 2048 inputs and 300k tokens per embeddings request
+    static final int MAX_BATCH_SIZE = 2048;
+    static final int MAX_BATCH_TOKENS = 250_000;
+
     private final OpenAiEmbeddingModel embeddingModel;
+    private final ChunkedEmbedder<LlmEmbedding> chunkedEmbedder;
 
     public OpenAiLlmEmbeddingModelWrapper(ModelConfig modelConfig, String modelName) {
+        int batchSize = modelConfig.get("embedding.batch.size")
+                .map(value -> Integer.parseInt(value.trim())).orElse(MAX_BATCH_SIZE);
+        int concurrency = modelConfig.get("embedding.concurrency")
+                .map(value -> Integer.parseInt(value.trim())).orElse(4);
         this.embeddingModel = OpenAiEmbeddingModel.builder()
                 .apiKey(modelConfig.getOrThrow("openai.api.key", "Missing OPENAI_API_KEY environment variable"))
                 .modelName(modelName)
+                .httpClientBuilder(HttpTransport.forProvider(modelConfig, "openai"))
+                .maxSegmentsPerBatch(batchSize)
                 .build();
+        this.chunkedEmbedder = new ChunkedEmbedder<>(this::embedBatch, batchSize, MAX_BATCH_TOKENS, concurrency);
     }
 
     @Override
     public List<Float> embed(String embedText) {
-        return embeddingModel.embed(embedText).content().vectorAsList();
+        return embedVector(embedText).asList();
     }
-}
 
+    @Override
+    public List<List<Float>> embedAll(List<String> texts) {
+        return embedAllVectors(texts).stream().map(LlmEmbedding::asList).toList();
+    }
+
+    @Override
+    public LlmEmbedding embedVector(String embedText) {
+        return new LlmEmbedding(embeddingModel.embed(embedText).content().vector());
+    }
+
+    @Override
+    public List<LlmEmbedding> embedAllVectors(List<String> texts) {
+        return chunkedEmbedder.embedAll(texts);
+    }
+
+    private List<LlmEmbedding> embedBatch(List<String> texts) {
+        List<TextSegment> segments = texts.stream().map(TextSegment::from).toList();
+        return embeddingModel.embedAll(segments).content().stream()
+                .map(embedding -> new LlmEmbedding(embedding.vector()))
+                .toList();
+    }
+}
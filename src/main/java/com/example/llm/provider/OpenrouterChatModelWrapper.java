@@ -4,22 +4,24 @@ import com.example.llm.ModelConfig;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.model.openai.OpenAiStreamingChatModel;
 
-import java.time.Duration;
-
 public class OpenrouterChatModelWrapper extends BaseChatModelWrapper {
     public OpenrouterChatModelWrapper(ModelConfig modelConfig, String modelName) {
+        this(modelConfig, modelConfig.getOrThrow("openrouter.api.key", "Missing OPENROUTER_API_KEY environment variable"), modelName);
+    }
+
+    private OpenrouterChatModelWrapper(ModelConfig modelConfig, String apiKey, String modelName) {
         super(
-                OpenAiChatModel.builder()
-                        .apiKey(modelConfig.getOrThrow("openrouter.api.key", "Missing OPENROUTER_API_KEY environment variable"))
+                () -> OpenAiChatModel.builder()
+                        .apiKey(apiKey)
                         .modelName(modelName)
                         .baseUrl("https://openrouter.ai/api/v1")
-                        .timeout(Duration.ofSeconds(60))
+                        .httpClientBuilder(HttpTransport.forProvider(modelConfig, "openrouter"))
                         .build(),
-                OpenAiStreamingChatModel.builder()
-                        .apiKey(modelConfig.getOrThrow("openrouter.api.key", "Missing OPENROUTER_API_KEY environment variable"))
+                () -> OpenAiStreamingChatModel.builder()
+                        .apiKey(apiKey)
                         .modelName(modelName)
                         .baseUrl("https://openrouter.ai/api/v1")
-                        .timeout(Duration.ofSeconds(60))
+                        .httpClientBuilder(HttpTransport.forProvider(modelConfig, "openrouter"))
                         .build()
         );
     }
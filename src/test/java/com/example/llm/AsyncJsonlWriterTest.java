@@ -0,0 +1,73 @@
+package com.example.llm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.*;
+
+class AsyncJsonlWriterTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldWriteAllQueuedLinesInOrderOnClose() throws IOException {
+        Path logFile = tempDir.resolve("test.jsonl");
+        AsyncJsonlWriter writer = new AsyncJsonlWriter(logFile, 16,
+                AsyncJsonlWriter.FsyncPolicy.onClose(), AsyncJsonlWriter.OverflowPolicy.BLOCK);
+
+        for (int i = 0; i < 100; i++) {
+            writer.append("{\"n\":" + i + "}");
+        }
+        writer.close();
+
+        List<String> lines = Files.readAllLines(logFile);
+        assertThat(lines).hasSize(100);
+        assertThat(lines.get(0)).isEqualTo("{\"n\":0}");
+        assertThat(lines.get(99)).isEqualTo("{\"n\":99}");
+        assertThat(writer.getWrittenEntries()).isEqualTo(100);
+        assertThat(writer.getDroppedEntries()).isZero();
+    }
+
+    @Test
+    void shouldMakeLinesVisibleAfterFlush() throws IOException {
+        Path logFile = tempDir.resolve("test.jsonl");
+        AsyncJsonlWriter writer = new AsyncJsonlWriter(logFile, 16,
+                AsyncJsonlWriter.FsyncPolicy.everyEntries(1), AsyncJsonlWriter.OverflowPolicy.BLOCK);
+
+        writer.append("{\"a\":1}");
+        writer.flush();
+
+        assertThat(Files.readAllLines(logFile)).containsExactly("{\"a\":1}");
+        writer.close();
+    }
+
+    @Test
+    void shouldRejectAppendsAfterClose() throws IOException {
+        AsyncJsonlWriter writer = new AsyncJsonlWriter(tempDir.resolve("test.jsonl"), 16,
+                AsyncJsonlWriter.FsyncPolicy.onClose(), AsyncJsonlWriter.OverflowPolicy.DROP);
+        writer.close();
+
+        assertThatThrownBy(() -> writer.append("{}"))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void shouldNotHangWhenFlushRacesClose() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            AsyncJsonlWriter writer = new AsyncJsonlWriter(tempDir.resolve("test-" + i + ".jsonl"), 16,
+                    AsyncJsonlWriter.FsyncPolicy.onClose(), AsyncJsonlWriter.OverflowPolicy.BLOCK);
+            writer.append("{}");
+            Thread flusher = new Thread(writer::flush);
+            flusher.start();
+            writer.close();
+            flusher.join(5_000);
+
+            assertThat(flusher.isAlive()).isFalse();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.llm;
+
+import com.example.llm.provider.BaseChatModelWrapper;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class BaseChatModelWrapperTest {
+    private final List<ChatRequest> requests = new ArrayList<>();
+
+    private final ChatModel recordingModel = new ChatModel() {
+        @Override
+        public ChatResponse doChat(ChatRequest chatRequest) {
+            requests.add(chatRequest);
+            return ChatResponse.builder().aiMessage(AiMessage.from("ok")).build();
+        }
+    };
+
+    private final LlmChatModel wrapper = new BaseChatModelWrapper(recordingModel, null) {
+    };
+
+    @Test
+    void shouldSendPromptAsSingleUserMessage() {
+        LlmResponse response = wrapper.chat(new LlmRequest("Hello"));
+
+        assertThat(response.text()).isEqualTo("ok");
+        assertThat(requests.get(0).messages()).containsExactly(UserMessage.from("Hello"));
+    }
+
+    @Test
+    void shouldSendHistoryAsSeparateMessagesBeforePrompt() {
+        List<LlmMessage> history = List.of(
+            LlmMessage.system("Be brief"),
+            LlmMessage.user("Hi"),
+            LlmMessage.assistant("Hello"));
+
+        wrapper.chat(new LlmRequest("How are you?", null, null, history));
+
+        List<ChatMessage> messages = requests.get(0).messages();
+        assertThat(messages).containsExactly(
+            SystemMessage.from("Be brief"),
+            UserMessage.from("Hi"),
+            AiMessage.from("Hello"),
+            UserMessage.from("How are you?"));
+    }
+
+    @Test
+    void shouldBuildEachClientOnFirstUseOnly() {
+        AtomicInteger chatBuilds = new AtomicInteger();
+        AtomicInteger streamingBuilds = new AtomicInteger();
+        BaseChatModelWrapper lazyWrapper = new BaseChatModelWrapper(
+            () -> {
+                chatBuilds.incrementAndGet();
+                return recordingModel;
+            },
+            () -> {
+                streamingBuilds.incrementAndGet();
+                return null;
+            }) {
+        };
+
+        assertThat(chatBuilds).hasValue(0);
+        assertThat(lazyWrapper.isChatModelBuilt()).isFalse();
+
+        lazyWrapper.chat(new LlmRequest("One"));
+        lazyWrapper.chat(new LlmRequest("Two"));
+
+        assertThat(chatBuilds).hasValue(1);
+        assertThat(streamingBuilds).hasValue(0);
+        assertThat(lazyWrapper.isChatModelBuilt()).isTrue();
+        assertThat(lazyWrapper.isStreamingModelBuilt()).isFalse();
+        assertThat(requests).hasSize(2);
+    }
+
+    @Test
+    void shouldParseHistoryLines() {
+        assertThat(LlmMessage.fromHistoryLine("user: Hi: there")).isEqualTo(LlmMessage.user("Hi: there"));
+        assertThat(LlmMessage.fromHistoryLine("assistant: Hello")).isEqualTo(LlmMessage.assistant("Hello"));
+        assertThat(LlmMessage.fromHistoryLine("tool: result")).isEqualTo(LlmMessage.user("tool: result"));
+        assertThat(LlmMessage.fromHistoryLine("no role")).isEqualTo(LlmMessage.user("no role"));
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.llm;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class BatchRunnerTest {
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /**
+     * Answers with the prompt upper-cased after a delay; prompts starting with "slow" take longer,
+     * "fail" throws and "crash" throws an Error.
+     */
+    private final LlmChatModel stubModel = new LlmChatModel() {
+        @Override
+        public LlmResponse chat(LlmRequest llmRequest) {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(llmRequest.prompt().startsWith("slow") ? 200 : 20);
+                if (llmRequest.prompt().startsWith("fail")) {
+                    throw new RuntimeException("Provider error");
+                }
+                if (llmRequest.prompt().startsWith("crash")) {
+                    throw new AssertionError("Crashed");
+                }
+                return new LlmResponse(llmRequest.prompt().toUpperCase(), 1, 1, 2);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public void streamChat(LlmRequest llmRequest, StreamingChatResponseHandler responseHandler) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    @Test
+    void shouldWriteResultsInInputOrder() throws IOException {
+        String input = """
+            slow one
+            {"id": "b", "prompt": "two"}
+
+            {"id": "c"}
+            fail four
+            """;
+
+        List<JsonNode> results = run(input, 4, BatchRunner.Order.INPUT, null);
+
+        assertThat(results).extracting(node -> node.get("index").asInt()).containsExactly(0, 1, 2, 3);
+        assertThat(results.get(0).get("response").asText()).isEqualTo("SLOW ONE");
+        assertThat(results.get(1).get("id").asText()).isEqualTo("b");
+        assertThat(results.get(1).get("response").asText()).isEqualTo("TWO");
+        assertThat(results.get(2).get("error").asText()).contains("prompt");
+        assertThat(results.get(3).get("error").asText()).isEqualTo("Provider error");
+    }
+
+    @Test
+    void shouldWriteResultsInCompletionOrder() throws IOException {
+        List<JsonNode> results = run("slow one\ntwo\nthree\n", 3, BatchRunner.Order.COMPLETION, null);
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(2).get("response").asText()).isEqualTo("SLOW ONE");
+    }
+
+    @Test
+    void shouldRunExactlyConcurrencyRequestsAtOnce() throws IOException {
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < 400; i++) {
+            input.append("prompt ").append(i).append('\n');
+        }
+
+        List<JsonNode> results = run(input.toString(), 16, BatchRunner.Order.INPUT, null);
+
+        assertThat(results).hasSize(400);
+        assertThat(maxInFlight.get()).isEqualTo(16);
+    }
+
+    @Test
+    void shouldKeepGoingWhenARequestThrowsAnError() throws IOException {
+        StringBuilder input = new StringBuilder("crash zero\n");
+        for (int i = 1; i < 20; i++) {
+            input.append("prompt ").append(i).append('\n');
+        }
+
+        List<JsonNode> results = run(input.toString(), 2, BatchRunner.Order.INPUT, null);
+
+        assertThat(results).hasSize(20);
+        assertThat(results.get(0).get("error").asText()).isEqualTo("Request did not complete");
+        assertThat(results.get(19).get("response").asText()).isEqualTo("PROMPT 19");
+    }
+
+    @Test
+    void shouldLogSuccessfulCallsInBulk() throws IOException {
+        LogManager logManager = new LogManager("h2", tempDir.resolve("batch.db").toString());
+
+        BatchRunner runner = new BatchRunner(stubModel, "stub", 4, BatchRunner.Order.INPUT, logManager, 2);
+        BatchRunner.Summary summary = runner.run(new BufferedReader(new StringReader("a\nb\nfail c\nd\ne\n")),
+            new StringWriter());
+
+        assertThat(summary.total()).isEqualTo(5);
+        assertThat(summary.failed()).isEqualTo(1);
+        assertThat(logManager.getConversations(10, 0)).extracting(Conversation::getPrompt)
+            .containsExactlyInAnyOrder("a", "b", "d", "e");
+        logManager.close();
+    }
+
+    @Test
+    void shouldReportLogFailuresAndStillLogTheRest() throws IOException {
+        List<String> logged = Collections.synchronizedList(new ArrayList<>());
+        LogManager logManager = new LogManager("h2", tempDir.resolve("batch.db").toString()) {
+            @Override
+            public void logConversations(List<LoggedCall> calls) {
+                if (calls.stream().anyMatch(call -> call.prompt().equals("a"))) {
+                    throw new RuntimeException("Database is full");
+                }
+                calls.forEach(call -> logged.add(call.prompt()));
+            }
+        };
+
+        BatchRunner runner = new BatchRunner(stubModel, "stub", 1, BatchRunner.Order.INPUT, logManager, 2);
+
+        assertThatThrownBy(() -> runner.run(new BufferedReader(new StringReader("a\nb\nc\nd\ne\n")), new StringWriter()))
+            .isInstanceOf(IOException.class)
+            .hasMessageContaining("Failed to log batch results")
+            .hasRootCauseMessage("Database is full");
+        assertThat(logged).containsExactly("c", "d", "e");
+        logManager.close();
+    }
+
+    private List<JsonNode> run(String input, int concurrency, BatchRunner.Order order, LogManager logManager)
+            throws IOException {
+        StringWriter output = new StringWriter();
+        new BatchRunner(stubModel, "stub", concurrency, order, logManager)
+            .run(new BufferedReader(new StringReader(input)), output);
+        List<JsonNode> results = new ArrayList<>();
+        for (String line : output.toString().split("\n")) {
+            results.add(objectMapper.readTree(line));
+        }
+        return results;
+    }
+}
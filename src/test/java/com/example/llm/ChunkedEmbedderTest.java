@@ -0,0 +1,86 @@
+package com.example.llm;
+
+import com.example.llm.provider.ChunkedEmbedder;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ChunkedEmbedderTest {
+    private final List<Integer> chunkSizes = Collections.synchronizedList(new ArrayList<>());
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    /**
+     * Embeds each text as the one-dimensional vector of its number, after a random delay so
+     * chunks finish out of order.
+     */
+    private final Function<List<String>, List<List<Float>>> provider = texts -> {
+        chunkSizes.add(texts.size());
+        maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(1, 10));
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        return texts.stream().map(text -> List.of(Float.parseFloat(text))).toList();
+    };
+
+    private static List<String> numbers(int count) {
+        return IntStream.range(0, count).mapToObj(String::valueOf).toList();
+    }
+
+    @Test
+    void shouldChunkByBatchSizeAndPreserveInputOrder() {
+        ChunkedEmbedder<List<Float>> embedder = new ChunkedEmbedder<>(provider, 100, Integer.MAX_VALUE, 4);
+
+        List<List<Float>> embeddings = embedder.embedAll(numbers(1_050));
+
+        assertThat(embeddings).hasSize(1_050);
+        for (int i = 0; i < embeddings.size(); i++) {
+            assertThat(embeddings.get(i)).containsExactly((float) i);
+        }
+        assertThat(chunkSizes).hasSize(11);
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    void shouldChunkByEstimatedTokens() {
+        ChunkedEmbedder<List<Float>> embedder = new ChunkedEmbedder<>(provider, 100, 10, 1);
+        // Four-digit numbers estimate at one token each
+        List<String> texts = IntStream.range(1_000, 1_025).mapToObj(String::valueOf).toList();
+
+        embedder.embedAll(texts);
+
+        assertThat(chunkSizes).containsExactly(10, 10, 5);
+    }
+
+    @Test
+    void shouldEmbedEmptyInputWithoutCallingProvider() {
+        assertThat(new ChunkedEmbedder<>(provider, 100, 1_000, 2).embedAll(List.of())).isEmpty();
+        assertThat(chunkSizes).isEmpty();
+    }
+
+    @Test
+    void shouldRejectConcurrencyBelowOne() {
+        assertThatThrownBy(() -> new ChunkedEmbedder<>(provider, 100, 1_000, 0))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessageContaining("concurrency must be at least 1");
+    }
+
+    @Test
+    void shouldEmbedOneByOneByDefault() {
+        LlmEmbeddingModel model = text -> List.of((float) text.length());
+
+        assertThat(model.embedAll(List.of("a", "bbb"))).containsExactly(List.of(1f), List.of(3f));
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ContextWindowBuilderTest {
+    // One token per character keeps the arithmetic in these tests readable
+    private static final TokenEstimator PER_CHAR = String::length;
+    private static final int OVERHEAD = ContextWindowBuilder.MESSAGE_OVERHEAD_TOKENS;
+
+    @Test
+    void shouldKeepMostRecentMessagesThatFit() {
+        List<String> history = List.of("user: first", "assistant: second", "user: third");
+        int budget = "prompt".length() + "user: third".length() + "assistant: second".length() + 2 * OVERHEAD;
+        ContextWindowBuilder builder = new ContextWindowBuilder(budget, PER_CHAR);
+
+        assertThat(builder.select(history, "prompt")).containsExactly("assistant: second", "user: third");
+    }
+
+    @Test
+    void shouldStopAtFirstMessageThatDoesNotFit() {
+        List<String> history = List.of("user: a", "assistant: " + "x".repeat(500), "user: b");
+        ContextWindowBuilder builder = new ContextWindowBuilder(100, PER_CHAR);
+
+        // Skipping the long message would leave a gap in the conversation, so older ones are dropped too
+        assertThat(builder.select(history, "prompt")).containsExactly("user: b");
+    }
+
+    @Test
+    void shouldSelectNothingWhenPromptExhaustsBudget() {
+        ContextWindowBuilder builder = new ContextWindowBuilder(10, PER_CHAR);
+
+        assertThat(builder.select(List.of("user: a"), "a prompt longer than the budget")).isEmpty();
+        assertThat(builder.build(List.of("user: a"), "a prompt longer than the budget"))
+            .isEqualTo("a prompt longer than the budget");
+    }
+
+    @Test
+    void shouldSummarizeDroppedMessages() {
+        List<String> history = List.of("user: one", "assistant: two", "user: three");
+        int budget = "p".length() + "user: three".length() + "summary: 2".length() + 2 * OVERHEAD;
+        ContextWindowBuilder builder = new ContextWindowBuilder(budget, PER_CHAR,
+            dropped -> "summary: " + dropped.size());
+
+        assertThat(builder.select(history, "p")).containsExactly("summary: 2", "user: three");
+    }
+
+    @Test
+    void shouldRenderPromptInConversationFormat() {
+        ContextWindowBuilder builder = new ContextWindowBuilder(1000);
+
+        assertThat(builder.build(List.of("user: hi", "assistant: hello"), "next"))
+            .isEqualTo("Previous conversation:\nuser: hi\nassistant: hello\n\nNew prompt: next");
+    }
+
+    @Test
+    void shouldResolveTokenBudgetPerModel() {
+        ModelConfig config = new ModelConfig(Map.of(
+            "context.max.tokens", "4000",
+            "context.max.tokens.openai/gpt-4o", "32000"));
+
+        assertThat(ContextWindowBuilder.tokenBudgetFor(config, "openai/gpt-4o")).hasValue(32000);
+        assertThat(ContextWindowBuilder.tokenBudgetFor(config, "groq/llama3")).hasValue(4000);
+        assertThat(ContextWindowBuilder.tokenBudgetFor(new ModelConfig(Map.of()), "groq/llama3")).isEmpty();
+    }
+
+    @Test
+    void shouldEstimateTokensFromCharacters() {
+        TokenEstimator estimator = TokenEstimator.defaultEstimator();
+
+        assertThat(estimator.estimate("")).isZero();
+        assertThat(estimator.estimate("abcd")).isEqualTo(1);
+        assertThat(estimator.estimate("abcde")).isEqualTo(2);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.llm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ConversationContextCacheTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldLoadOnceAndServeTailFromCache() {
+        ConversationContextCache cache = new ConversationContextCache(1000);
+        AtomicInteger loads = new AtomicInteger();
+
+        List<String> first = cache.get("c1", 2, id -> {
+            loads.incrementAndGet();
+            return List.of("user: a", "assistant: b", "user: c");
+        });
+        List<String> second = cache.get("c1", 10, id -> {
+            loads.incrementAndGet();
+            return List.of();
+        });
+
+        assertThat(first).containsExactly("assistant: b", "user: c");
+        assertThat(second).containsExactly("user: a", "assistant: b", "user: c");
+        assertThat(loads).hasValue(1);
+        assertThat(cache.getHitCount()).isEqualTo(1);
+        assertThat(cache.getMissCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldAppendWritesToCachedConversations() {
+        ConversationContextCache cache = new ConversationContextCache(1000);
+        cache.get("c1", 10, id -> List.of("user: a"));
+
+        cache.append("c1", List.of("assistant: b"));
+        cache.append("c2", List.of("user: ignored"));
+
+        assertThat(cache.get("c1", 10, id -> List.of())).containsExactly("user: a", "assistant: b");
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.getCachedChars()).isEqualTo("user: a".length() + "assistant: b".length());
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedByCharacterBudget() {
+        ConversationContextCache cache = new ConversationContextCache(20);
+        cache.get("c1", 10, id -> List.of("0123456789"));
+        cache.get("c2", 10, id -> List.of("0123456789"));
+        cache.get("c1", 10, id -> List.of());
+
+        cache.get("c3", 10, id -> List.of("0123456789"));
+
+        assertThat(cache.getEvictionCount()).isEqualTo(1);
+        assertThat(cache.getCachedChars()).isEqualTo(20);
+        cache.get("c1", 10, id -> fail("c1 should still be cached"));
+        assertThat(cache.get("c2", 10, id -> List.of("reloaded"))).containsExactly("reloaded");
+    }
+
+    @Test
+    void shouldNotCacheHistoryLargerThanBudget() {
+        ConversationContextCache cache = new ConversationContextCache(5);
+
+        assertThat(cache.get("c1", 10, id -> List.of("too long"))).containsExactly("too long");
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getCachedChars()).isZero();
+    }
+
+    @Test
+    void shouldNotCacheLoadThatRacedWithWrite() {
+        ConversationContextCache cache = new ConversationContextCache(1000);
+
+        cache.get("c1", 10, id -> {
+            cache.append("c1", List.of("user: written during load"));
+            return List.of("user: stale");
+        });
+
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    void shouldServeContinuedConversationFromCache() {
+        LogManager logManager = new LogManager("jsonl", tempDir.resolve("log.jsonl").toString());
+        ConversationManager manager = new ConversationManager(logManager, null);
+        List<String> expected = new ArrayList<>();
+
+        manager.getConversationContext("conv-1", 10);
+        for (int turn = 0; turn < 3; turn++) {
+            manager.continueConversation("conv-1", "gpt-4", "Prompt " + turn, "Response " + turn, null, null, null, null);
+            expected.add("user: Prompt " + turn);
+            expected.add("assistant: Response " + turn);
+            assertThat(manager.getConversationContext("conv-1", 10)).isEqualTo(expected);
+        }
+
+        assertThat(manager.getContextCache().getMissCount()).isEqualTo(1);
+        assertThat(manager.getContextCache().getHitCount()).isEqualTo(3);
+        assertThat(logManager.getConversationHistory("conv-1", 10)).isEqualTo(expected);
+        logManager.close();
+    }
+}
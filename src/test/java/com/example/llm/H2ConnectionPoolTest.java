@@ -0,0 +1,99 @@
+package com.example.llm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.*;
+
+class H2ConnectionPoolTest {
+    @TempDir
+    Path tempDir;
+
+    private H2ConnectionPool newPool(int maxSize) {
+        return newPool(maxSize, 100);
+    }
+
+    private H2ConnectionPool newPool(int maxSize, long acquireTimeoutMs) {
+        Properties props = new Properties();
+        props.setProperty("user", "sa");
+        props.setProperty("password", "");
+        return new H2ConnectionPool("jdbc:h2:file:" + tempDir.resolve("pool.db"), props, maxSize, acquireTimeoutMs);
+    }
+
+    @Test
+    void shouldReuseCachedStatementsOnTheSameConnection() throws SQLException {
+        try (H2ConnectionPool pool = newPool(1)) {
+            PreparedStatement first;
+            try (H2ConnectionPool.PooledConnection connection = pool.acquire()) {
+                first = connection.prepare("SELECT 1");
+            }
+            try (H2ConnectionPool.PooledConnection connection = pool.acquire()) {
+                assertThat(connection.prepare("SELECT 1")).isSameAs(first);
+            }
+        }
+    }
+
+    @Test
+    void shouldTimeOutWhenAllConnectionsAreLeased() throws SQLException {
+        try (H2ConnectionPool pool = newPool(1);
+             H2ConnectionPool.PooledConnection ignored = pool.acquire()) {
+            assertThatThrownBy(pool::acquire)
+                    .isInstanceOf(SQLException.class)
+                    .hasMessageContaining("Timed out");
+        }
+    }
+
+    @Test
+    void shouldRollBackUncommittedWorkOnRelease() throws SQLException {
+        try (H2ConnectionPool pool = newPool(1)) {
+            try (H2ConnectionPool.PooledConnection connection = pool.acquire()) {
+                connection.connection().setAutoCommit(false);
+            }
+            try (H2ConnectionPool.PooledConnection connection = pool.acquire()) {
+                assertThat(connection.connection().getAutoCommit()).isTrue();
+            }
+        }
+    }
+
+    @Test
+    void shouldIgnoreSecondCloseOfALease() throws SQLException {
+        try (H2ConnectionPool pool = newPool(2)) {
+            H2ConnectionPool.PooledConnection lease = pool.acquire();
+            lease.close();
+            lease.close();
+
+            try (H2ConnectionPool.PooledConnection first = pool.acquire();
+                 H2ConnectionPool.PooledConnection second = pool.acquire()) {
+                assertThat(first.connection()).isNotSameAs(second.connection());
+            }
+        }
+    }
+
+    @Test
+    void shouldHandWaiterANewConnectionWhenABrokenOneIsDiscarded() throws Exception {
+        try (H2ConnectionPool pool = newPool(1, 5_000)) {
+            H2ConnectionPool.PooledConnection broken = pool.acquire();
+            CompletableFuture<H2ConnectionPool.PooledConnection> waiter = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return pool.acquire();
+                } catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Thread.sleep(100);
+            broken.connection().close();
+            broken.close();
+
+            try (H2ConnectionPool.PooledConnection replacement = waiter.get(2, TimeUnit.SECONDS)) {
+                assertThat(replacement.connection().isClosed()).isFalse();
+            }
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.llm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.llm.VectorTestData.*;
+import static org.assertj.core.api.Assertions.*;
+
+class HnswIndexTest {
+    @TempDir
+    Path tempDir;
+
+    private static final int DIMENSION = 32;
+
+    @Test
+    void shouldFindMostOfExactTopKWhenBuiltIncrementally() throws IOException {
+        List<LlmEmbedding> vectors = randomVectors(5_000, DIMENSION, 1);
+        try (VectorStore store = VectorStore.open(tempDir.resolve("docs"), DIMENSION)) {
+            store.createIndex(VectorStore.Metric.COSINE, 16, 100);
+            for (int from = 0; from < vectors.size(); from += 500) {
+                store.addAll(ids(from, from + 500), vectors.subList(from, from + 500), null);
+            }
+
+            assertThat(store.index().size()).isEqualTo(5_000);
+            assertThat(recall(store, randomVectors(50, DIMENSION, 2), 10, VectorStore.Metric.COSINE))
+                .isGreaterThan(0.9);
+        }
+    }
+
+    @Test
+    void shouldSupportDotProductIndex() throws IOException {
+        List<LlmEmbedding> vectors = randomVectors(2_000, DIMENSION, 3);
+        try (VectorStore store = VectorStore.open(tempDir.resolve("docs"), DIMENSION)) {
+            store.addAll(ids(0, vectors.size()), vectors, null);
+            store.createIndex(VectorStore.Metric.DOT, 16, 100);
+
+            assertThat(recall(store, randomVectors(20, DIMENSION, 4), 10, VectorStore.Metric.DOT)).isGreaterThan(0.8);
+        }
+    }
+
+    @Test
+    void shouldReopenPersistedIndexAndCatchUpWithNewVectors() throws IOException {
+        Path directory = tempDir.resolve("docs");
+        List<LlmEmbedding> vectors = randomVectors(3_000, DIMENSION, 5);
+        List<LlmEmbedding> queries = randomVectors(20, DIMENSION, 6);
+        List<List<VectorStore.Match>> before = new ArrayList<>();
+        try (VectorStore store = VectorStore.open(directory, DIMENSION)) {
+            store.addAll(ids(0, 2_000), vectors.subList(0, 2_000), null);
+            store.createIndex(VectorStore.Metric.COSINE, 16, 100);
+            for (LlmEmbedding query : queries) {
+                before.add(store.search(query, 5, VectorStore.Metric.COSINE));
+            }
+        }
+
+        try (VectorStore store = VectorStore.open(directory)) {
+            for (int i = 0; i < queries.size(); i++) {
+                assertThat(store.search(queries.get(i), 5, VectorStore.Metric.COSINE)).isEqualTo(before.get(i));
+            }
+            store.addAll(ids(2_000, 3_000), vectors.subList(2_000, 3_000), null);
+            assertThat(store.index().size()).isEqualTo(3_000);
+            assertThat(store.search(vectors.get(2_500), 1, VectorStore.Metric.COSINE))
+                .extracting(VectorStore.Match::id).containsExactly("doc-2500");
+        }
+    }
+
+    @Test
+    void shouldRebuildIndexLeftDirtyByCrash() throws IOException {
+        Path directory = tempDir.resolve("docs");
+        List<LlmEmbedding> vectors = randomVectors(1_000, DIMENSION, 7);
+        try (VectorStore store = VectorStore.open(directory, DIMENSION)) {
+            store.addAll(ids(0, 1_000), vectors, null);
+            store.createIndex(VectorStore.Metric.COSINE, 16, 100);
+        }
+        Path meta = directory.resolve("hnsw.meta");
+        Files.writeString(meta, Files.readString(meta).replace("\"clean\":true", "\"clean\":false"));
+
+        try (VectorStore store = VectorStore.open(directory)) {
+            assertThat(store.index().size()).isEqualTo(1_000);
+            assertThat(store.search(vectors.get(42), 1, VectorStore.Metric.COSINE))
+                .extracting(VectorStore.Match::id).containsExactly("doc-42");
+        }
+        assertThat(Files.readString(meta)).contains("\"clean\":true");
+    }
+
+    @Test
+    void shouldLeaveDirtyIndexToWriterWhenReadOnly() throws IOException {
+        Path directory = tempDir.resolve("docs");
+        List<LlmEmbedding> vectors = randomVectors(2_000, DIMENSION, 8);
+        try (VectorStore writer = VectorStore.open(directory, DIMENSION)) {
+            writer.createIndex(VectorStore.Metric.COSINE, 16, 100);
+            writer.addAll(ids(0, 2_000), vectors, null);
+            String dirtyMeta = Files.readString(directory.resolve("hnsw.meta"));
+            assertThat(dirtyMeta).contains("\"clean\":false");
+
+            try (VectorStore reader = VectorStore.openReadOnly(directory)) {
+                assertThat(reader.index()).isNull();
+                assertThat(reader.search(vectors.get(42), 1, VectorStore.Metric.COSINE))
+                    .extracting(VectorStore.Match::id).containsExactly("doc-42");
+            }
+            assertThat(Files.readString(directory.resolve("hnsw.meta"))).isEqualTo(dirtyMeta);
+        }
+
+        try (VectorStore reader = VectorStore.openReadOnly(directory)) {
+            assertThat(reader.index().size()).isEqualTo(2_000);
+            assertThat(reader.search(vectors.get(42), 1, VectorStore.Metric.COSINE))
+                .extracting(VectorStore.Match::id).containsExactly("doc-42");
+        }
+    }
+
+    @Test
+    void shouldFallBackToExactSearchForOtherMetric() throws IOException {
+        try (VectorStore store = VectorStore.open(tempDir.resolve("docs"), 2)) {
+            store.createIndex(VectorStore.Metric.COSINE, 16, 100);
+            store.add("short", new LlmEmbedding(new float[]{1, 0}), null);
+            store.add("long", new LlmEmbedding(new float[]{5, 1}), null);
+
+            assertThat(store.search(new LlmEmbedding(new float[]{1, 0}), 1, VectorStore.Metric.DOT))
+                .extracting(VectorStore.Match::id).containsExactly("long");
+            assertThat(store.search(new LlmEmbedding(new float[]{1, 0}), 1, VectorStore.Metric.COSINE))
+                .extracting(VectorStore.Match::id).containsExactly("short");
+        }
+    }
+}
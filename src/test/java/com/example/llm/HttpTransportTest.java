@@ -0,0 +1,94 @@
+package com.example.llm;
+
+import com.example.llm.provider.AnthropicChatModelWrapper;
+import com.example.llm.provider.OpenAiChatModelWrapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.*;
+
+class HttpTransportTest {
+    private static final String ANTHROPIC_RESPONSE = """
+        {"id":"msg_1","type":"message","role":"assistant","model":"claude-3-5-sonnet","content":[{"type":"text","text":"Hi"}],
+         "stop_reason":"end_turn","usage":{"input_tokens":2,"output_tokens":1}}
+        """;
+    private static final String OPENAI_RESPONSE = """
+        {"id":"chatcmpl-1","object":"chat.completion","created":1,"model":"gpt-4o",
+         "choices":[{"index":0,"message":{"role":"assistant","content":"Hi"},"finish_reason":"stop"}],
+         "usage":{"prompt_tokens":2,"completion_tokens":1,"total_tokens":3}}
+        """;
+
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private String baseUrl;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            byte[] body = (exchange.getRequestURI().getPath().endsWith("/messages") ? ANTHROPIC_RESPONSE : OPENAI_RESPONSE)
+                .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    void shouldReuseOneConnectionAcrossProvidersWithSameSettings() {
+        ModelConfig modelConfig = new ModelConfig(Map.of(
+            "anthropic.api.key", "test-key",
+            "anthropic.base.url", baseUrl + "/",
+            "openai.api.key", "test-key",
+            "openai.base.url", baseUrl,
+            "http.http2", "false",
+            "http.read.timeout.ms", "5000"));
+
+        new OpenAiChatModelWrapper(modelConfig, "gpt-4o").chat(new LlmRequest("One"));
+        new AnthropicChatModelWrapper(modelConfig, "claude-3-5-sonnet").chat(new LlmRequest("Two"));
+        new OpenAiChatModelWrapper(modelConfig, "gpt-4o-mini").chat(new LlmRequest("Three"));
+
+        assertThat(clientPorts).hasSize(3);
+        assertThat(clientPorts).containsOnly(clientPorts.get(0));
+    }
+
+    @Test
+    void shouldApplyPerProviderReadTimeout() {
+        server.removeContext("/");
+        server.createContext("/", exchange -> {
+            try {
+                Thread.sleep(1_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        ModelConfig modelConfig = new ModelConfig(Map.of(
+            "openai.api.key", "test-key",
+            "openai.base.url", baseUrl,
+            "http.openai.read.timeout.ms", "100"));
+
+        assertThatThrownBy(() -> new OpenAiChatModelWrapper(modelConfig, "gpt-4o").chat(new LlmRequest("Slow")))
+            .hasRootCauseInstanceOf(HttpTimeoutException.class);
+    }
+}
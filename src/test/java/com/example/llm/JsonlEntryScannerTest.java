@@ -0,0 +1,54 @@
+package com.example.llm;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonlEntryScannerTest {
+    private final JsonlEntryScanner scanner = new JsonlEntryScanner(new ObjectMapper().getFactory());
+
+    @Test
+    void shouldScanKeysWithoutReadingMessages() throws IOException {
+        assertThat(scanner.scanKey("{\"messages\":[{\"role\":\"user\",\"content\":\"hi\"}],\"conversation_id\":\"abc\"}"))
+                .isEqualTo(new JsonlEntryScanner.EntryKey(JsonlLogIndex.MESSAGE, "abc"));
+        assertThat(scanner.scanKey("{\"id\":\"abc\",\"type\":\"conversation\",\"metadata\":{\"id\":\"nested\"}}"))
+                .isEqualTo(new JsonlEntryScanner.EntryKey(JsonlLogIndex.CONVERSATION, "abc"));
+        assertThat(scanner.scanKey("{\"model\":\"m\",\"prompt\":\"p\",\"response\":\"r\"}").type())
+                .isEqualTo(JsonlLogIndex.LEGACY);
+        assertThat(scanner.scanKey("{\"unrelated\":true}").type())
+                .isEqualTo(JsonlLogIndex.UNKNOWN);
+    }
+
+    @Test
+    void shouldReadMessagesAsHistoryLines() throws IOException {
+        List<String> history = new ArrayList<>();
+        scanner.readMessages("{\"conversation_id\":\"abc\",\"messages\":[{\"role\":\"user\",\"content\":\"Hi\"},"
+                + "{\"content\":\"Hello\",\"role\":\"assistant\",\"extra\":{\"a\":1}}]}", history);
+
+        assertThat(history).containsExactly("user: Hi", "assistant: Hello");
+    }
+
+    @Test
+    void shouldBindLegacyEntryIntoConversation() throws IOException {
+        Conversation conv = scanner.readConversation("{\"timestamp\":\"2023-01-01T00:00:00Z\",\"model\":\"gpt-4\","
+                + "\"prompt\":\"p\",\"response\":\"r\",\"total_tokens\":30,\"tools\":[{\"name\":\"t\"}]}");
+
+        assertThat(conv).isNotNull();
+        assertThat(conv.getId()).isZero();
+        assertThat(conv.getTimestamp()).isEqualTo(Instant.parse("2023-01-01T00:00:00Z"));
+        assertThat(conv.getPrompt()).isEqualTo("p");
+        assertThat(conv.getTotalTokens()).isEqualTo(30);
+        assertThat(conv.getPromptTokens()).isNull();
+    }
+
+    @Test
+    void shouldSkipMessageEntriesWhenBindingConversations() throws IOException {
+        assertThat(scanner.readConversation("{\"conversation_id\":\"abc\",\"type\":\"message\",\"messages\":[]}")).isNull();
+    }
+}
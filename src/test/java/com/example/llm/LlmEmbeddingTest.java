@@ -0,0 +1,63 @@
+package com.example.llm;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+class LlmEmbeddingTest {
+    @Test
+    void shouldConvertToAndFromListAndFormatLikeIt() {
+        List<Float> values = List.of(0.5f, -1.25f, 3f);
+
+        LlmEmbedding embedding = LlmEmbedding.of(values);
+
+        assertThat(embedding.vector()).containsExactly(0.5f, -1.25f, 3f);
+        assertThat(embedding.asList()).isEqualTo(values);
+        assertThat(embedding.toString()).isEqualTo(values.toString());
+        assertThat(embedding).isEqualTo(new LlmEmbedding(new float[]{0.5f, -1.25f, 3f}));
+    }
+
+    @Test
+    void shouldComputeDotProductForAnyDimension() {
+        Random random = new Random(42);
+        for (int dimension : new int[]{1, 3, 4, 7, 1536}) {
+            float[] a = new float[dimension];
+            float[] b = new float[dimension];
+            double expected = 0;
+            for (int i = 0; i < dimension; i++) {
+                a[i] = (float) random.nextGaussian();
+                b[i] = (float) random.nextGaussian();
+                expected += a[i] * b[i];
+            }
+
+            assertThat(new LlmEmbedding(a).dot(new LlmEmbedding(b))).isCloseTo(expected, within(1e-3));
+        }
+    }
+
+    @Test
+    void shouldNormalizeToUnitLength() {
+        LlmEmbedding embedding = new LlmEmbedding(new float[]{3f, 4f});
+
+        assertThat(embedding.normalized().vector()).containsExactly(0.6f, 0.8f);
+        assertThat(embedding.cosineSimilarity(new LlmEmbedding(new float[]{6f, 8f}))).isCloseTo(1.0, within(1e-6));
+        assertThat(new LlmEmbedding(new float[]{0f, 0f}).normalized().vector()).containsExactly(0f, 0f);
+    }
+
+    @Test
+    void shouldRejectMismatchedDimensions() {
+        assertThatThrownBy(() -> new LlmEmbedding(new float[2]).dot(new LlmEmbedding(new float[3])))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldDeriveVectorsFromListApiByDefault() {
+        LlmEmbeddingModel model = text -> List.of((float) text.length(), 1f);
+
+        assertThat(model.embedVector("abc")).isEqualTo(new LlmEmbedding(new float[]{3f, 1f}));
+        assertThat(model.embedAllVectors(List.of("a", "bb")))
+            .containsExactly(new LlmEmbedding(new float[]{1f, 1f}), new LlmEmbedding(new float[]{2f, 1f}));
+    }
+}
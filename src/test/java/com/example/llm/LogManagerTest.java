@@ -215,6 +215,286 @@ class LogManagerTest {
         logManager.close();
     }
     
+    @Test
+    void shouldLogConversationToJsonlWithWriteBehind() throws IOException {
+        File logFile = tempDir.resolve("test.jsonl").toFile();
+        LogManager logManager = new LogManager("jsonl", logFile.getAbsolutePath(),
+                new ModelConfig(Map.of("log.async", "true", "log.async.fsync.entries", "10")));
+
+        for (int i = 0; i < 25; i++) {
+            logManager.logConversation("gpt-4", "Prompt " + i, "Response " + i, 1, 1, 2, 10L, null, null, null);
+        }
+
+        List<Conversation> conversations = logManager.getConversations(100, 0);
+        assertThat(conversations).hasSize(25);
+        assertThat(logManager.getDroppedLogEntries()).isZero();
+
+        logManager.close();
+        assertThat(Files.readAllLines(logFile.toPath())).hasSize(25);
+    }
+    
+    @Test
+    void shouldMaintainJsonlIndexAcrossRestarts() throws IOException {
+        File logFile = tempDir.resolve("test.jsonl").toFile();
+        LogManager logManager = new LogManager("jsonl", logFile.getAbsolutePath());
+        
+        String conversationId = logManager.startConversation("gpt-4", "Hi", "Hello", null, null, null, null, null, null, null);
+        logManager.continueConversation(conversationId, "How are you?", "Fine", null, null, null, null);
+        logManager.close();
+        
+        assertThat(new File(logFile.getAbsolutePath() + ".idx")).exists();
+        
+        // Another writer appends to the log while the index is closed
+        Files.writeString(logFile.toPath(),
+            "{\"conversation_id\":\"" + conversationId + "\",\"type\":\"message\",\"messages\":[{\"role\":\"user\",\"content\":\"Bye\"}]}\n",
+            java.nio.file.StandardOpenOption.APPEND);
+        
+        logManager = new LogManager("jsonl", logFile.getAbsolutePath());
+        assertThat(logManager.getConversationHistory(conversationId, 10))
+            .containsExactly("user: How are you?", "assistant: Fine", "user: Bye");
+        logManager.close();
+    }
+    
+    @Test
+    void shouldRebuildJsonlIndexWhenAnotherWriterInterleaves() throws IOException {
+        File logFile = tempDir.resolve("test.jsonl").toFile();
+        LogManager logManager = new LogManager("jsonl", logFile.getAbsolutePath());
+        logManager.logConversation("gpt-4", "First", "Response", null, null, null, null, null, null, null);
+        
+        // Another process appends between two of this manager's writes
+        Files.writeString(logFile.toPath(),
+            "{\"timestamp\":\"2024-01-01T00:00:00Z\",\"model\":\"gpt-4\",\"prompt\":\"Other\",\"response\":\"Response\"}\n",
+            java.nio.file.StandardOpenOption.APPEND);
+        logManager.logConversation("gpt-4", "Second", "Response", null, null, null, null, null, null, null);
+        
+        assertThat(logManager.getConversations(10, 0)).extracting(Conversation::getPrompt)
+            .containsExactly("First", "Other", "Second");
+        logManager.close();
+    }
+    
+    @Test
+    void shouldRebuildJsonlIndexWhenLogIsTruncated() throws IOException {
+        File logFile = tempDir.resolve("test.jsonl").toFile();
+        LogManager logManager = new LogManager("jsonl", logFile.getAbsolutePath());
+        logManager.logConversation("gpt-4", "Prompt", "Response", null, null, null, null, null, null, null);
+        logManager.close();
+        
+        Files.writeString(logFile.toPath(), "");
+        
+        logManager = new LogManager("jsonl", logFile.getAbsolutePath());
+        assertThat(logManager.getConversations(10, 0)).isEmpty();
+        logManager.logConversation("gpt-4", "Again", "Response", null, null, null, null, null, null, null);
+        assertThat(logManager.getConversations(10, 0)).extracting(Conversation::getPrompt).containsExactly("Again");
+        logManager.close();
+    }
+    
+    @Test
+    void shouldRebuildJsonlIndexWhenLogIsReplacedByALongerOne() throws IOException {
+        File logFile = tempDir.resolve("test.jsonl").toFile();
+        LogManager logManager = new LogManager("jsonl", logFile.getAbsolutePath());
+        logManager.logConversation("gpt-4", "Old", "Response", null, null, null, null, null, null, null);
+        logManager.close();
+        
+        // The log is rotated and the new one has grown past the old index's end
+        StringBuilder rotated = new StringBuilder();
+        for (int i = 0; i < 3; i++) {
+            rotated.append("{\"timestamp\":\"2024-01-0").append(i + 1)
+                .append("T00:00:00Z\",\"model\":\"gpt-4\",\"prompt\":\"New ").append(i)
+                .append("\",\"response\":\"Response\"}\n");
+        }
+        Files.writeString(logFile.toPath(), rotated.toString());
+        
+        logManager = new LogManager("jsonl", logFile.getAbsolutePath());
+        assertThat(logManager.getConversations(10, 0)).extracting(Conversation::getPrompt)
+            .containsExactly("New 0", "New 1", "New 2");
+        logManager.close();
+    }
+    
+    @Test
+    void shouldPageJsonlFromEndWithoutIndex() {
+        File logFile = tempDir.resolve("test.jsonl").toFile();
+        LogManager logManager = new LogManager("jsonl", logFile.getAbsolutePath(),
+                new ModelConfig(Map.of("log.index", "false")));
+        
+        for (int i = 0; i < 5; i++) {
+            logManager.logConversation("model-" + i, "Prompt " + i, "Response " + i, null, null, null, null, null, null, null);
+        }
+        
+        assertThat(new File(logFile.getAbsolutePath() + ".idx")).doesNotExist();
+        assertThat(logManager.getConversations(2, 1))
+            .extracting(Conversation::getPrompt)
+            .containsExactly("Prompt 2", "Prompt 3");
+        
+        logManager.close();
+    }
+    
+    @Test
+    void shouldLogToH2FromConcurrentThreads() throws Exception {
+        File dbFile = tempDir.resolve("test.db").toFile();
+        LogManager logManager = new LogManager("h2", dbFile.getAbsolutePath(),
+                new ModelConfig(Map.of("log.h2.pool.size", "4")));
+        
+        java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(8);
+        List<java.util.concurrent.Future<?>> futures = new java.util.ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            int n = i;
+            futures.add(executor.submit(() -> logManager.logConversation(
+                "model-" + n, "Prompt " + n, "Response " + n, null, null, null, null, null, null, null)));
+        }
+        for (java.util.concurrent.Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        
+        assertThat(logManager.getConversations(100, 0)).hasSize(50);
+        logManager.close();
+    }
+    
+    @Test
+    void shouldWriteExchangesTransactionallyToH2() {
+        File dbFile = tempDir.resolve("test.db").toFile();
+        LogManager logManager = new LogManager("h2", dbFile.getAbsolutePath());
+        
+        logManager.logConversation("gpt-4", "Hi", "Hello", null, null, null, null, null, null, null);
+        String conversationId = String.valueOf(logManager.getConversations(1, 0).get(0).getId());
+        logManager.continueConversation(conversationId, "How are you?", "Fine", null, null, null, null);
+        
+        assertThat(logManager.getConversationHistory(conversationId, 10))
+            .containsExactly("user: How are you?", "assistant: Fine");
+        
+        // A message for a missing conversation violates the foreign key and must leave nothing behind
+        assertThatThrownBy(() -> logManager.continueConversation("999999", "Lost", "Lost", null, null, null, null))
+            .isInstanceOf(RuntimeException.class);
+        assertThat(logManager.getConversationHistory("999999", 10)).isEmpty();
+        
+        logManager.close();
+    }
+    
+    @Test
+    void shouldGroupCommitConcurrentH2Writes() throws Exception {
+        File dbFile = tempDir.resolve("test.db").toFile();
+        LogManager logManager = new LogManager("h2", dbFile.getAbsolutePath(),
+                new ModelConfig(Map.of("log.h2.group.commit.ms", "5", "log.h2.group.commit.size", "16")));
+        
+        logManager.logConversation("gpt-4", "Hi", "Hello", null, null, null, null, null, null, null);
+        String conversationId = String.valueOf(logManager.getConversations(1, 0).get(0).getId());
+        
+        java.util.concurrent.ExecutorService executor = java.util.concurrent.Executors.newFixedThreadPool(8);
+        List<java.util.concurrent.Future<?>> futures = new java.util.ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            futures.add(executor.submit(() -> logManager.continueConversation(
+                conversationId, "Prompt", "Response", null, null, null, null)));
+        }
+        // One failing write in a group must not fail the writes committed with it
+        futures.add(executor.submit(() -> logManager.continueConversation(
+            "999999", "Lost", "Lost", null, null, null, null)));
+        
+        int failures = 0;
+        for (java.util.concurrent.Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (java.util.concurrent.ExecutionException e) {
+                failures++;
+            }
+        }
+        executor.shutdown();
+        
+        assertThat(failures).isEqualTo(1);
+        assertThat(logManager.getConversationHistory(conversationId, 1000)).hasSize(80);
+        logManager.close();
+    }
+    
+    @Test
+    void shouldPageH2ConversationsByKeyset() {
+        File dbFile = tempDir.resolve("test.db").toFile();
+        LogManager logManager = new LogManager("h2", dbFile.getAbsolutePath());
+        
+        for (int i = 0; i < 7; i++) {
+            logManager.logConversation("gpt-4", "Prompt " + i, "Response " + i, null, null, null, null, null, null, null);
+        }
+        
+        List<Conversation> firstPage = logManager.getConversations(3, 0);
+        assertThat(firstPage).extracting(Conversation::getPrompt).containsExactly("Prompt 6", "Prompt 5", "Prompt 4");
+        
+        List<Conversation> secondPage = logManager.getConversationsBefore(firstPage.get(2).getId(), 3);
+        assertThat(secondPage).extracting(Conversation::getPrompt).containsExactly("Prompt 3", "Prompt 2", "Prompt 1");
+        assertThat(secondPage).usingRecursiveFieldByFieldElementComparator().isEqualTo(logManager.getConversations(3, 3));
+        
+        assertThat(logManager.getConversationsBefore(secondPage.get(2).getId(), 3))
+            .extracting(Conversation::getPrompt).containsExactly("Prompt 0");
+        logManager.close();
+    }
+    
+    @Test
+    void shouldReportNoKeysetPagesForJsonl() {
+        File logFile = tempDir.resolve("test.jsonl").toFile();
+        LogManager logManager = new LogManager("jsonl", logFile.getAbsolutePath());
+        logManager.logConversation("gpt-4", "Prompt", "Response", null, null, null, null, null, null, null);
+        
+        assertThat(logManager.hasConversationIds()).isFalse();
+        assertThat(logManager.getConversationsBefore(1, 10)).isEmpty();
+        logManager.close();
+    }
+    
+    @Test
+    void shouldMigrateExistingH2DatabaseOnce() throws Exception {
+        File dbFile = tempDir.resolve("test.db").toFile();
+        String jdbcUrl = "jdbc:h2:file:" + dbFile.getAbsolutePath() + ";AUTO_SERVER=TRUE";
+        
+        // A database created before schema versioning existed
+        try (java.sql.Connection connection = java.sql.DriverManager.getConnection(jdbcUrl, "sa", "");
+             java.sql.Statement statement = connection.createStatement()) {
+            for (String sql : H2SchemaMigrator.MIGRATIONS.get(0).statements()) {
+                statement.execute(sql);
+            }
+            statement.execute("INSERT INTO conversations (model, prompt, response) VALUES ('gpt-4', 'Old', 'Row')");
+        }
+        
+        new LogManager("h2", dbFile.getAbsolutePath()).close();
+        LogManager logManager = new LogManager("h2", dbFile.getAbsolutePath());
+        assertThat(logManager.getConversations(10, 0)).extracting(Conversation::getPrompt).containsExactly("Old");
+        logManager.close();
+        
+        try (java.sql.Connection connection = java.sql.DriverManager.getConnection(jdbcUrl, "sa", "");
+             java.sql.Statement statement = connection.createStatement();
+             java.sql.ResultSet rs = statement.executeQuery(
+                 "SELECT version FROM schema_version ORDER BY version")) {
+            List<Integer> versions = new java.util.ArrayList<>();
+            while (rs.next()) {
+                versions.add(rs.getInt(1));
+            }
+            assertThat(versions).containsExactly(1, 2, 3);
+        }
+        try (java.sql.Connection connection = java.sql.DriverManager.getConnection(jdbcUrl, "sa", "");
+             java.sql.Statement statement = connection.createStatement();
+             java.sql.ResultSet rs = statement.executeQuery(
+                 "EXPLAIN SELECT id FROM conversations ORDER BY timestamp DESC, id DESC LIMIT 10")) {
+            rs.next();
+            assertThat(rs.getString(1)).containsIgnoringCase("idx_conversations_timestamp").contains("index sorted");
+        }
+    }
+    
+    @Test
+    void shouldLogConversationsInBulk() throws IOException {
+        List<LogManager.LoggedCall> calls = List.of(
+            new LogManager.LoggedCall("gpt-4", "Prompt 0", "Response 0", 1, 2, 3, 10L, null),
+            new LogManager.LoggedCall("gpt-4", "Prompt 1", "Response 1", null, null, null, null, Map.of("batch_id", "b1")));
+        
+        LogManager h2LogManager = new LogManager("h2", tempDir.resolve("test.db").toFile().getAbsolutePath());
+        h2LogManager.logConversations(calls);
+        assertThat(h2LogManager.getConversations(10, 0)).extracting(Conversation::getPrompt)
+            .containsExactly("Prompt 1", "Prompt 0");
+        h2LogManager.close();
+        
+        File logFile = tempDir.resolve("test.jsonl").toFile();
+        LogManager jsonlLogManager = new LogManager("jsonl", logFile.getAbsolutePath());
+        jsonlLogManager.logConversations(calls);
+        assertThat(Files.readAllLines(logFile.toPath())).hasSize(2);
+        assertThat(jsonlLogManager.getConversations(10, 0)).extracting(Conversation::getPrompt)
+            .containsExactlyInAnyOrder("Prompt 0", "Prompt 1");
+        jsonlLogManager.close();
+    }
+    
     @Test
     void shouldCloseResourcesProperly() {
         File dbFile = tempDir.resolve("test.db").toFile();
@@ -5,13 +5,19 @@ import com.example.llm.provider.OpenAiChatModelWrapper;
 import com.example.llm.provider.OpenAiLlmEmbeddingModelWrapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 class ModelRegistryTest {
+    @TempDir
+    Path tempDir;
 
     private ModelRegistry modelRegistry;
     private ModelConfig modelConfig;
@@ -78,4 +84,66 @@ class ModelRegistryTest {
                 .isInstanceOf(IllegalArgumentException.class)
                 .hasMessage("Embedding provider not found: unknown");
     }
+
+    @Test
+    void shouldReuseChatModelInstances() {
+        AtomicInteger builds = new AtomicInteger();
+        modelRegistry.registerChatModelFactory("counting", (config, name) -> {
+            builds.incrementAndGet();
+            return new OllamaChatModelWrapper(config, name);
+        });
+
+        LlmChatModel first = modelRegistry.getModel("counting", "a");
+        assertThat(modelRegistry.getModel("counting", "a")).isSameAs(first);
+        assertThat(modelRegistry.getModel("counting", "b")).isNotSameAs(first);
+        assertThat(builds).hasValue(2);
+    }
+
+    @Test
+    void shouldRebuildModelAfterInvalidation() {
+        LlmChatModel first = modelRegistry.getModel("ollama", "llama2");
+
+        modelRegistry.invalidate("ollama", "llama2");
+        LlmChatModel second = modelRegistry.getModel("ollama", "llama2");
+        modelRegistry.invalidateAll();
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(modelRegistry.getModel("ollama", "llama2")).isNotSameAs(second);
+    }
+
+    @Test
+    void shouldDropCachedModelsWhenFactoryIsReplaced() {
+        LlmChatModel original = modelRegistry.getModel("ollama", "llama2");
+        LlmChatModel replacement = new OllamaChatModelWrapper(modelConfig, "llama2");
+
+        modelRegistry.registerChatModelFactory("ollama", (config, name) -> replacement);
+
+        assertThat(modelRegistry.getModel("ollama", "llama2")).isSameAs(replacement).isNotSameAs(original);
+    }
+
+    @Test
+    void shouldCacheEmbeddingModelsSeparatelyFromChatModels() {
+        LlmEmbeddingModel embeddingModel = modelRegistry.getEmbeddingModel("openai", "text-embedding-3-small");
+
+        assertThat(modelRegistry.getEmbeddingModel("openai", "text-embedding-3-small")).isSameAs(embeddingModel);
+        assertThat(modelRegistry.getModel("openai", "text-embedding-3-small")).isInstanceOf(OpenAiChatModelWrapper.class);
+    }
+
+    @Test
+    void shouldDropLlmCachingDecoratorsWhenRegistryIsInvalidated() throws IOException {
+        Llm plain = new Llm(new ModelRegistry(new ModelConfig(Map.of("cache.exact.enabled", "false"))),
+            new AliasManager(tempDir.toFile()));
+        assertThat(plain.getModel("ollama/llama2")).isInstanceOf(OllamaChatModelWrapper.class);
+
+        ModelRegistry registry = new ModelRegistry(new ModelConfig(Map.of(
+            "cache.exact.enabled", "false",
+            "cache.semantic.embedding.model", "openai:text-embedding-3-small",
+            "openai.api.key", "test")));
+        Llm llm = new Llm(registry, new AliasManager(tempDir.toFile()));
+        LlmChatModel cached = llm.getModel("ollama/llama2");
+
+        assertThat(cached).isInstanceOf(SemanticCachingChatModel.class).isSameAs(llm.getModel("ollama/llama2"));
+        registry.invalidate("ollama", "llama2");
+        assertThat(llm.getModel("ollama/llama2")).isNotSameAs(cached);
+    }
 }
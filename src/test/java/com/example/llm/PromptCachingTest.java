@@ -0,0 +1,117 @@
+package com.example.llm;
+
+import com.example.llm.provider.AnthropicChatModelWrapper;
+import com.example.llm.provider.OpenAiChatModelWrapper;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.*;
+
+class PromptCachingTest {
+    private static final String ANTHROPIC_RESPONSE = """
+        {"id":"msg_1","type":"message","role":"assistant","model":"claude-3-5-sonnet","content":[{"type":"text","text":"Hi"}],
+         "stop_reason":"end_turn","usage":{"input_tokens":20,"output_tokens":3,"cache_creation_input_tokens":0,"cache_read_input_tokens":1500}}
+        """;
+    private static final String OPENAI_RESPONSE = """
+        {"id":"chatcmpl-1","object":"chat.completion","created":1,"model":"gpt-4o",
+         "choices":[{"index":0,"message":{"role":"assistant","content":"Hi"},"finish_reason":"stop"}],
+         "usage":{"prompt_tokens":2000,"completion_tokens":3,"total_tokens":2003,"prompt_tokens_details":{"cached_tokens":1920}}}
+        """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final List<JsonNode> requestBodies = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private ModelConfig modelConfig;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            requestBodies.add(objectMapper.readTree(exchange.getRequestBody()));
+            byte[] body = (exchange.getRequestURI().getPath().endsWith("/messages") ? ANTHROPIC_RESPONSE : OPENAI_RESPONSE)
+                .getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1";
+        modelConfig = new ModelConfig(Map.of(
+            "anthropic.api.key", "test-key",
+            "anthropic.base.url", baseUrl + "/",
+            "openai.api.key", "test-key",
+            "openai.base.url", baseUrl));
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    void shouldSendAnthropicCacheBreakpointForCachedSystemPrefix() {
+        LlmChatModel model = new AnthropicChatModelWrapper(modelConfig, "claude-3-5-sonnet");
+
+        LlmResponse response = model.chat(new LlmRequest("Question", null, null,
+            List.of(LlmMessage.system("A large fragment").cached())));
+
+        JsonNode system = requestBodies.get(0).get("system");
+        assertThat(system).hasSize(1);
+        assertThat(system.get(0).get("text").asText()).isEqualTo("A large fragment");
+        assertThat(system.get(0).get("cache_control").get("type").asText()).isEqualTo("ephemeral");
+        assertThat(response.cachedTokens()).isEqualTo(1500);
+        assertThat(response.promptTokens()).isEqualTo(20);
+    }
+
+    @Test
+    void shouldNotSendAnthropicCacheControlWithoutBreakpoint() {
+        LlmChatModel model = new AnthropicChatModelWrapper(modelConfig, "claude-3-5-sonnet");
+
+        model.chat(new LlmRequest("Question", null, null, List.of(LlmMessage.system("One-off instructions"))));
+
+        assertThat(requestBodies.get(0).toString()).doesNotContain("cache_control");
+    }
+
+    @Test
+    void shouldReportOpenAiCachedTokens() {
+        OpenAiChatModelWrapper model = new OpenAiChatModelWrapper(modelConfig, "gpt-4o");
+
+        LlmResponse response = model.chat(new LlmRequest("Question"));
+
+        assertThat(model.isStreamingModelBuilt()).isFalse();
+        assertThat(response.cachedTokens()).isEqualTo(1920);
+        assertThat(response.totalTokens()).isEqualTo(2003);
+        assertThat(requestBodies.get(0).get("messages").get(0).get("content").asText()).isEqualTo("Question");
+    }
+
+    @Test
+    void shouldFailOnMissingApiKeyBeforeBuildingClients() {
+        assertThatThrownBy(() -> new AnthropicChatModelWrapper(new ModelConfig(Map.of()), "claude-3-5-sonnet"))
+            .hasMessageContaining("ANTHROPIC_API_KEY");
+    }
+
+    @Test
+    void shouldSendFragmentAsCachedSystemMessage() {
+        LlmRequest request = Cli.requestFor("Fragment", "Prompt", null, List.of(),
+            List.of(LlmMessage.user("Hi"), LlmMessage.assistant("Hello")));
+
+        assertThat(request.prompt()).isEqualTo("Prompt");
+        assertThat(request.messages()).containsExactly(
+            LlmMessage.system("Fragment").cached(),
+            LlmMessage.user("Hi"),
+            LlmMessage.assistant("Hello").cached());
+        assertThat(Cli.requestFor("Fragment", null, null, List.of(), List.of()).prompt()).isEqualTo("Fragment");
+    }
+}
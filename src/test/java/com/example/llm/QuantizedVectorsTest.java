@@ -0,0 +1,110 @@
+package com.example.llm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static com.example.llm.VectorTestData.*;
+import static org.assertj.core.api.Assertions.*;
+
+class QuantizedVectorsTest {
+    @TempDir
+    Path tempDir;
+
+    private static final int DIMENSION = 64;
+
+    private static List<LlmEmbedding> clusteredVectors(int count, long seed) {
+        return VectorTestData.clusteredVectors(count, DIMENSION, 50, 0.5f, seed);
+    }
+
+    @Test
+    void shouldApproximateDotProductWithInt8Codes() {
+        List<LlmEmbedding> vectors = clusteredVectors(1_000, 1);
+        ScalarQuantizer quantizer = ScalarQuantizer.train(vectors.stream().map(LlmEmbedding::vector).toList());
+        LlmEmbedding query = clusteredVectors(1, 2).get(0);
+        VectorQuantizer.Scorer scorer = quantizer.scorer(query.vector());
+        byte[] code = new byte[quantizer.codeSize()];
+
+        assertThat(quantizer.codeSize()).isEqualTo(DIMENSION);
+        for (LlmEmbedding vector : vectors.subList(0, 100)) {
+            quantizer.encode(vector.vector(), code);
+            double exact = query.dot(vector);
+            assertThat(scorer.dot(code)).isCloseTo(exact, within(0.01 * Math.sqrt(query.dot(query) * vector.dot(vector))));
+        }
+    }
+
+    @Test
+    void shouldKeepRecallWithInt8AndRerank() throws IOException {
+        try (VectorStore store = VectorStore.open(tempDir.resolve("docs"), DIMENSION)) {
+            store.addAll(ids(0, 5_000), clusteredVectors(5_000, 3), null);
+            store.createQuantization(VectorQuantizer.Kind.INT8, 0);
+
+            assertThat(recall(store, clusteredVectors(50, 4), 10, VectorStore.Metric.COSINE)).isGreaterThan(0.95);
+        }
+    }
+
+    @Test
+    void shouldKeepRecallWithProductQuantizationAndRerank() throws IOException {
+        try (VectorStore store = VectorStore.open(tempDir.resolve("docs"), DIMENSION)) {
+            store.addAll(ids(0, 5_000), clusteredVectors(5_000, 5), null);
+            QuantizedVectors quantized = store.createQuantization(VectorQuantizer.Kind.PQ, 0);
+
+            assertThat(quantized.quantizer().codeSize()).isEqualTo(DIMENSION / 4);
+            assertThat(recall(store, clusteredVectors(50, 6), 10, VectorStore.Metric.COSINE)).isGreaterThan(0.9);
+        }
+    }
+
+    @Test
+    void shouldReopenCodesAndEncodeNewVectors() throws IOException {
+        Path directory = tempDir.resolve("docs");
+        List<LlmEmbedding> vectors = clusteredVectors(3_000, 7);
+        try (VectorStore store = VectorStore.open(directory, DIMENSION)) {
+            store.addAll(ids(0, 2_000), vectors.subList(0, 2_000), null);
+            store.createQuantization(VectorQuantizer.Kind.PQ, 8);
+        }
+
+        try (VectorStore store = VectorStore.open(directory)) {
+            assertThat(store.quantized().quantizer().codeSize()).isEqualTo(8);
+            store.addAll(ids(2_000, 3_000), vectors.subList(2_000, 3_000), null);
+
+            assertThat(store.quantized().size()).isEqualTo(3_000);
+            assertThat(store.search(vectors.get(2_500), 1, VectorStore.Metric.COSINE))
+                .extracting(VectorStore.Match::id).containsExactly("doc-2500");
+        }
+    }
+
+    @Test
+    void shouldScoreVectorsNotYetEncodedWhenReadOnly() throws IOException {
+        Path directory = tempDir.resolve("docs");
+        List<LlmEmbedding> vectors = clusteredVectors(2_000, 8);
+        try (VectorStore store = VectorStore.open(directory, DIMENSION)) {
+            store.addAll(ids(0, 2_000), vectors, null);
+            store.createQuantization(VectorQuantizer.Kind.INT8, 0);
+        }
+        // A writer has appended the last 100 vectors but not yet their codes
+        try (FileChannel codes = FileChannel.open(directory.resolve("codes.u8"), StandardOpenOption.WRITE)) {
+            codes.truncate(1_900L * DIMENSION);
+        }
+
+        try (VectorStore store = VectorStore.openReadOnly(directory)) {
+            assertThat(store.quantized().size()).isEqualTo(1_900);
+            assertThat(store.search(vectors.get(1_950), 1, VectorStore.Metric.COSINE))
+                .extracting(VectorStore.Match::id).containsExactly("doc-1950");
+        }
+        assertThat(Files.size(directory.resolve("codes.u8"))).isEqualTo(1_900L * DIMENSION);
+    }
+
+    @Test
+    void shouldRequireVectorsToTrainOn() throws IOException {
+        try (VectorStore store = VectorStore.open(tempDir.resolve("docs"), DIMENSION)) {
+            assertThatThrownBy(() -> store.createQuantization(VectorQuantizer.Kind.INT8, 0))
+                .isInstanceOf(IllegalStateException.class);
+        }
+    }
+}
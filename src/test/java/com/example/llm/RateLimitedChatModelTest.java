@@ -0,0 +1,174 @@
+package com.example.llm;
+
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RateLimitedChatModelTest {
+    private final AtomicLong now = new AtomicLong();
+
+    /**
+     * Answers after 10ms, and rejects with a rate-limit error while more than {@code ceiling}
+     * requests are in flight, like a provider enforcing a concurrency cap.
+     */
+    private static LlmChatModel providerWithCeiling(int ceiling, AtomicInteger rejections) {
+        AtomicInteger inFlight = new AtomicInteger();
+        return new LlmChatModel() {
+            @Override
+            public LlmResponse chat(LlmRequest llmRequest) {
+                try {
+                    if (inFlight.incrementAndGet() > ceiling) {
+                        rejections.incrementAndGet();
+                        throw new RuntimeException("Error calling API", new RateLimitException("429 Too Many Requests"));
+                    }
+                    Thread.sleep(10);
+                    return new LlmResponse("ok", 10, 10, 20);
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+            }
+
+            @Override
+            public void streamChat(LlmRequest llmRequest, StreamingChatResponseHandler handler) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Test
+    void shouldRefillTokenBucketContinuously() {
+        TokenBucket bucket = new TokenBucket(60, now::get);
+
+        assertThat(bucket.reserve(60)).isZero();
+        assertThat(bucket.reserve(1)).isEqualTo(TimeUnit.SECONDS.toNanos(1));
+
+        now.addAndGet(TimeUnit.SECONDS.toNanos(3));
+        assertThat(bucket.available()).isEqualTo(2.0, within(1e-9));
+
+        bucket.adjust(100);
+        assertThat(bucket.available()).isEqualTo(60.0, within(1e-9));
+    }
+
+    @Test
+    void shouldIncreaseAdditivelyAndHalveOncePerRound() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 100, 0);
+
+        for (int i = 0; i < 4; i++) {
+            limit.onSuccess(limit.acquire());
+        }
+        assertThat(limit.getLimit()).isEqualTo(4);
+        for (int i = 0; i < 8; i++) {
+            limit.onSuccess(limit.acquire());
+        }
+        assertThat(limit.getLimit()).isEqualTo(6);
+
+        long first = limit.acquire();
+        long second = limit.acquire();
+        limit.onRateLimited(first);
+        limit.onRateLimited(second);
+
+        assertThat(limit.getLimit()).isEqualTo(3);
+        assertThat(limit.getDecreaseCount()).isEqualTo(1);
+        assertThat(limit.getInFlight()).isZero();
+    }
+
+    @Test
+    void shouldTreatSlowResponsesAsCongestion() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 1, 100, TimeUnit.MILLISECONDS.toNanos(5));
+
+        long start = limit.acquire();
+        Thread.sleep(20);
+        limit.onSuccess(start);
+
+        assertThat(limit.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void shouldConvergeBelowProviderCeilingWithoutRetryStorm() throws Exception {
+        AtomicInteger rejections = new AtomicInteger();
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(32, 1, 64, 0);
+        RateLimitedChatModel model = new RateLimitedChatModel(providerWithCeiling(6, rejections), null, null, limit);
+
+        ExecutorService executor = Executors.newFixedThreadPool(32);
+        List<Future<?>> futures = new ArrayList<>();
+        AtomicInteger succeeded = new AtomicInteger();
+        for (int i = 0; i < 1_000; i++) {
+            futures.add(executor.submit(() -> {
+                try {
+                    model.chat(new LlmRequest("Hello"));
+                    succeeded.incrementAndGet();
+                } catch (RuntimeException e) {
+                    assertThat(ProviderErrors.isRateLimited(e)).isTrue();
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(model.getRateLimitedCount()).isEqualTo(rejections.get());
+        assertThat(rejections.get()).isLessThan(200);
+        assertThat(succeeded.get()).isGreaterThan(800);
+        assertThat(limit.getLimit()).isLessThanOrEqualTo(12);
+    }
+
+    @Test
+    void shouldSettleTokenReservationAgainstReportedUsage() {
+        TokenBucket tokens = new TokenBucket(1_000);
+        RateLimitedChatModel model = new RateLimitedChatModel(providerWithCeiling(1, new AtomicInteger()),
+            new TokenBucket(100), tokens, null);
+
+        model.chat(new LlmRequest("x".repeat(400)));
+
+        // Reserved 100 estimated tokens, reported usage was 20
+        assertThat(tokens.available()).isBetween(980.0, 1_000.0);
+    }
+
+    @Test
+    void shouldOnlyDecorateWhenLimitsAreConfigured() {
+        LlmChatModel delegate = providerWithCeiling(1, new AtomicInteger());
+
+        assertThat(RateLimitedChatModel.decorate(new ModelConfig(Map.of()), "openai", "gpt-4o", delegate))
+            .isSameAs(delegate);
+        assertThat(RateLimitedChatModel.decorate(new ModelConfig(Map.of("ratelimit.openai.rpm", "500")),
+            "openai", "gpt-4o", delegate)).isInstanceOf(RateLimitedChatModel.class);
+        LlmChatModel adaptive = RateLimitedChatModel.decorate(new ModelConfig(Map.of(
+            "ratelimit.openai/gpt-4o.adaptive", "true",
+            "ratelimit.openai.concurrency.max", "4")), "openai", "gpt-4o", delegate);
+        assertThat(((RateLimitedChatModel) adaptive).getConcurrencyLimit().getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void shouldShareProviderLimitsAcrossModelsButNotModelLimits() {
+        ModelConfig config = new ModelConfig(Map.of(
+            "ratelimit.openai.rpm", "500",
+            "ratelimit.openai.adaptive", "true",
+            "ratelimit.openai/gpt-4o-mini.rpm", "100"));
+        RateLimitedChatModel.ProviderLimits shared = new RateLimitedChatModel.ProviderLimits();
+        LlmChatModel delegate = providerWithCeiling(1, new AtomicInteger());
+
+        RateLimitedChatModel first = (RateLimitedChatModel) RateLimitedChatModel.decorate(config, "openai", "gpt-4o", delegate, shared);
+        RateLimitedChatModel second = (RateLimitedChatModel) RateLimitedChatModel.decorate(config, "openai", "o3", delegate, shared);
+        RateLimitedChatModel own = (RateLimitedChatModel) RateLimitedChatModel.decorate(config, "openai", "gpt-4o-mini", delegate, shared);
+
+        assertThat(second.getRequestBucket()).isSameAs(first.getRequestBucket());
+        assertThat(second.getConcurrencyLimit()).isSameAs(first.getConcurrencyLimit());
+        assertThat(own.getRequestBucket()).isNotSameAs(first.getRequestBucket());
+        assertThat(own.getConcurrencyLimit()).isSameAs(first.getConcurrencyLimit());
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.llm;
+
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.exception.RateLimitException;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ResilientChatModelTest {
+    private final List<Long> sleeps = new ArrayList<>();
+    private final AtomicInteger calls = new AtomicInteger();
+
+    /**
+     * A fake model whose n-th call (1-based) behaves as the script says.
+     */
+    private LlmChatModel scripted(IntFunction<LlmResponse> script) {
+        return new LlmChatModel() {
+            @Override
+            public LlmResponse chat(LlmRequest llmRequest) {
+                return script.apply(calls.incrementAndGet());
+            }
+
+            @Override
+            public void streamChat(LlmRequest llmRequest, StreamingChatResponseHandler handler) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private ResilientChatModel resilient(LlmChatModel delegate, ResilientChatModel.Policy policy) {
+        return new ResilientChatModel(delegate, policy, sleeps::add, () -> 1.0);
+    }
+
+    private static ResilientChatModel.Policy policy(int maxAttempts, Duration attemptTimeout, boolean hedge) {
+        return new ResilientChatModel.Policy(maxAttempts, Duration.ofMillis(100), Duration.ofMillis(300),
+            attemptTimeout, hedge, Duration.ofMillis(20));
+    }
+
+    private static LlmResponse blockUntilCancelled() {
+        try {
+            new CountDownLatch(1).await();
+            throw new IllegalStateException("unreachable");
+        } catch (InterruptedException e) {
+            throw new RuntimeException("cancelled", e);
+        }
+    }
+
+    @Test
+    void shouldRetryRetryableErrorsWithCappedExponentialBackoff() {
+        ResilientChatModel model = resilient(scripted(call -> {
+            if (call < 4) {
+                throw new RuntimeException("Error calling API", new RateLimitException("429"));
+            }
+            return new LlmResponse("ok");
+        }), policy(4, null, false));
+
+        assertThat(model.chat(new LlmRequest("Hello")).text()).isEqualTo("ok");
+        assertThat(sleeps).containsExactly(
+            TimeUnit.MILLISECONDS.toNanos(100), TimeUnit.MILLISECONDS.toNanos(200), TimeUnit.MILLISECONDS.toNanos(300));
+        assertThat(model.getRetryCount()).isEqualTo(3);
+    }
+
+    @Test
+    void shouldNotRetryClientErrors() {
+        ResilientChatModel model = resilient(scripted(call -> {
+            throw new RuntimeException("Error calling API", new HttpException(400, "bad request"));
+        }), policy(4, null, false));
+
+        assertThatThrownBy(() -> model.chat(new LlmRequest("Hello"))).hasRootCauseMessage("bad request");
+        assertThat(calls).hasValue(1);
+        assertThat(sleeps).isEmpty();
+    }
+
+    @Test
+    void shouldGiveUpAfterMaxAttempts() {
+        ResilientChatModel model = resilient(scripted(call -> {
+            throw new RuntimeException("Error calling API", new HttpException(503, "unavailable " + call));
+        }), policy(3, null, false));
+
+        assertThatThrownBy(() -> model.chat(new LlmRequest("Hello"))).hasRootCauseMessage("unavailable 3");
+        assertThat(model.getRetryCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldRetryAttemptThatMissesItsDeadline() {
+        ResilientChatModel model = resilient(scripted(call -> call == 1 ? blockUntilCancelled() : new LlmResponse("second")),
+            policy(2, Duration.ofMillis(50), false));
+
+        assertThat(model.chat(new LlmRequest("Hello")).text()).isEqualTo("second");
+        assertThat(model.getAttemptTimeouts()).isEqualTo(1);
+        assertThat(model.getRetryCount()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRecordTimedOutAttemptsInLatencyWindow() {
+        ResilientChatModel model = resilient(scripted(call -> call == 1 ? blockUntilCancelled() : new LlmResponse("second")),
+            policy(2, Duration.ofMillis(50), false));
+
+        model.chat(new LlmRequest("Hello"));
+
+        assertThat(model.getLatencies().percentile(1.0, 2)).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void shouldHedgeSlowRequestAndTakeFirstSuccess() {
+        int warmup = ResilientChatModel.HEDGE_MIN_SAMPLES;
+        ResilientChatModel model = resilient(scripted(call -> {
+            if (call == warmup + 1) {
+                return blockUntilCancelled();
+            }
+            return new LlmResponse(call == warmup + 2 ? "hedge" : "fast");
+        }), policy(1, null, true));
+
+        for (int i = 0; i < warmup; i++) {
+            model.chat(new LlmRequest("Hello"));
+        }
+        assertThat(model.getHedgesFired()).isZero();
+
+        assertThat(model.chat(new LlmRequest("Hello")).text()).isEqualTo("hedge");
+        assertThat(model.getHedgesFired()).isEqualTo(1);
+        assertThat(model.getHedgesWon()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldComputeLatencyPercentiles() {
+        ResilientChatModel.LatencyWindow window = new ResilientChatModel.LatencyWindow(100);
+        for (int i = 1; i <= 100; i++) {
+            window.record(i);
+        }
+
+        assertThat(window.percentile(0.95, 20)).isEqualTo(95);
+        assertThat(new ResilientChatModel.LatencyWindow(10).percentile(0.95, 1)).isEqualTo(-1);
+    }
+
+    @Test
+    void shouldOnlyDecorateWhenPolicyIsConfigured() {
+        LlmChatModel delegate = scripted(call -> new LlmResponse("ok"));
+
+        assertThat(ResilientChatModel.decorate(new ModelConfig(Map.of()), "openai", "gpt-4o", delegate))
+            .isSameAs(delegate);
+        assertThat(ResilientChatModel.decorate(new ModelConfig(Map.of("retry.openai.max.attempts", "3")),
+            "openai", "gpt-4o", delegate)).isInstanceOf(ResilientChatModel.class);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.llm;
+
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ResponseCacheTest {
+    @TempDir
+    Path tempDir;
+
+    private final AtomicInteger providerCalls = new AtomicInteger();
+
+    private final LlmChatModel provider = new LlmChatModel() {
+        @Override
+        public LlmResponse chat(LlmRequest llmRequest) {
+            return new LlmResponse("answer " + providerCalls.incrementAndGet(), 5, 7, 12);
+        }
+
+        @Override
+        public void streamChat(LlmRequest llmRequest, StreamingChatResponseHandler handler) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private ResponseCache open(int memoryEntries, long maxBytes) {
+        return new ResponseCache(tempDir.resolve("responses").toString(), memoryEntries, maxBytes);
+    }
+
+    @Test
+    void shouldServeRepeatedRequestFromMemory() {
+        try (ResponseCache cache = open(16, 1 << 20)) {
+            CachingChatModel model = new CachingChatModel(provider, cache, "openai/gpt-4o");
+
+            LlmResponse first = model.chat(new LlmRequest("Hello"));
+            LlmResponse second = model.chat(new LlmRequest("Hello"));
+
+            assertThat(second.text()).isEqualTo(first.text());
+            assertThat(second.totalTokens()).isZero();
+            assertThat(providerCalls).hasValue(1);
+            assertThat(cache.getMemoryHitCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void shouldServeResponsesFromDiskAfterRestart() {
+        try (ResponseCache cache = open(16, 1 << 20)) {
+            new CachingChatModel(provider, cache, "openai/gpt-4o").chat(new LlmRequest("Hello"));
+        }
+
+        try (ResponseCache cache = open(16, 1 << 20)) {
+            LlmResponse response = new CachingChatModel(provider, cache, "openai/gpt-4o").chat(new LlmRequest("Hello"));
+
+            assertThat(response).isEqualTo(new LlmResponse("answer 1", 0, 0, 0));
+            assertThat(cache.get(cache.keyOf("openai/gpt-4o", new LlmRequest("Hello"))))
+                .contains(new LlmResponse("answer 1", 5, 7, 12));
+            assertThat(providerCalls).hasValue(1);
+            assertThat(cache.getDiskHitCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    void shouldNotCacheRequestsWithTools() {
+        try (ResponseCache cache = open(16, 1 << 20)) {
+            CachingChatModel model = new CachingChatModel(provider, cache, "openai/gpt-4o");
+            LlmRequest request = new LlmRequest("Hello", null, List.of(new Tools()));
+
+            model.chat(request);
+            model.chat(request);
+
+            assertThat(providerCalls).hasValue(2);
+        }
+    }
+
+    @Test
+    void shouldStayOffUnlessEnabled() {
+        assertThat(ResponseCache.fromConfig(new ModelConfig(java.util.Map.of()))).isNull();
+    }
+
+    @Test
+    void shouldKeyOnEverythingThatShapesTheResponse() {
+        try (ResponseCache cache = open(16, 1 << 20)) {
+            String base = cache.keyOf("openai/gpt-4o", new LlmRequest("Hello"));
+
+            assertThat(cache.keyOf("openai/gpt-4o", new LlmRequest("Hello"))).isEqualTo(base);
+            assertThat(cache.keyOf("openai/gpt-4o-mini", new LlmRequest("Hello"))).isNotEqualTo(base);
+            assertThat(cache.keyOf("openai/gpt-4o", new LlmRequest("Hello", "{}"))).isNotEqualTo(base);
+            assertThat(cache.keyOf("openai/gpt-4o", new LlmRequest("Hello", null, List.of(new Tools()))))
+                .isNotEqualTo(base);
+            assertThat(cache.keyOf("openai/gpt-4o", new LlmRequest("Hello", null, null,
+                List.of(new LlmMessage(LlmMessage.Role.SYSTEM, "Be brief"))))).isNotEqualTo(base);
+        }
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedRowsBeyondSizeLimit() {
+        try (ResponseCache cache = open(1, 20)) {
+            cache.put("a", new LlmResponse("0123456789"));
+            cache.put("b", new LlmResponse("0123456789"));
+            cache.get("a");
+            cache.put("c", new LlmResponse("0123456789"));
+
+            assertThat(cache.getEvictionCount()).isEqualTo(1);
+            assertThat(cache.getStoredBytes()).isEqualTo(20);
+            assertThat(cache.get("b")).isEmpty();
+            assertThat(cache.get("a")).isPresent();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.llm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReverseLineReaderTest {
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldReturnLastLinesInFileOrder() throws IOException {
+        Path file = tempDir.resolve("test.jsonl");
+        Files.writeString(file, "one\ntwo\nthree\nfour\n");
+
+        assertThat(ReverseLineReader.readLastLines(file, 0, 2)).containsExactly("three", "four");
+        assertThat(ReverseLineReader.readLastLines(file, 1, 2)).containsExactly("two", "three");
+        assertThat(ReverseLineReader.readLastLines(file, 3, 10)).containsExactly("one");
+        assertThat(ReverseLineReader.readLastLines(file, 10, 10)).isEmpty();
+    }
+
+    @Test
+    void shouldMatchReadAllLinesForLinesSpanningChunks() throws IOException {
+        Path file = tempDir.resolve("test.jsonl");
+        String longLine = "x".repeat(200_000);
+        Files.writeString(file, "first\r\n" + longLine + "\n\nlast");
+
+        List<String> allLines = Files.readAllLines(file);
+        assertThat(ReverseLineReader.readLastLines(file, 0, 10)).isEqualTo(allLines);
+        assertThat(ReverseLineReader.readLastLines(file, 2, 1)).containsExactly(longLine);
+    }
+
+    @Test
+    void shouldHandleEmptyFile() throws IOException {
+        Path file = tempDir.resolve("test.jsonl");
+        Files.createFile(file);
+
+        assertThat(ReverseLineReader.readLastLines(file, 0, 5)).isEmpty();
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.llm;
+
+import dev.langchain4j.exception.HttpException;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class RoutingChatModelTest {
+    private final AtomicLong now = new AtomicLong();
+
+    /**
+     * A fake backend that advances the fake clock by {@code latencyMillis} per call, and fails
+     * while {@code failing} is set.
+     */
+    private LlmChatModel backend(String name, long latencyMillis, AtomicBoolean failing, AtomicInteger calls) {
+        return new LlmChatModel() {
+            @Override
+            public LlmResponse chat(LlmRequest llmRequest) {
+                calls.incrementAndGet();
+                now.addAndGet(TimeUnit.MILLISECONDS.toNanos(latencyMillis));
+                if (failing.get()) {
+                    throw new RuntimeException("Error calling API", new HttpException(503, name + " unavailable"));
+                }
+                return new LlmResponse(name);
+            }
+
+            @Override
+            public void streamChat(LlmRequest llmRequest, StreamingChatResponseHandler handler) {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    private RoutingChatModel router(LlmChatModel first, LlmChatModel second) {
+        Map<String, LlmChatModel> backends = new LinkedHashMap<>();
+        backends.put("groq/llama3", first);
+        backends.put("openai/gpt-4o-mini", second);
+        return new RoutingChatModel(backends, 3, 1_000, now::get);
+    }
+
+    @Test
+    void shouldPreferFasterBackendOnceBothAreMeasured() {
+        AtomicInteger slowCalls = new AtomicInteger();
+        AtomicInteger fastCalls = new AtomicInteger();
+        RoutingChatModel model = router(backend("slow", 500, new AtomicBoolean(), slowCalls),
+            backend("fast", 50, new AtomicBoolean(), fastCalls));
+
+        for (int i = 0; i < 10; i++) {
+            model.chat(new LlmRequest("Hello"));
+        }
+
+        assertThat(slowCalls).hasValue(1);
+        assertThat(fastCalls).hasValue(9);
+    }
+
+    @Test
+    void shouldFailOverAndOpenCircuitAfterConsecutiveFailures() {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        AtomicInteger primaryCalls = new AtomicInteger();
+        RoutingChatModel model = router(backend("primary", 10, failing, primaryCalls),
+            backend("secondary", 100, new AtomicBoolean(), new AtomicInteger()));
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(model.chat(new LlmRequest("Hello")).text()).isEqualTo("secondary");
+        }
+
+        // Failed over once per request until the circuit opened; no traffic while it stays open
+        assertThat(primaryCalls.get()).isLessThanOrEqualTo(3);
+        assertThat(model.getStats().get(0).state()).isEqualTo(RoutingChatModel.CircuitState.OPEN);
+    }
+
+    @Test
+    void shouldCloseCircuitAfterSuccessfulProbe() {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        AtomicInteger primaryCalls = new AtomicInteger();
+        RoutingChatModel model = router(backend("primary", 10, failing, primaryCalls),
+            backend("secondary", 100, new AtomicBoolean(), new AtomicInteger()));
+        for (int i = 0; i < 3; i++) {
+            model.chat(new LlmRequest("Hello"));
+        }
+        int callsWhileOpen = primaryCalls.get();
+
+        failing.set(false);
+        now.addAndGet(TimeUnit.SECONDS.toNanos(2));
+        model.chat(new LlmRequest("Hello"));
+
+        assertThat(primaryCalls.get()).isEqualTo(callsWhileOpen + 1);
+        assertThat(model.getStats().get(0).state()).isEqualTo(RoutingChatModel.CircuitState.CLOSED);
+    }
+
+    @Test
+    void shouldThrowLastFailureWhenEveryBackendFails() {
+        AtomicBoolean failing = new AtomicBoolean(true);
+        RoutingChatModel model = router(backend("primary", 10, failing, new AtomicInteger()),
+            backend("secondary", 10, failing, new AtomicInteger()));
+
+        assertThatThrownBy(() -> model.chat(new LlmRequest("Hello")))
+            .hasRootCauseMessage("secondary unavailable")
+            .satisfies(e -> assertThat(e.getSuppressed()).hasSize(1));
+    }
+
+    @Test
+    void shouldNotFailOverOrPenaliseOnNonRetryableErrors() {
+        AtomicInteger secondaryCalls = new AtomicInteger();
+        LlmChatModel rejecting = new LlmChatModel() {
+            @Override
+            public LlmResponse chat(LlmRequest llmRequest) {
+                throw new RuntimeException("Error calling API", new HttpException(400, "bad request"));
+            }
+
+            @Override
+            public void streamChat(LlmRequest llmRequest, StreamingChatResponseHandler handler) {
+                throw new UnsupportedOperationException();
+            }
+        };
+        RoutingChatModel model = router(rejecting, backend("secondary", 10, new AtomicBoolean(), secondaryCalls));
+
+        assertThatThrownBy(() -> model.chat(new LlmRequest("Hello"))).hasRootCauseMessage("bad request");
+        assertThat(secondaryCalls).hasValue(0);
+        assertThat(model.getStats().get(0).errorRate()).isZero();
+    }
+
+    @Test
+    void shouldParseRoutedAliasTargets() {
+        assertThat(AliasManager.targetsOf("groq/llama3, openai/gpt-4o-mini,"))
+            .containsExactly("groq/llama3", "openai/gpt-4o-mini");
+        assertThat(AliasManager.targetsOf("openai/gpt-4o")).containsExactly("openai/gpt-4o");
+    }
+
+    @Test
+    void shouldShareRouterForSameTargets() {
+        ModelRegistry registry = new ModelRegistry(new ModelConfig(Map.of(
+            "groq.api.key", "test", "openai.api.key", "test")));
+        List<String> targets = List.of("groq/llama3", "openai/gpt-4o-mini");
+
+        LlmChatModel model = registry.getRoutedModel(targets);
+
+        assertThat(model).isInstanceOf(RoutingChatModel.class).isSameAs(registry.getRoutedModel(targets));
+    }
+}
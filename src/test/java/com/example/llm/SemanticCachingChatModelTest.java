@@ -0,0 +1,138 @@
+package com.example.llm;
+
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.*;
+
+class SemanticCachingChatModelTest {
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger providerCalls = new AtomicInteger();
+
+    /**
+     * Deterministic offline embedding: a bag of lower-cased words hashed into 64 buckets, so
+     * prompts sharing most of their words are close.
+     */
+    static final LlmEmbeddingModel BAG_OF_WORDS = text -> {
+        float[] buckets = new float[64];
+        for (String word : text.toLowerCase().split("\\W+")) {
+            if (!word.isEmpty()) {
+                buckets[Math.floorMod(word.hashCode(), buckets.length)]++;
+            }
+        }
+        List<Float> embedding = new ArrayList<>();
+        for (float bucket : buckets) {
+            embedding.add(bucket);
+        }
+        return embedding;
+    };
+
+    private final LlmChatModel provider = new LlmChatModel() {
+        @Override
+        public LlmResponse chat(LlmRequest llmRequest) {
+            return new LlmResponse("answer " + providerCalls.incrementAndGet());
+        }
+
+        @Override
+        public void streamChat(LlmRequest llmRequest, StreamingChatResponseHandler handler) {
+            throw new UnsupportedOperationException();
+        }
+    };
+
+    private SemanticCachingChatModel cache(double threshold, int maxEntries) {
+        return new SemanticCachingChatModel(provider, BAG_OF_WORDS, threshold, Duration.ofMinutes(1), maxEntries, now::get);
+    }
+
+    private static final String PROMPT = "Summarize the quarterly report for the sales team in three short bullet points";
+
+    @Test
+    void shouldServeNearDuplicatePromptFromCache() {
+        SemanticCachingChatModel model = cache(0.9, 10);
+
+        LlmResponse first = model.chat(new LlmRequest(PROMPT));
+        LlmResponse second = model.chat(new LlmRequest(PROMPT.replace("three", "3")));
+
+        assertThat(second).isEqualTo(first.servedFromCache());
+        assertThat(providerCalls).hasValue(1);
+        assertThat(model.getHitCount()).isEqualTo(1);
+        assertThat(model.getHitRate()).isEqualTo(0.5);
+    }
+
+    @Test
+    void shouldTreatEmbeddingFailureAsMiss() {
+        LlmEmbeddingModel failing = text -> {
+            throw new IllegalArgumentException("text cannot be null or blank");
+        };
+        SemanticCachingChatModel model = new SemanticCachingChatModel(provider, failing, 0.9, Duration.ofMinutes(1), 10, now::get);
+
+        assertThat(model.chat(new LlmRequest(" ")).text()).isEqualTo("answer 1");
+        assertThat(model.getMissCount()).isEqualTo(1);
+        assertThat(model.size()).isZero();
+    }
+
+    @Test
+    void shouldCallProviderForDissimilarPrompt() {
+        SemanticCachingChatModel model = cache(0.9, 10);
+
+        model.chat(new LlmRequest(PROMPT));
+        LlmResponse other = model.chat(new LlmRequest("Translate this sentence into French please"));
+
+        assertThat(other.text()).isEqualTo("answer 2");
+        assertThat(model.getMissCount()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldNotMatchAcrossSchemasOrConversations() {
+        SemanticCachingChatModel model = cache(0.9, 10);
+
+        model.chat(new LlmRequest(PROMPT));
+        model.chat(new LlmRequest(PROMPT, "{\"type\":\"object\"}"));
+        model.chat(new LlmRequest(PROMPT, null, null, List.of(new LlmMessage(LlmMessage.Role.USER, "earlier turn"))));
+
+        assertThat(providerCalls).hasValue(3);
+    }
+
+    @Test
+    void shouldExpireEntriesAfterTtl() {
+        SemanticCachingChatModel model = cache(0.9, 10);
+        model.chat(new LlmRequest(PROMPT));
+
+        now.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        model.chat(new LlmRequest(PROMPT));
+
+        assertThat(providerCalls).hasValue(2);
+        assertThat(model.getEvictionCount()).isEqualTo(1);
+        assertThat(model.size()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedBeyondMaxEntries() {
+        SemanticCachingChatModel model = cache(0.99, 2);
+        model.chat(new LlmRequest("alpha beta gamma"));
+        model.chat(new LlmRequest("delta epsilon zeta"));
+        model.chat(new LlmRequest("alpha beta gamma"));
+
+        model.chat(new LlmRequest("eta theta iota"));
+        model.chat(new LlmRequest("alpha beta gamma"));
+
+        assertThat(model.size()).isEqualTo(2);
+        assertThat(model.getEvictionCount()).isEqualTo(1);
+        assertThat(providerCalls).hasValue(3);
+    }
+
+    @Test
+    void shouldOnlyDecorateWhenEmbeddingModelIsConfigured() {
+        assertThat(SemanticCachingChatModel.decorate(new ModelConfig(Map.of()), provider, name -> BAG_OF_WORDS))
+            .isSameAs(provider);
+        assertThat(SemanticCachingChatModel.decorate(new ModelConfig(Map.of("cache.semantic.embedding.model", "fake")),
+            provider, name -> BAG_OF_WORDS)).isInstanceOf(SemanticCachingChatModel.class);
+    }
+}
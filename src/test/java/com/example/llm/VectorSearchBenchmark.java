@@ -0,0 +1,145 @@
+package com.example.llm;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Measures vector collection build time, search latency and recall@10 against the exact scan on
+ * synthetic clustered vectors. Not a test; run it from the test classpath, for example:
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/classes:target/test-classes:$(cat target/cp.txt) com.example.llm.VectorSearchBenchmark \
+ *     hnsw 1000000 768
+ * </pre>
+ * Modes: {@code scan} times the exact parallel scan, {@code hnsw} sweeps the index's
+ * {@code efSearch}, and {@code quantized} sweeps the re-rank factor for int8 and product codes.
+ * The collection is built in a temporary directory and deleted afterwards.
+ */
+public class VectorSearchBenchmark {
+    private static final int BATCH = 10_000;
+    private static final int CENTRES = 1_000;
+    private static final float SPREAD = 0.7f;
+    private static final int K = 10;
+
+    private final int dimension;
+
+    private VectorSearchBenchmark(int dimension) {
+        this.dimension = dimension;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: VectorSearchBenchmark scan|hnsw|quantized <vectors> <dimension> [queries]");
+            System.exit(1);
+        }
+        String mode = args[0];
+        int count = Integer.parseInt(args[1]);
+        int dimension = Integer.parseInt(args[2]);
+        int queries = args.length > 3 ? Integer.parseInt(args[3]) : 100;
+        VectorSearchBenchmark benchmark = new VectorSearchBenchmark(dimension);
+        Path directory = Files.createTempDirectory("vector-bench");
+        try (VectorStore store = VectorStore.open(directory, dimension)) {
+            switch (mode) {
+                case "scan" -> benchmark.scan(store, count, queries);
+                case "hnsw" -> benchmark.hnsw(store, count, queries);
+                case "quantized" -> benchmark.quantized(store, count, queries);
+                default -> throw new IllegalArgumentException("Unknown mode " + mode);
+            }
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+            }
+        }
+    }
+
+    private long fill(VectorStore store, int count) throws IOException {
+        long start = System.nanoTime();
+        for (int from = 0; from < count; from += BATCH) {
+            int to = Math.min(count, from + BATCH);
+            store.addAll(VectorTestData.ids(from, to),
+                    VectorTestData.clusteredVectors(to - from, dimension, CENTRES, SPREAD, from + 1), null);
+        }
+        return (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private List<LlmEmbedding> queries(int count) {
+        return VectorTestData.clusteredVectors(count, dimension, CENTRES, SPREAD, -1);
+    }
+
+    private void scan(VectorStore store, int count, int queries) throws IOException {
+        System.out.printf("insert %d x %d: %d ms%n", count, dimension, fill(store, count));
+        List<LlmEmbedding> sample = queries(queries);
+        for (LlmEmbedding query : sample) {
+            store.searchExact(query, K, VectorStore.Metric.COSINE);
+        }
+        long[] latencies = new long[queries];
+        for (int i = 0; i < queries; i++) {
+            long start = System.nanoTime();
+            store.searchExact(sample.get(i), K, VectorStore.Metric.COSINE);
+            latencies[i] = System.nanoTime() - start;
+        }
+        System.out.printf("exact top-%d: %s%n", K, percentiles(latencies));
+    }
+
+    private void hnsw(VectorStore store, int count, int queries) throws IOException {
+        HnswIndex index = store.createIndex(VectorStore.Metric.COSINE, HnswIndex.DEFAULT_M,
+                HnswIndex.DEFAULT_EF_CONSTRUCTION);
+        System.out.printf("build %d x %d (M=%d, efConstruction=%d): %d ms%n", count, dimension, HnswIndex.DEFAULT_M,
+                HnswIndex.DEFAULT_EF_CONSTRUCTION, fill(store, count));
+        List<LlmEmbedding> sample = queries(queries);
+        List<Set<String>> truth = VectorTestData.exactTopK(store, sample, K, VectorStore.Metric.COSINE);
+        for (int efSearch : new int[]{16, 32, 64, 128, 256}) {
+            index.setEfSearch(efSearch);
+            System.out.printf("efSearch=%3d %s%n", efSearch, measure(store, sample, truth));
+        }
+    }
+
+    private void quantized(VectorStore store, int count, int queries) throws IOException {
+        System.out.printf("insert %d x %d: %d ms, float32 %d B/vector%n", count, dimension, fill(store, count),
+                dimension * 4);
+        List<LlmEmbedding> sample = queries(queries);
+        List<Set<String>> truth = VectorTestData.exactTopK(store, sample, K, VectorStore.Metric.COSINE);
+        for (VectorQuantizer.Kind kind : VectorQuantizer.Kind.values()) {
+            long start = System.nanoTime();
+            QuantizedVectors quantized = store.createQuantization(kind, 0);
+            System.out.printf("%s: %d B/vector, train and encode %d ms%n", kind, quantized.quantizer().codeSize(),
+                    (System.nanoTime() - start) / 1_000_000);
+            for (int rerank : new int[]{1, 4, 10, 20}) {
+                quantized.setRerank(rerank);
+                System.out.printf("  rerank=%2d %s%n", rerank, measure(store, sample, truth));
+            }
+        }
+    }
+
+    /**
+     * Recall@10 and latency of {@link VectorStore#search} after one warm-up pass.
+     */
+    private static String measure(VectorStore store, List<LlmEmbedding> queries, List<Set<String>> truth)
+            throws IOException {
+        for (LlmEmbedding query : queries) {
+            store.search(query, K, VectorStore.Metric.COSINE);
+        }
+        long[] latencies = new long[queries.size()];
+        long found = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            long start = System.nanoTime();
+            List<VectorStore.Match> matches = store.search(queries.get(i), K, VectorStore.Metric.COSINE);
+            latencies[i] = System.nanoTime() - start;
+            found += VectorTestData.hits(matches, truth.get(i));
+        }
+        return String.format("recall@%d=%.3f %s", K, found / (queries.size() * (double) K), percentiles(latencies));
+    }
+
+    private static String percentiles(long[] latencies) {
+        long[] sorted = latencies.clone();
+        Arrays.sort(sorted);
+        return String.format("p50=%.2f ms p99=%.2f ms", sorted[sorted.length / 2] / 1e6,
+                sorted[sorted.length * 99 / 100] / 1e6);
+    }
+}
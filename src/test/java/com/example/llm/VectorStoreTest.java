@@ -0,0 +1,139 @@
+package com.example.llm;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.IntStream;
+
+import static com.example.llm.VectorTestData.*;
+import static org.assertj.core.api.Assertions.*;
+
+class VectorStoreTest {
+    @TempDir
+    Path tempDir;
+
+    private static LlmEmbedding vector(float... values) {
+        return new LlmEmbedding(values);
+    }
+
+    @Test
+    void shouldRankByCosineOrDot() throws IOException {
+        try (VectorStore store = VectorStore.open(tempDir.resolve("docs"), 2)) {
+            store.add("east", vector(1, 0), Map.of("text", "east"));
+            store.add("north-east", vector(3, 3), null);
+            store.add("north", vector(0, 1), null);
+
+            List<VectorStore.Match> cosine = store.search(vector(1, 0.1f), 2, VectorStore.Metric.COSINE);
+            List<VectorStore.Match> dot = store.search(vector(1, 0.1f), 2, VectorStore.Metric.DOT);
+
+            assertThat(cosine).extracting(VectorStore.Match::id).containsExactly("east", "north-east");
+            assertThat(cosine.get(0).score()).isCloseTo(0.995, within(0.001));
+            assertThat(cosine.get(0).metadata()).isEqualTo(Map.of("text", "east"));
+            assertThat(dot).extracting(VectorStore.Match::id).containsExactly("north-east", "east");
+        }
+    }
+
+    @Test
+    void shouldMatchExhaustiveSearchAcrossParallelChunks() throws IOException {
+        List<LlmEmbedding> vectors = randomVectors(10_000, 16, 1);
+        LlmEmbedding query = randomVectors(1, 16, 2).get(0);
+        try (VectorStore store = VectorStore.open(tempDir.resolve("docs"), 16)) {
+            store.addAll(ids(0, vectors.size()), vectors, null);
+
+            List<VectorStore.Match> matches = store.search(query, 5, VectorStore.Metric.DOT);
+
+            List<String> expected = IntStream.range(0, vectors.size()).boxed()
+                .sorted(Comparator.comparingDouble(i -> -query.dot(vectors.get(i))))
+                .limit(5).map(i -> "doc-" + i).toList();
+            assertThat(matches).extracting(VectorStore.Match::id).containsExactlyElementsOf(expected);
+        }
+    }
+
+    @Test
+    void shouldReopenAndAppendToExistingCollection() throws IOException {
+        Path directory = tempDir.resolve("docs");
+        try (VectorStore store = VectorStore.open(directory, 2)) {
+            store.add("a", vector(1, 0), null);
+        }
+
+        try (VectorStore store = VectorStore.open(directory)) {
+            assertThat(store.size()).isEqualTo(1);
+            store.search(vector(1, 0), 1, VectorStore.Metric.COSINE);
+            store.add("b", vector(0, 1), null);
+
+            assertThat(store.search(vector(0, 1), 1, VectorStore.Metric.COSINE))
+                .extracting(VectorStore.Match::id).containsExactly("b");
+            assertThat(store.indexOf("b")).isEqualTo(1);
+            assertThat(store.get(0)).isEqualTo(vector(1, 0));
+        }
+    }
+
+    @Test
+    void shouldDropEntryLeftIncompleteByInterruptedAppend() throws IOException {
+        Path directory = tempDir.resolve("docs");
+        try (VectorStore store = VectorStore.open(directory, 2)) {
+            store.add("a", vector(1, 0), null);
+            store.add("b", vector(0, 1), null);
+        }
+        // Simulate a crash after the vector was written but before its id line was finished
+        Files.write(directory.resolve("vectors.f32"), new byte[8], StandardOpenOption.APPEND);
+        Files.writeString(directory.resolve("ids.jsonl"), "{\"id\":\"c", StandardOpenOption.APPEND);
+
+        try (VectorStore store = VectorStore.open(directory)) {
+            assertThat(store.size()).isEqualTo(2);
+            store.add("d", vector(1, 1), null);
+            assertThat(store.indexOf("d")).isEqualTo(2);
+        }
+    }
+
+    @Test
+    void shouldSearchReadOnlyAlongsideWriterWithoutTouchingItsFiles() throws IOException {
+        Path directory = tempDir.resolve("docs");
+        try (VectorStore writer = VectorStore.open(directory, 2)) {
+            writer.add("a", vector(1, 0), null);
+            writer.add("b", vector(0, 1), null);
+            // The writer is part-way through an append: vector written, id line not yet
+            Files.write(directory.resolve("vectors.f32"), new byte[8], StandardOpenOption.APPEND);
+            long vectorBytes = Files.size(directory.resolve("vectors.f32"));
+
+            try (VectorStore reader = VectorStore.openReadOnly(directory)) {
+                assertThat(reader.size()).isEqualTo(2);
+                assertThat(reader.search(vector(0, 1), 1, VectorStore.Metric.COSINE))
+                    .extracting(VectorStore.Match::id).containsExactly("b");
+                assertThatThrownBy(() -> reader.add("c", vector(1, 1), null))
+                    .isInstanceOf(IllegalStateException.class);
+            }
+            assertThat(Files.size(directory.resolve("vectors.f32"))).isEqualTo(vectorBytes);
+        }
+    }
+
+    @Test
+    void shouldAllowOneWriterAtATime() throws IOException {
+        Path directory = tempDir.resolve("docs");
+        try (VectorStore writer = VectorStore.open(directory, 2)) {
+            assertThatThrownBy(() -> VectorStore.open(directory))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("already open for writing");
+        }
+        try (VectorStore writer = VectorStore.open(directory)) {
+            assertThat(writer.size()).isZero();
+        }
+    }
+
+    @Test
+    void shouldRejectVectorsOfAnotherDimension() throws IOException {
+        try (VectorStore store = VectorStore.open(tempDir.resolve("docs"), 2)) {
+            assertThatThrownBy(() -> store.add("a", vector(1, 0, 0), null))
+                .isInstanceOf(IllegalArgumentException.class);
+        }
+        assertThatThrownBy(() -> VectorStore.open(tempDir.resolve("docs"), 3))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
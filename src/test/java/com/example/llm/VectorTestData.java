@@ -0,0 +1,95 @@
+package com.example.llm;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Synthetic vectors and recall measurement shared by the vector collection tests and
+ * {@link VectorSearchBenchmark}.
+ */
+final class VectorTestData {
+    private VectorTestData() {
+    }
+
+    static List<LlmEmbedding> randomVectors(int count, int dimension, long seed) {
+        Random random = new Random(seed);
+        List<LlmEmbedding> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] values = new float[dimension];
+            for (int j = 0; j < dimension; j++) {
+                values[j] = (float) random.nextGaussian();
+            }
+            vectors.add(new LlmEmbedding(values));
+        }
+        return vectors;
+    }
+
+    /**
+     * Points scattered with standard deviation {@code spread} around random centres, closer to
+     * real embeddings than uniform noise. The centres depend only on their number and the
+     * dimension, so calls with different seeds draw from the same clusters.
+     */
+    static List<LlmEmbedding> clusteredVectors(int count, int dimension, int centreCount, float spread, long seed) {
+        Random centresRandom = new Random(0);
+        float[][] centres = new float[centreCount][dimension];
+        for (float[] centre : centres) {
+            for (int j = 0; j < dimension; j++) {
+                centre[j] = (float) centresRandom.nextGaussian();
+            }
+        }
+        Random random = new Random(seed);
+        List<LlmEmbedding> vectors = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            float[] centre = centres[random.nextInt(centreCount)];
+            float[] values = new float[dimension];
+            for (int j = 0; j < dimension; j++) {
+                values[j] = centre[j] + spread * (float) random.nextGaussian();
+            }
+            vectors.add(new LlmEmbedding(values));
+        }
+        return vectors;
+    }
+
+    static List<String> ids(int from, int to) {
+        return IntStream.range(from, to).mapToObj(i -> "doc-" + i).toList();
+    }
+
+    /**
+     * The ids of each query's exact top {@code k}.
+     */
+    static List<Set<String>> exactTopK(VectorStore store, List<LlmEmbedding> queries, int k, VectorStore.Metric metric)
+            throws IOException {
+        List<Set<String>> truth = new ArrayList<>(queries.size());
+        for (LlmEmbedding query : queries) {
+            Set<String> ids = new HashSet<>();
+            store.searchExact(query, k, metric).forEach(match -> ids.add(match.id()));
+            truth.add(ids);
+        }
+        return truth;
+    }
+
+    /**
+     * How many of {@code matches} are in the exact top-k {@code truth}.
+     */
+    static long hits(List<VectorStore.Match> matches, Set<String> truth) {
+        return matches.stream().filter(match -> truth.contains(match.id())).count();
+    }
+
+    /**
+     * Mean fraction of the exact top {@code k} that {@link VectorStore#search} also returns.
+     */
+    static double recall(VectorStore store, List<LlmEmbedding> queries, int k, VectorStore.Metric metric)
+            throws IOException {
+        List<Set<String>> truth = exactTopK(store, queries, k, metric);
+        long found = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            found += hits(store.search(queries.get(i), k, metric), truth.get(i));
+        }
+        return found / (queries.size() * (double) k);
+    }
+}